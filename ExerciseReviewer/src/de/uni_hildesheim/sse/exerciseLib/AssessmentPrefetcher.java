@@ -0,0 +1,85 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+import net.ssehub.exercisesubmitter.protocol.backend.NetworkException;
+import net.ssehub.exercisesubmitter.protocol.frontend.Assessment;
+import net.ssehub.exercisesubmitter.protocol.frontend.ExerciseReviewerProtocol;
+
+/**
+ * Fetches the assessments of a set of users (groups) from the student
+ * management server in one step. The assessments of the current 
+ * assignment are taken from the list loaded by the protocol in a single
+ * request (see {@link ExerciseReviewerProtocol#getAssessments()}), only
+ * users missing in this list are requested individually. As the protocol
+ * instance is shared by the whole tool and not known to be thread-safe,
+ * the individual requests are issued sequentially by the calling thread.
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class AssessmentPrefetcher {
+
+    /**
+     * Prevents this class from being instantiated.
+     * 
+     * @since 2.2
+     */
+    private AssessmentPrefetcher() {
+    }
+
+    /**
+     * Fetches the assessments for the given user names. Fetching stops at
+     * the first failing individual request, the assessments fetched 
+     * before remain in <code>result</code>.
+     * 
+     * @param userNames the (distinct) names of the users (groups)
+     * @param result the assessments assigned to the user names, to be 
+     *         modified as a side effect (users without an assessment are 
+     *         not added)
+     * @throws CommunicationException if the server cannot be contacted
+     * 
+     * @since 2.2
+     */
+    static void fetch(Collection<String> userNames, 
+        Map<String, Assessment> result) throws CommunicationException {
+        if (!userNames.isEmpty()) {
+            // Not nice here, but the tool uses only one protocol instance
+            // -> Thus, it can be used that way
+            ExerciseReviewerProtocol protocol = 
+                (ExerciseReviewerProtocol) Activator.getProtocol();
+            Set<String> missing = new LinkedHashSet<String>(userNames);
+            List<Assessment> loaded = protocol.getAssessments();
+            if (null != loaded) {
+                for (Assessment assessment : loaded) {
+                    String userName = assessment.getSubmitterName();
+                    if (missing.remove(userName)) {
+                        result.put(userName, assessment);
+                    }
+                }
+            }
+            try {
+                for (String userName : missing) {
+                    Assessment assessment = 
+                        protocol.getAssessmentForSubmission(userName);
+                    if (null != assessment) {
+                        result.put(userName, assessment);
+                    }
+                }
+            } catch (NetworkException e) {
+                throw new CommunicationException(CommunicationException.
+                    SubmissionPublicMessage.
+                    UNABLE_TO_CONTACT_STUDENT_MANAGEMENT_SERVER, e);
+            }
+        }
+    }
+
+}
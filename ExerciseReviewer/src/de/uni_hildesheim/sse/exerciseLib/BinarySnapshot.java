@@ -0,0 +1,445 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewPublicMessage;
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Reads and writes the versioned binary snapshot format of
+ * {@link ExerciseData}. In contrast to the tabulator-separated format, the
+ * binary format can be read sequentially without any text parsing.<br/>
+ * Structure (big endian):<br/>
+ * <code>
+ * int magic, int version<br/>
+ * int #exercises, {string name, int maxCredits}*<br/>
+ * int #users, {string name}*<br/>
+ * int #texts, {string review}*<br/>
+ * int #reviews, {int exercise, int user, int credits, boolean submitted,
+ * long timestamp, int text}*
+ * </code><br/>
+ * Thereby, exercises, users and review texts are referred to by their 
+ * index in the respective dictionary, credits are stored as fixed-point 
+ * integers (tenths, see {@link Credits}) and strings are stored as 
+ * length-prefixed UTF-8 bytes. Review texts are stored once per distinct
+ * content, i.e. reviews sharing the same (e.g. templated) text refer to 
+ * the same dictionary entry. The text dictionary was introduced by 
+ * version 3, snapshots of former versions store the review text instead 
+ * of its index in each review. The timestamps (see {@link ReviewClock}) 
+ * were introduced by version 2, snapshots of version 1 are read with 
+ * unknown timestamps (<code>0</code>).
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class BinarySnapshot {
+
+    /**
+     * Defines the magic number identifying the format ("ERBS").
+     *
+     * @since 2.2
+     */
+    private static final int MAGIC = 0x45524253;
+
+    /**
+     * Defines the current version of the format.
+     *
+     * @since 2.2
+     */
+    private static final int VERSION = 3;
+
+    /**
+     * Defines the version of the format without text dictionary.
+     *
+     * @since 2.2
+     */
+    private static final int VERSION_WITHOUT_DICTIONARY = 2;
+
+    /**
+     * Defines the version of the format without timestamps.
+     *
+     * @since 2.2
+     */
+    private static final int VERSION_WITHOUT_TIMESTAMPS = 1;
+
+    /**
+     * Defines the size of the buffer for reading input streams.
+     *
+     * @since 2.2
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     *
+     * @since 2.2
+     */
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Writes the given data in binary format. If <code>bodies</code> are 
+     * given, the offsets of the texts of the reviews loaded lazily from 
+     * <code>bodies</code> are recorded, so that the reviews can be bound
+     * to the written snapshot as soon as it replaces the snapshot file 
+     * (see {@link ReviewBodies#endReplace(boolean)}).
+     *
+     * @param data the data to be written
+     * @param out the output stream (will be closed)
+     * @param bodies the provider of the texts of lazily loaded reviews, 
+     *     may be <b>null</b>
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    static void write(ExerciseData data, OutputStream out, 
+        ReviewBodies bodies) throws IOException {
+        List<Exercise> exercises = new ArrayList<Exercise>();
+        for (Iterator<Exercise> iter = data.exercises(); iter.hasNext();) {
+            exercises.add(iter.next());
+        }
+        write(exercises, out, bodies);
+    }
+
+    /**
+     * Writes the given exercises in binary format, e.g. a single exercise
+     * as segment of a partitioned snapshot (see 
+     * {@link SnapshotPartitions}). If <code>bodies</code> are given, the
+     * reviews loaded lazily from <code>bodies</code> are staged as for
+     * {@link #write(ExerciseData, OutputStream, ReviewBodies)}.
+     *
+     * @param exercises the exercises to be written
+     * @param out the output stream (will be closed)
+     * @param bodies the provider of the texts of lazily loaded reviews, 
+     *     may be <b>null</b>
+     * @throws IOException if writing fails or the reviews of an exercise
+     *     cannot be loaded
+     *
+     * @since 2.2
+     */
+    static void write(List<Exercise> exercises, OutputStream out, 
+        ReviewBodies bodies) throws IOException {
+        for (Exercise exercise : exercises) {
+            exercise.load();
+        }
+        if (null != bodies) {
+            bodies.beginStaging();
+        }
+        DataOutputStream dos = new DataOutputStream(
+            new BufferedOutputStream(out));
+        try {
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(exercises.size());
+            Map<String, Integer> users = new HashMap<String, Integer>();
+            List<String> userNames = new ArrayList<String>();
+            Map<String, Integer> texts = new HashMap<String, Integer>();
+            List<String> textList = new ArrayList<String>();
+            List<Integer> reviewTexts = new ArrayList<Integer>();
+            for (Exercise exercise : exercises) {
+                writeString(dos, exercise.getName());
+                dos.writeInt((int) exercise.getMaxCreditsFixedPoint());
+                for (Iterator<Map.Entry<String, Review>> iter =
+                    exercise.userReviewMappings(); iter.hasNext();) {
+                    Map.Entry<String, Review> entry = iter.next();
+                    String user = entry.getKey();
+                    if (!users.containsKey(user)) {
+                        users.put(user, userNames.size());
+                        userNames.add(user);
+                    }
+                    // content-addressed, equal texts are stored once
+                    String text = entry.getValue().getReview();
+                    Integer index = texts.get(text);
+                    if (null == index) {
+                        index = textList.size();
+                        texts.put(text, index);
+                        textList.add(text);
+                    }
+                    reviewTexts.add(index);
+                }
+            }
+            dos.writeInt(userNames.size());
+            for (String user : userNames) {
+                writeString(dos, user);
+            }
+            int[] textOffsets = new int[textList.size()];
+            int[] textLengths = new int[textList.size()];
+            dos.writeInt(textList.size());
+            for (int t = 0; t < textList.size(); t++) {
+                textLengths[t] = writeString(dos, textList.get(t));
+                textOffsets[t] = dos.size() - textLengths[t];
+            }
+            dos.writeInt(reviewTexts.size());
+            int r = 0;
+            for (int e = 0; e < exercises.size(); e++) {
+                for (Iterator<Map.Entry<String, Review>> iter =
+                    exercises.get(e).userReviewMappings(); iter.hasNext();) {
+                    Map.Entry<String, Review> entry = iter.next();
+                    Review review = entry.getValue();
+                    int text = reviewTexts.get(r++);
+                    dos.writeInt(e);
+                    dos.writeInt(users.get(entry.getKey()));
+                    dos.writeInt((int) review.getCreditsFixedPoint());
+                    dos.writeBoolean(review.isSubmittedToServer());
+                    dos.writeLong(review.getTimestamp());
+                    dos.writeInt(text);
+                    if (null != bodies) {
+                        bodies.stage(review, textOffsets[text], 
+                            textLengths[text]);
+                    }
+                }
+            }
+        } finally {
+            dos.close();
+        }
+    }
+
+    /**
+     * Reads data in binary format.
+     *
+     * @param data the data to be modified as a side effect
+     * @param provider the user data provider
+     * @param in the input stream (will be closed)
+     * @param throwOnMissingUser should an exception be thrown when an
+     *     user cannot be found
+     * @throws IOException if reading fails or the input is not a
+     *     supported snapshot
+     * @throws CommunicationException wrapped exceptions while reading
+     *
+     * @since 2.2
+     */
+    static void read(ExerciseData data, UserProvider provider,
+        InputStream in, boolean throwOnMissingUser) throws IOException,
+        CommunicationException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        read(data, provider, ByteBuffer.wrap(bytes.toByteArray()), 
+            throwOnMissingUser, null);
+    }
+
+    /**
+     * Reads data in binary format. If <code>bodies</code> are given, the
+     * reviews are loaded lazily, i.e. the review texts are not decoded
+     * and the assessments are not fetched from the server (see 
+     * {@link Review}).
+     *
+     * @param data the data to be modified as a side effect
+     * @param provider the user data provider
+     * @param in the contents of the snapshot, positioned at its start
+     * @param throwOnMissingUser should an exception be thrown when an
+     *     user cannot be found
+     * @param bodies the provider of the texts of lazily loaded reviews,
+     *     <b>null</b> for loading the reviews completely
+     * @throws IOException if reading fails or the input is not a
+     *     supported snapshot
+     * @throws CommunicationException wrapped exceptions while reading
+     *
+     * @since 2.2
+     */
+    static void read(ExerciseData data, UserProvider provider,
+        ByteBuffer in, boolean throwOnMissingUser, ReviewBodies bodies) 
+        throws IOException, CommunicationException {
+        List<ReviewRecord> records;
+        try {
+            if (MAGIC != in.getInt()) {
+                throw new IOException("Unsupported snapshot format");
+            }
+            int version = in.getInt();
+            if (version < VERSION_WITHOUT_TIMESTAMPS || version > VERSION) {
+                throw new IOException("Unsupported snapshot format");
+            }
+            // name length and maximum credits at least
+            Exercise[] exercises = new Exercise[readCount(in, 8)];
+            for (int e = 0; e < exercises.length; e++) {
+                String name = readString(in);
+                int maxCredits = in.getInt();
+                if (data.isRead(name)) {
+                    exercises[e] = new Exercise(name, 
+                        Credits.toDouble(maxCredits));
+                    data.addExercise(exercises[e]);
+                }
+            }
+            String[] users = new String[readCount(in, 4)];
+            boolean[] known = new boolean[users.length];
+            for (int u = 0; u < users.length; u++) {
+                users[u] = readString(in);
+                known[u] = null != provider.getSubmissionUser(users[u]);
+                if (!known[u] && throwOnMissingUser) {
+                    throw new ReviewException(
+                        ReviewPublicMessage.NO_USER_FOUND,
+                        new Throwable(), users[u]);
+                }
+            }
+            // texts are decoded on demand, shared texts only once
+            int[] textOffsets = new int[0];
+            int[] textLengths = textOffsets;
+            String[] texts = new String[0];
+            if (version >= VERSION) {
+                textOffsets = new int[readCount(in, 4)];
+                textLengths = new int[textOffsets.length];
+                texts = new String[textOffsets.length];
+                for (int t = 0; t < textOffsets.length; t++) {
+                    textLengths[t] = readCount(in, 1);
+                    textOffsets[t] = in.position();
+                    in.position(textOffsets[t] + textLengths[t]);
+                }
+            }
+            // exercise, user, credits, flag and text (length) at least
+            int count = readCount(in, 17);
+            records = new ArrayList<ReviewRecord>();
+            for (int r = 0; r < count; r++) {
+                Exercise exercise = exercises[in.getInt()];
+                int user = in.getInt();
+                long credits = in.getInt();
+                boolean submitted = 0 != in.get();
+                long timestamp = 0;
+                if (version >= VERSION_WITHOUT_DICTIONARY) {
+                    timestamp = in.getLong();
+                }
+                int text = -1;
+                int offset;
+                int length;
+                if (version >= VERSION) {
+                    text = in.getInt();
+                    offset = textOffsets[text];
+                    length = textLengths[text];
+                } else {
+                    length = readCount(in, 1);
+                    offset = in.position();
+                    in.position(offset + length);
+                }
+                if (known[user] && null != exercise) {
+                    if (null == bodies) {
+                        String string;
+                        if (text < 0) {
+                            string = decode(in, offset, length);
+                        } else {
+                            if (null == texts[text]) {
+                                texts[text] = decode(in, offset, length);
+                            }
+                            string = texts[text];
+                        }
+                        records.add(new ReviewRecord(users[user], exercise, 
+                            credits, string, submitted, timestamp));
+                    } else {
+                        Review review = new Review(users[user], credits, 
+                            bodies, offset, length);
+                        if (submitted) {
+                            review.setSubmittedToServer();
+                        }
+                        review.setTimestamp(timestamp);
+                        ReviewClock.observe(timestamp);
+                        exercise.addReview(review);
+                    }
+                }
+                // unknown user or exercise not read, text is not decoded
+            }
+        } catch (BufferUnderflowException e) {
+            throw new EOFException();
+        } catch (IllegalArgumentException e) {
+            throw new EOFException();
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted snapshot", e);
+        }
+        data.addReviews(records);
+    }
+
+    /**
+     * Writes a length-prefixed string.
+     *
+     * @param out the output stream
+     * @param string the string to be written
+     * @return the number of bytes of the string (without the prefix)
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    private static int writeString(DataOutputStream out, String string)
+        throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        return bytes.length;
+    }
+
+    /**
+     * Reads a count or a length. As the counted elements must follow in 
+     * the buffer, the count is checked against the remaining bytes before
+     * arrays are allocated for it.
+     *
+     * @param in the input buffer
+     * @param elementSize the minimum number of bytes per counted element
+     * @return the count
+     * @throws IOException if the count is negative or exceeds the 
+     *     remaining bytes
+     *
+     * @since 2.2
+     */
+    private static int readCount(ByteBuffer in, int elementSize) 
+        throws IOException {
+        int count = in.getInt();
+        if (count < 0 || (long) count * elementSize > in.remaining()) {
+            throw new IOException("Corrupted snapshot");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a length-prefixed string.
+     *
+     * @param in the input buffer
+     * @return the string read
+     * @throws IOException if the length is negative or exceeds the 
+     *     remaining bytes
+     *
+     * @since 2.2
+     */
+    private static String readString(ByteBuffer in) throws IOException {
+        int length = readCount(in, 1);
+        int offset = in.position();
+        in.position(offset + length);
+        return decode(in, offset, length);
+    }
+
+    /**
+     * Decodes a string without changing the position of the buffer.
+     *
+     * @param in the input buffer
+     * @param offset the position of the string
+     * @param length the length of the string in bytes
+     * @return the string
+     *
+     * @since 2.2
+     */
+    private static String decode(ByteBuffer in, int offset, int length) {
+        ByteBuffer bytes = in.duplicate();
+        bytes.position(offset);
+        bytes.limit(offset + length);
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+}
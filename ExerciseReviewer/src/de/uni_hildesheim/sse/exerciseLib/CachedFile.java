@@ -0,0 +1,362 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Provides cached read access to a file. The contents are read in one 
+ * step via a file channel and readers and input streams obtained from this
+ * class decode directly from the cached buffer, i.e. the file contents are
+ * not copied through further intermediate buffers. The contents are reused
+ * as long as size and modification time of the file do not change, so 
+ * that repeatedly reading an unchanged file does not cause any further 
+ * file system access except for querying its attributes. Parts of a file
+ * can be read without caching the contents via 
+ * {@link #read(long, int)}.<br/>
+ *
+ * The file is not memory mapped, as a mapping cannot be released 
+ * explicitly before it is garbage collected and some platforms do not
+ * allow replacing a file while it is mapped. No file handle is kept open,
+ * i.e. the file can be replaced at any time. {@link #release()} frees
+ * the cached contents.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class CachedFile {
+
+    /**
+     * Stores the file to be cached.
+     *
+     * @since 2.2
+     */
+    private File file;
+
+    /**
+     * Stores the cached contents (<b>null</b> if not read).
+     *
+     * @since 2.2
+     */
+    private ByteBuffer contents;
+
+    /**
+     * Stores the file size at the time of reading.
+     *
+     * @since 2.2
+     */
+    private long cachedSize;
+
+    /**
+     * Stores the file modification time at the time of reading.
+     *
+     * @since 2.2
+     */
+    private long cachedTime;
+
+    /**
+     * Creates a new cached file. The file is read on first access.
+     *
+     * @param file the file to be cached
+     *
+     * @since 2.2
+     */
+    public CachedFile(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Returns the file.
+     *
+     * @return the file
+     *
+     * @since 2.2
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the contents of the file. The contents are read again if 
+     * size or modification time of the file changed.
+     *
+     * @return an independent read-only buffer positioned at the start of
+     *         the file
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    public synchronized ByteBuffer getContents() throws IOException {
+        long size = file.length();
+        long time = file.lastModified();
+        if (null == contents || size != cachedSize || time != cachedTime) {
+            contents = null;
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                long length = channel.size();
+                if (length > Integer.MAX_VALUE) {
+                    throw new IOException("file too large: " + file);
+                }
+                ByteBuffer buffer = ByteBuffer.allocate((int) length);
+                readFully(channel, buffer, 0);
+                buffer.flip();
+                cachedSize = length;
+                cachedTime = time;
+                contents = buffer.asReadOnlyBuffer();
+            } finally {
+                raf.close();
+            }
+        }
+        return contents.duplicate();
+    }
+
+    /**
+     * Reads a part of the file without caching the contents of the file.
+     *
+     * @param offset the byte offset of the part
+     * @param length the length of the part in bytes
+     * @return a buffer with the part positioned at its start
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails, e.g. the file is shorter than
+     *     the requested part
+     *
+     * @since 2.2
+     */
+    public ByteBuffer read(long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            readFully(raf.getChannel(), buffer, offset);
+        } finally {
+            raf.close();
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Fills the given buffer from the channel.
+     *
+     * @param channel the channel to read from
+     * @param buffer the buffer to fill
+     * @param offset the byte offset in the channel to start reading at
+     * @throws IOException if reading fails or the channel ends before the
+     *     buffer is filled
+     *
+     * @since 2.2
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, 
+        long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("unexpected end of file");
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Releases the cached contents.
+     *
+     * @since 2.2
+     */
+    public synchronized void release() {
+        contents = null;
+    }
+
+    /**
+     * Returns a reader decoding the contents of the file in the platform
+     * encoding (as {@link java.io.FileReader}).
+     *
+     * @return the reader
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    public Reader openReader() throws IOException {
+        return openReader(Charset.defaultCharset());
+    }
+
+    /**
+     * Returns a reader decoding the contents of the file. Malformed input
+     * is replaced as done by {@link java.io.InputStreamReader}.
+     *
+     * @param charset the charset of the file
+     * @return the reader
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    public Reader openReader(Charset charset) throws IOException {
+        return new BufferReader(getContents(), charset.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE));
+    }
+
+    /**
+     * Returns an input stream on the contents of the file.
+     *
+     * @return the input stream
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    public InputStream openStream() throws IOException {
+        return new BufferInputStream(getContents());
+    }
+
+    /**
+     * A reader decoding from a byte buffer.
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private static class BufferReader extends Reader {
+
+        /**
+         * Stores the buffer to decode from.
+         *
+         * @since 2.2
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Stores the decoder.
+         *
+         * @since 2.2
+         */
+        private CharsetDecoder decoder;
+
+        /**
+         * Stores if all bytes were decoded.
+         *
+         * @since 2.2
+         */
+        private boolean decoded;
+
+        /**
+         * Stores if the decoder was flushed, i.e. the end of the input
+         * was reached.
+         *
+         * @since 2.2
+         */
+        private boolean flushed;
+
+        /**
+         * Creates a new reader.
+         *
+         * @param buffer the buffer to decode from
+         * @param decoder the decoder
+         *
+         * @since 2.2
+         */
+        BufferReader(ByteBuffer buffer, CharsetDecoder decoder) {
+            this.buffer = buffer;
+            this.decoder = decoder;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+            int result = 0;
+            if (len > 0) {
+                CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+                if (!decoded) {
+                    CoderResult coderResult = decoder.decode(buffer, out,
+                        true);
+                    decoded = coderResult.isUnderflow();
+                }
+                if (decoded && !flushed) {
+                    flushed = decoder.flush(out).isUnderflow();
+                }
+                result = out.position() - off;
+                if (0 == result && flushed) {
+                    result = -1;
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+    /**
+     * An input stream reading from a byte buffer.
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private static class BufferInputStream extends InputStream {
+
+        /**
+         * Stores the buffer to read from.
+         *
+         * @since 2.2
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * Creates a new input stream.
+         *
+         * @param buffer the buffer to read from
+         *
+         * @since 2.2
+         */
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            int result = -1;
+            if (buffer.hasRemaining()) {
+                result = buffer.get() & 0xFF;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) {
+            int result = -1;
+            if (0 == len) {
+                result = 0;
+            } else if (buffer.hasRemaining()) {
+                result = Math.min(len, buffer.remaining());
+                buffer.get(bytes, off, result);
+            }
+            return result;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+
+        @Override
+        public void close() {
+        }
+
+    }
+
+}
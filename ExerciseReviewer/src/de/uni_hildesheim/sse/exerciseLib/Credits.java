@@ -0,0 +1,194 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Converts credits from and to their textual representation. Credits are
+ * handled with a precision of tenths and represented as fixed-point
+ * numbers, i.e. as <code>long</code> values counting tenths of credits.
+ * The methods of this class neither depend on the locale nor on shared
+ * mutable state and, thus, are thread-safe. Parsing and writing do not
+ * create intermediate objects.<br/>
+ *
+ * Textual credits consist of an optional sign, digits and an optional
+ * fraction separated by "." or "," (for compatibility with files written
+ * in locales using a decimal comma). Fractions with more than one digit
+ * are rounded half up to tenths. Credits are always written with "." and
+ * exactly one fraction digit.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class Credits {
+
+    /**
+     * Defines the number of fixed-point units per credit.
+     *
+     * @since 2.2
+     */
+    public static final int SCALE = 10;
+
+    /**
+     * Defines the maximum absolute fixed-point value which can be parsed
+     * without overflow.
+     *
+     * @since 2.2
+     */
+    private static final long MAX_VALUE = Long.MAX_VALUE / (SCALE * SCALE);
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     *
+     * @since 2.2
+     */
+    private Credits() {
+    }
+
+    /**
+     * Converts credits to their fixed-point representation.
+     *
+     * @param credits the credits
+     * @return the credits in tenths (rounded)
+     *
+     * @since 2.2
+     */
+    public static long toFixedPoint(double credits) {
+        return Math.round(credits * SCALE);
+    }
+
+    /**
+     * Converts fixed-point credits to a floating point number.
+     *
+     * @param value the credits in tenths
+     * @return the credits
+     *
+     * @since 2.2
+     */
+    public static double toDouble(long value) {
+        return value / (double) SCALE;
+    }
+
+    /**
+     * Parses textual credits.
+     *
+     * @param text the text to be parsed
+     * @return the credits in tenths
+     * @throws NumberFormatException if <code>text</code> does not denote
+     *         credits
+     *
+     * @since 2.2
+     */
+    public static long parse(CharSequence text) {
+        int length = text.length();
+        int pos = 0;
+        boolean negative = false;
+        if (length > 0 && ('-' == text.charAt(0) || '+' == text.charAt(0))) {
+            negative = '-' == text.charAt(0);
+            pos++;
+        }
+        long value = 0;
+        int digits = 0;
+        int fractionDigits = -1;
+        boolean roundUp = false;
+        for (; pos < length; pos++) {
+            char c = text.charAt(pos);
+            if (c >= '0' && c <= '9') {
+                if (fractionDigits < 0 || 0 == fractionDigits) {
+                    if (value > MAX_VALUE) {
+                        throw createException(text);
+                    }
+                    value = value * 10 + (c - '0');
+                } else if (1 == fractionDigits) {
+                    roundUp = c >= '5';
+                }
+                if (fractionDigits >= 0) {
+                    fractionDigits++;
+                }
+                digits++;
+            } else if (('.' == c || ',' == c) && fractionDigits < 0) {
+                fractionDigits = 0;
+            } else {
+                throw createException(text);
+            }
+        }
+        if (0 == digits) {
+            throw createException(text);
+        }
+        if (fractionDigits <= 0) {
+            value *= SCALE;
+        } else if (roundUp) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Creates the exception for unparseable credits.
+     *
+     * @param text the text which cannot be parsed
+     * @return the exception
+     *
+     * @since 2.2
+     */
+    private static NumberFormatException createException(CharSequence text) {
+        return new NumberFormatException("Invalid credits: \"" + text + "\"");
+    }
+
+    /**
+     * Writes fixed-point credits to the given writer.
+     *
+     * @param value the credits in tenths
+     * @param out the writer
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    public static void write(long value, Writer out) throws IOException {
+        if (value < 0) {
+            out.write('-');
+        }
+        long abs = Math.abs(value);
+        writeDigits(abs / SCALE, out);
+        out.write('.');
+        out.write((int) ('0' + abs % SCALE));
+    }
+
+    /**
+     * Writes the decimal digits of a non-negative number.
+     *
+     * @param number the number
+     * @param out the writer
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    private static void writeDigits(long number, Writer out)
+        throws IOException {
+        if (number >= 10) {
+            writeDigits(number / 10, out);
+        }
+        out.write((int) ('0' + number % 10));
+    }
+
+    /**
+     * Formats fixed-point credits.
+     *
+     * @param value the credits in tenths
+     * @return the textual credits
+     *
+     * @since 2.2
+     */
+    public static String format(long value) {
+        StringWriter out = new StringWriter();
+        try {
+            write(value, out);
+        } catch (IOException e) {
+            // not thrown by a string writer
+        }
+        return out.toString();
+    }
+
+}
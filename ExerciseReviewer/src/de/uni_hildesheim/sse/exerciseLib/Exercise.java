@@ -1,11 +1,23 @@
 package de.uni_hildesheim.sse.exerciseLib;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * Represents an exercise with assigned reviews.
+ * Represents an exercise with assigned reviews. The reviews are kept in
+ * an immutable {@link PersistentMap} which is replaced on modification, so
+ * that readers, e.g. label decorators, obtain a consistent state without
+ * locking while reviews are added concurrently. The reviews of an exercise
+ * read from a partitioned snapshot (see {@link SnapshotPartitions}) are
+ * loaded on first access. If loading fails, the exercise remains 
+ * unloaded, i.e. it is marked as unreadable (see {@link #getLoadFailure()})
+ * and loading is retried on the next access.
  * 
  * @author Holger Eichelberger
  * @since 1.00
@@ -14,11 +26,14 @@ import java.util.Map;
 public class Exercise implements Comparable<Exercise> {
 
     /**
-     * Stores the reviews according to the assigned user names.
+     * Stores the reviews according to the assigned user names. Modified
+     * by compare-and-set only.
      * 
      * @since 1.00
      */
-    private Map<String, Review> reviews = new HashMap<String, Review>();
+    private final AtomicReference<PersistentMap<String, Review>> reviews =
+        new AtomicReference<PersistentMap<String, Review>>(
+            PersistentMap.<String, Review>empty());
 
     /**
      * Stores the name (identification) of the exercise.
@@ -28,11 +43,43 @@ public class Exercise implements Comparable<Exercise> {
     private String name;
 
     /**
-     * Stores the maximum credit points for this exercise/task.
+     * Stores the maximum credit points for this exercise/task (in tenths,
+     * see {@link Credits}).
      * 
      * @since 1.00
      */
-    private double maxCredits;
+    private volatile long maxCredits;
+
+    /**
+     * Stores the loader of the reviews if they are not loaded yet, 
+     * <b>null</b> else.
+     * 
+     * @since 2.2
+     */
+    private volatile Loader loader;
+
+    /**
+     * Stores the users the reviews of which were removed while the 
+     * reviews could not be loaded. Guarded by this instance.
+     * 
+     * @since 2.2
+     */
+    private Set<String> removedUnloaded = new HashSet<String>();
+
+    /**
+     * Stores the failure of the last attempt to load the reviews, 
+     * <b>null</b> if the reviews are loaded or were not loaded yet.
+     * 
+     * @since 2.2
+     */
+    private volatile IOException loadFailure;
+
+    /**
+     * Stores the number of modifications of the reviews.
+     * 
+     * @since 2.2
+     */
+    private final AtomicLong revision = new AtomicLong();
 
     /**
      * Creates a new exercise instance.
@@ -45,8 +92,28 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.00
      */
     public Exercise(String name, double maxCredits) {
+        this.name = name;
+        this.maxCredits = Credits.toFixedPoint(maxCredits);
+    }
+
+    /**
+     * Creates a new exercise instance the reviews of which are loaded on
+     * first access.
+     * 
+     * @param name
+     *            the name/identification of this exercise
+     * @param maxCredits
+     *            the maximum number of credits in tenths (see 
+     *            {@link Credits})
+     * @param loader
+     *            the loader of the reviews
+     * 
+     * @since 2.2
+     */
+    Exercise(String name, long maxCredits, Loader loader) {
         this.name = name;
         this.maxCredits = maxCredits;
+        this.loader = loader;
     }
 
     /**
@@ -68,6 +135,17 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.00
      */
     public double getMaxCredits() {
+        return Credits.toDouble(maxCredits);
+    }
+
+    /**
+     * Returns the maximum number of credits as fixed-point number.
+     * 
+     * @return the maximum number of credits in tenths
+     * 
+     * @since 2.2
+     */
+    public long getMaxCreditsFixedPoint() {
         return maxCredits;
     }
 
@@ -80,7 +158,39 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.00
      */
     public void addReview(Review review) {
-        reviews.put(review.getUserName(), review);
+        String userName = review.getUserName();
+        PersistentMap<String, Review> current;
+        do {
+            current = getReviews();
+        } while (!reviews.compareAndSet(current, 
+            current.put(userName, review)));
+        revision.incrementAndGet();
+    }
+
+    /**
+     * Removes the review of the specified user.
+     * 
+     * @param userName
+     *            the user the review should be removed for
+     * @return the removed review (or <b>null</b> in the case that there
+     *         was no review)
+     * 
+     * @since 2.2
+     */
+    Review removeReview(String userName) {
+        if (null != loader) {
+            synchronized (this) {
+                if (null != loader) {
+                    removedUnloaded.add(userName);
+                }
+            }
+        }
+        PersistentMap<String, Review> current;
+        do {
+            current = getReviews();
+        } while (!reviews.compareAndSet(current, current.remove(userName)));
+        revision.incrementAndGet();
+        return current.get(userName);
     }
 
     /**
@@ -94,7 +204,7 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.00
      */
     public Review getReview(String userName) {
-        return reviews.get(userName);
+        return getReviews().get(userName);
     }
 
     /**
@@ -126,7 +236,7 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.08
      */
     public int getReviewCount() {
-        return reviews.size();
+        return getReviews().size();
     }
     
     /**
@@ -137,19 +247,152 @@ public class Exercise implements Comparable<Exercise> {
      * @since 1.08
      */
     public void setMaxCredits(int credits) {
-        this.maxCredits = credits;
+        this.maxCredits = (long) credits * Credits.SCALE;
+        revision.incrementAndGet();
     }
     
     /**
-     * Returns the user-review mappings.
+     * Changes the maximum number of credits.
+     * 
+     * @param credits the new number of credits in tenths (see 
+     *     {@link Credits})
+     * 
+     * @since 2.2
+     */
+    void setMaxCreditsFixedPoint(long credits) {
+        this.maxCredits = credits;
+        revision.incrementAndGet();
+    }
+
+    /**
+     * Returns the user-review mappings sorted by user name. The mappings
+     * reflect the reviews at the time of calling this method.
      * 
      * @return the user-review mappings
      * 
      * @since 1.10
      */
     Iterator<Map.Entry<String, Review>> userReviewMappings() {
-        return reviews.entrySet().iterator();
+        return getReviews().entries();
     }
 
-}
+    /**
+     * Returns the reviews, loads them if required. If loading fails, the
+     * reviews added meanwhile are returned and the failure is recorded 
+     * (see {@link #getLoadFailure()}).
+     * 
+     * @return the current reviews
+     * 
+     * @since 2.2
+     */
+    private PersistentMap<String, Review> getReviews() {
+        if (null != loader) {
+            try {
+                load();
+            } catch (IOException e) {
+                // recorded by load(), retried on next access
+            }
+        }
+        return reviews.get();
+    }
 
+    /**
+     * Loads the reviews if they are not loaded yet. Reviews added or 
+     * removed before loading, e.g. while loading failed, take precedence
+     * over the loaded ones.
+     * 
+     * @throws IOException if loading fails, the exercise remains unloaded
+     *     and is marked as unreadable
+     * 
+     * @since 2.2
+     */
+    synchronized void load() throws IOException {
+        Loader pending = loader;
+        if (null != pending) {
+            Collection<Review> loaded;
+            try {
+                loaded = pending.load();
+            } catch (IOException e) {
+                loadFailure = e;
+                throw e;
+            }
+            PersistentMap<String, Review> current;
+            PersistentMap<String, Review> merged;
+            do {
+                current = reviews.get();
+                merged = current;
+                for (Review review : loaded) {
+                    String userName = review.getUserName();
+                    if (null == merged.get(userName)
+                        && !removedUnloaded.contains(userName)) {
+                        merged = merged.put(userName, review);
+                    }
+                }
+            } while (!reviews.compareAndSet(current, merged));
+            loader = null;
+            loadFailure = null;
+            removedUnloaded.clear();
+        }
+    }
+
+    /**
+     * Returns if the reviews of this exercise are unreadable, i.e. if the
+     * last attempt to load them failed. Then, the reviews returned by this
+     * exercise are incomplete and only contain the reviews added since.
+     * 
+     * @return the failure of the last attempt to load the reviews, 
+     *     <b>null</b> if the reviews are loaded or were not accessed yet
+     * 
+     * @since 2.2
+     */
+    public IOException getLoadFailure() {
+        return loadFailure;
+    }
+
+    /**
+     * Returns if the reviews of this exercise are loaded.
+     * 
+     * @return <code>true</code> if the reviews are loaded, 
+     *     <code>false</code> if they are loaded on first access
+     * 
+     * @since 2.2
+     */
+    boolean isLoaded() {
+        return null == loader;
+    }
+
+    /**
+     * Returns the revision of this exercise, which changes whenever the
+     * reviews or the maximum number of credits are modified (but not when
+     * the reviews are loaded).
+     * 
+     * @return the revision
+     * 
+     * @since 2.2
+     */
+    long getRevision() {
+        return revision.get();
+    }
+
+    /**
+     * Loads the reviews of an exercise on first access.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    abstract static class Loader {
+
+        /**
+         * Loads the reviews. Reviews of unknown users are omitted.
+         * 
+         * @return the reviews
+         * @throws IOException if the reviews cannot be loaded
+         * 
+         * @since 2.2
+         */
+        abstract Collection<Review> load() throws IOException;
+
+    }
+
+}
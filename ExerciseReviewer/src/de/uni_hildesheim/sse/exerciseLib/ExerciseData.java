@@ -1,28 +1,30 @@
 package de.uni_hildesheim.sse.exerciseLib;
 
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
 import java.io.IOException;
-import java.io.LineNumberReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
-import java.text.DecimalFormat;
-import java.text.NumberFormat;
-import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
 
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewPublicMessage;
-import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.
     CommunicationException;
-import net.ssehub.exercisesubmitter.protocol.backend.NetworkException;
 import net.ssehub.exercisesubmitter.protocol.frontend.Assessment;
-import net.ssehub.exercisesubmitter.protocol.frontend.ExerciseReviewerProtocol;
 
 /**
  * Defines an internal data structure for keeping exercises.
@@ -33,14 +35,6 @@ import net.ssehub.exercisesubmitter.protocol.frontend.ExerciseReviewerProtocol;
  */
 public class ExerciseData {
 
-    /**
-     * Stores the text formatter for credits.
-     * 
-     * @since 1.00
-     */
-    private static final NumberFormat CREDIT_FORMATTER 
-        = new DecimalFormat("0.0");
-    
     /**
      * Defines the separator string (tabulator).
      * 
@@ -53,15 +47,59 @@ public class ExerciseData {
      * 
      * @since 1.00
      */
-    private static final String EMPTY_REVIEW = "-";
+    static final String EMPTY_REVIEW = "-";
+
+    /**
+     * Defines the number of header lines of the tabulator-separated format
+     * (exercise names, maximum credits).
+     * 
+     * @since 2.2
+     */
+    public static final int HEADER_LINES = 2;
+
+    /**
+     * Defines the number of columns per exercise in the current format 
+     * revision (credits, review text, review submitted, timestamp).
+     * 
+     * @since 2.2
+     */
+    private static final int EXERCISE_COLUMNS = 4;
+
+    /**
+     * Defines the number of columns per exercise in the initial format 
+     * revision (credits, review text, review submitted), i.e. without 
+     * timestamps.
+     * 
+     * @since 2.2
+     */
+    private static final int LEGACY_EXERCISE_COLUMNS = 3;
+
+    /**
+     * Defines the number of rows rendered by one task while storing in
+     * parallel.
+     * 
+     * @since 2.2
+     */
+    private static final int PARALLEL_BLOCK_ROWS = 256;
+
+    /**
+     * Defines the minimum number of characters parsed by one task while
+     * loading in parallel.
+     * 
+     * @since 2.2
+     */
+    private static final int PARALLEL_BLOCK_CHARS = 64 * 1024;
     
     /**
-     * Stores the exercises assigned to their names/identifications.
+     * Stores the exercises assigned to their names/identifications 
+     * (sorted by name). Modified by compare-and-set only, so that readers
+     * obtain a consistent state by a single read without locking.
      * 
      * @since 1.00
      */
-    private Map<String, Exercise> exercises =
-        new HashMap<String, Exercise>();
+    private final AtomicReference<PersistentMap<String, Exercise>> 
+        exercises = new AtomicReference<PersistentMap<String, Exercise>>(
+            PersistentMap.<String, Exercise>empty());
 
     /**
      * Stores the user data provider.
@@ -69,6 +107,22 @@ public class ExerciseData {
      * @since 1.10
      */
     private UserProvider provider;
+
+    /**
+     * Stores the names of the exercises to be read, <b>null</b> if all 
+     * exercises shall be read.
+     * 
+     * @since 2.2
+     */
+    private Set<String> projection;
+
+    /**
+     * Stores the loaded reviews whose assessments were not fetched yet 
+     * (see {@link #fetchAssessments()}). Guarded by itself.
+     * 
+     * @since 2.2
+     */
+    private List<Review> unfetched = new ArrayList<Review>();
     
     /**
      * Creates a new exercise data object.
@@ -80,16 +134,61 @@ public class ExerciseData {
     public ExerciseData(UserProvider provider) {
         this.provider = provider;
     }
+
+    /**
+     * Creates a new exercise data object which reads only the given 
+     * exercises, e.g. the task of the current reviewer workspace. The
+     * columns of all other exercises are skipped while reading without
+     * decoding them, i.e. memory and time for reading do not depend on
+     * the number of other exercises. As the other exercises are missing,
+     * the data shall not be stored over the file it was read from.
+     * 
+     * @param provider the user data provider
+     * @param exercises the names of the exercises to be read
+     * 
+     * @since 2.2
+     */
+    public ExerciseData(UserProvider provider, Collection<String> exercises) {
+        this(provider);
+        this.projection = new HashSet<String>(exercises);
+    }
+
+    /**
+     * Returns if this data structure reads only selected exercises (see 
+     * {@link #ExerciseData(UserProvider, Collection)}).
+     * 
+     * @return <code>true</code> if only selected exercises are read, 
+     *         <code>false</code> if all exercises are read
+     * 
+     * @since 2.2
+     */
+    public boolean isProjected() {
+        return null != projection;
+    }
+
+    /**
+     * Returns if an exercise shall be read.
+     * 
+     * @param name the name of the exercise
+     * @return <code>true</code> if the exercise shall be read, 
+     *         <code>false</code> if it shall be skipped
+     * 
+     * @since 2.2
+     */
+    boolean isRead(String name) {
+        return null == projection || projection.contains(name);
+    }
     
     /**
-     * Returns all exercises.
+     * Returns all exercises sorted by name. The iterator reflects the
+     * exercises at the time of calling this method.
      * 
      * @return all exercises as an iterator
      * 
      * @since 1.10
      */
     public Iterator<Exercise> exercises() {
-        return exercises.values().iterator();
+        return exercises.get().values().iterator();
     }
     
     /**
@@ -104,65 +203,131 @@ public class ExerciseData {
      */
     public boolean mergeWith(ExerciseData externalData) 
         throws CommunicationException {
-        boolean merged = false;
-        List<RealUser> allUsers = provider.getAllKnownUsers();
-        Map<String, Object> allGroups = new HashMap<String, Object>();
-        for (String group : RealUser.getAllGroups(allUsers)) {
-            allGroups.put(group, null);
-        }
-        for (Iterator<Map.Entry<String, Exercise>> iter = 
-                externalData.exercises.entrySet().iterator(); 
-            iter.hasNext();) {
-            Map.Entry<String, Exercise> entry = iter.next();
-            Exercise sourceExercise = entry.getValue();
-            if (!exercises.containsKey(sourceExercise.getName())) {
-                // merge complete exercise with not-existing one
-                
-                // cleanup unknown groups
-                for (Iterator<Map.Entry<String, Review>> rIter = 
-                        sourceExercise.userReviewMappings(); 
-                    rIter.hasNext();) {
-                    Map.Entry<String, Review> rEntry = rIter.next();
-                    Review review = rEntry.getValue();
-                    if (!allGroups.containsKey(review.getUserName())) {
-                        rIter.remove();
+        return merge(externalData).isMerged();
+    }
+
+    /**
+     * Merges this exercise data object with the given one. Each review 
+     * cell is treated as last-writer-wins register, i.e. the review with 
+     * the newer timestamp (see {@link ReviewClock}) is kept, ties are
+     * broken deterministically by the review contents (see 
+     * {@link Review#compareVersion(Review)}). Thus, merging is commutative
+     * and idempotent, i.e. files may be merged in any order, repeatedly or
+     * in parallel and yield the same reviews. Unversioned reviews (legacy
+     * files without timestamps) only fill in missing reviews, i.e. an
+     * existing unversioned review is kept. Reviews of users (groups) 
+     * unknown to the user index of this object are ignored. Exercises of
+     * <code>externalData</code> which are not contained in this object are
+     * taken over (without the ignored reviews), i.e. 
+     * <code>externalData</code> shall not be used afterwards. For exercises
+     * contained in both, the larger maximum number of credits is kept. The
+     * exercises are merged in parallel.
+     * 
+     * @param externalData the data to be merged
+     * @return the merge report
+     * @throws CommunicationException if any error occurred
+     * 
+     * @since 2.2
+     */
+    public MergeReport merge(ExerciseData externalData) 
+        throws CommunicationException {
+        final UserIndex index = provider.getUserIndex();
+        List<Callable<MergeReport>> tasks = 
+            new ArrayList<Callable<MergeReport>>();
+        Collection<Exercise> sourceList = 
+            externalData.exercises.get().values();
+        for (final Exercise sourceExercise : sourceList) {
+            final Exercise targetExercise = 
+                getExercise(sourceExercise.getName());
+            tasks.add(new Callable<MergeReport>() {
+                public MergeReport call() {
+                    return mergeExercise(sourceExercise, targetExercise, index);
+                }
+            });
+        }
+        MergeReport report = new MergeReport();
+        try {
+            List<MergeReport> results = ParallelTasks.invokeAll(tasks);
+            Iterator<Exercise> sources = sourceList.iterator();
+            for (MergeReport result : results) {
+                Exercise sourceExercise = sources.next();
+                Exercise targetExercise = 
+                    getExercise(sourceExercise.getName());
+                if (null == targetExercise) {
+                    if (sourceExercise.getReviewCount() > 0) {
+                        addExercise(sourceExercise);
                     }
+                } else if (sourceExercise.getMaxCreditsFixedPoint() 
+                    > targetExercise.getMaxCreditsFixedPoint()) {
+                    targetExercise.setMaxCreditsFixedPoint(
+                        sourceExercise.getMaxCreditsFixedPoint());
+                    report.changed();
                 }
+                report.addAll(result);
+            }
+        } catch (IOException e) {
+            throw new ReviewException(
+                ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE, e);
+        }
+        return report;
+    }
 
-                // add exercise
-                if (sourceExercise.getReviewCount() > 0) {
-                    addExercise(sourceExercise);
-                    merged = true;
+    /**
+     * Merges a single exercise. If there is no target exercise, reviews of
+     * unknown users are removed from <code>sourceExercise</code> so that it
+     * can be taken over as a whole.
+     * 
+     * @param sourceExercise the exercise to be merged
+     * @param targetExercise the exercise to merge into (<b>null</b> if 
+     *     there is none)
+     * @param index the user index denoting the known users
+     * @return the merge report for the exercise
+     * 
+     * @since 2.2
+     */
+    private static MergeReport mergeExercise(Exercise sourceExercise, 
+        Exercise targetExercise, UserIndex index) {
+        MergeReport report = new MergeReport();
+        String task = sourceExercise.getName();
+        for (Iterator<Map.Entry<String, Review>> rIter = 
+                sourceExercise.userReviewMappings(); rIter.hasNext();) {
+            Review review = rIter.next().getValue();
+            String user = review.getUserName();
+            if (null == index.getUser(user)) {
+                report.skipped(task, user);
+                if (null == targetExercise) {
+                    sourceExercise.removeReview(user);
                 }
+            } else if (null == targetExercise) {
+                report.added(task, user);
             } else {
-                // merge partial exercise with existing one
-
-                Exercise targetExercise = exercises.get(
-                    sourceExercise.getName());
-                for (Iterator<Map.Entry<String, Review>> rIter = 
-                        sourceExercise.userReviewMappings(); 
-                    rIter.hasNext();) {
-                    Map.Entry<String, Review> rEntry = rIter.next();
-                    Review review = rEntry.getValue();
-                    if (allGroups.containsKey(review.getUserName()) 
-                        && null == targetExercise.getReview(
-                            review.getUserName())) {
-                        targetExercise.addReview(review);
-                        merged = true;
-                    }
+                Review existing = targetExercise.getReview(user);
+                boolean newer = null == existing 
+                    || review.compareVersion(existing) > 0;
+                if (newer) {
+                    targetExercise.addReview(review);
+                }
+                if (null == existing) {
+                    report.added(task, user);
+                } else if (existing.getCreditsFixedPoint() 
+                    == review.getCreditsFixedPoint()
+                    && existing.getReview().equals(review.getReview())) {
+                    report.skipped(task, user, newer);
+                } else {
+                    report.conflicting(task, user, newer);
                 }
             }
         }
-        return merged;
+        return report;
     }
 
     /**
      * Loads the exercise data structure from the tabulator-separated 
      * file.<br/>
      * Structure:<br/> 
-     * User task1 review submitted task2 review submitted ... 
-     * *max*  4     4        4       5      5      5 
-     * user1  1    bad       5      ok      2     ok
+     * User task1 review submitted timestamp task2 review submitted ... 
+     * *max*  4     4        4         4       5      5      5 
+     * user1  1    bad     false   ts1       2     ok     true
      * 
      * @param in
      *            the input reader
@@ -181,9 +346,18 @@ public class ExerciseData {
      * Loads the exercise data structure from the tabulator-separated 
      * file.<br/>
      * Structure:<br/> 
-     * User task1 review submitted task2 review submitted ... 
-     * *max*  4     4        4       5      5      5 
-     * user1  1    bad       5      ok      2     ok
+     * User task1 review submitted timestamp task2 review submitted ... 
+     * *max*  4     4        4         4       5      5      5 
+     * user1  1    bad     false   ts1       2     ok     true
+     * <br/>
+     * The timestamp columns denote the versions of the reviews (see 
+     * {@link ReviewClock}). They were introduced by a later revision of
+     * the format, i.e. files of the initial revision with three columns 
+     * per exercise are read as well (timestamps are <code>0</code> then).
+     * The revision is derived from the number of subsequent equal exercise
+     * names in the first line. The assessments of all users in the file 
+     * are not fetched while reading, but in one step by a subsequent call
+     * of {@link #fetchAssessments()}.
      * 
      * @param in
      *            the input reader
@@ -198,67 +372,842 @@ public class ExerciseData {
      */
     public void load(Reader in, boolean throwOnMissingUser) 
         throws IOException, CommunicationException {
-        LineNumberReader reader = new LineNumberReader(in);
-        String line; 
+        load(in, throwOnMissingUser, false);
+    }
+
+    /**
+     * Loads the exercise data structure from the tabulator-separated 
+     * file (see {@link #load(Reader, boolean)}). In parallel mode, the 
+     * file is read completely and the rows after the header lines are 
+     * split at line boundaries into ranges, which are parsed concurrently
+     * on the common fork-join pool. The reviews are added in file order,
+     * i.e. the result is the same as in sequential mode.
+     * 
+     * @param in
+     *            the input reader (will be closed)
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     * @param parallel
+     *            <code>true</code> parse the rows in parallel, 
+     *            <code>false</code> parse sequentially
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    public void load(Reader in, boolean throwOnMissingUser, 
+        boolean parallel) throws IOException, CommunicationException {
+        addReviews(readRecords(in, throwOnMissingUser, parallel));
+    }
+
+    /**
+     * Loads the reviews of the given users (groups) from the 
+     * tabulator-separated file via its index, i.e. only the header lines 
+     * and the rows of these users are read (see {@link ReviewIndex}). In 
+     * combination with {@link #ExerciseData(UserProvider, Collection)}, 
+     * individual reviews can be looked up without reading the complete 
+     * file. Otherwise, reviews are loaded as by 
+     * {@link #load(Reader, boolean)}.
+     * 
+     * @param index
+     *            the index of the tabulator-separated file
+     * @param users
+     *            the names of the users (groups) to load the reviews for
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     * @throws IOException
+     *             if input/output problems occur, in particular if the
+     *             file changed after writing the index
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    public void load(ReviewIndex index, Collection<String> users, 
+        boolean throwOnMissingUser) throws IOException, 
+        CommunicationException {
+        load(index.read(users), throwOnMissingUser);
+    }
+
+    /**
+     * Reads the tabulator-separated file (see 
+     * {@link #load(Reader, boolean)}). The exercises are added to this 
+     * data structure, the reviews are returned as records without
+     * creating reviews.
+     * 
+     * @param in
+     *            the input reader (will be closed)
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be 
+     *            found, rows of unknown users are ignored else
+     * @return the review records read
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    List<ReviewRecord> readRecords(Reader in, boolean throwOnMissingUser) 
+        throws IOException, CommunicationException {
+        TsvScanner scanner = new TsvScanner(in);
         List<String> exerciseName = new ArrayList<String>();
-        do {
-            line = reader.readLine();
-            if (null != line) {
-                StringTokenizer tokenizer =
-                    new StringTokenizer(line, SEPARATOR);
-                int lineNr = reader.getLineNumber();
-                if (1 == reader.getLineNumber()) {
-                    readFirstLine(tokenizer, exerciseName, lineNr);
-                } else if (2 == reader.getLineNumber()) {
-                    readSecondLine(tokenizer, exerciseName, lineNr);
+        List<ReviewRecord> records = new ArrayList<ReviewRecord>();
+        int columns = EXERCISE_COLUMNS;
+        try {
+            while (scanner.nextLine()) {
+                int lineNr = scanner.getLineNumber();
+                if (1 == lineNr) {
+                    columns = readFirstLine(scanner, exerciseName, lineNr);
+                } else if (2 == lineNr) {
+                    readSecondLine(scanner, exerciseName, columns, lineNr);
                 } else {
-                    readOtherLines(tokenizer, exerciseName, lineNr, 
-                        throwOnMissingUser);
+                    readOtherLines(scanner, exerciseName, columns, lineNr, 
+                        throwOnMissingUser, records);
+                }
+            }
+        } finally {
+            scanner.close();
+        }
+        return records;
+    }
+
+    /**
+     * Reads the tabulator-separated file sequentially or in parallel (see
+     * {@link #load(Reader, boolean, boolean)}). The exercises are added to
+     * this data structure, the reviews are returned as records without
+     * creating reviews. The file is read sequentially if there is only a
+     * single thread in the common fork-join pool.
+     * 
+     * @param in
+     *            the input reader (will be closed)
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be 
+     *            found, rows of unknown users are ignored else
+     * @param parallel
+     *            <code>true</code> parse the rows in parallel, 
+     *            <code>false</code> parse sequentially
+     * @return the review records read (in file order)
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    List<ReviewRecord> readRecords(Reader in, boolean throwOnMissingUser, 
+        boolean parallel) throws IOException, CommunicationException {
+        List<ReviewRecord> result;
+        if (parallel && ParallelTasks.getParallelism() > 1) {
+            result = readRecordsParallel(in, throwOnMissingUser);
+        } else {
+            result = readRecords(in, throwOnMissingUser);
+        }
+        return result;
+    }
+
+    /**
+     * Reads the tabulator-separated file in parallel. The header lines are
+     * read first, then the remaining characters are split behind line 
+     * terminators into ranges of at least {@link #PARALLEL_BLOCK_CHARS}
+     * characters, which are parsed concurrently into partial record lists
+     * concatenated in file order. If a range fails, the rows are parsed 
+     * again sequentially, so that the first error in the file is reported
+     * with its line number as in sequential mode.
+     * 
+     * @param in
+     *            the input reader (will be closed)
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be 
+     *            found, rows of unknown users are ignored else
+     * @return the review records read (in file order)
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    List<ReviewRecord> readRecordsParallel(Reader in, 
+        final boolean throwOnMissingUser) 
+        throws IOException, CommunicationException {
+        final char[] chars = readFully(in);
+        final List<String> exerciseName = new ArrayList<String>();
+        int columns = EXERCISE_COLUMNS;
+        int dataStart = nextLineStart(chars, 
+            nextLineStart(chars, 0));
+        TsvScanner scanner = new TsvScanner(
+            new CharArrayReader(chars, 0, dataStart));
+        try {
+            if (scanner.nextLine()) {
+                columns = readFirstLine(scanner, exerciseName, 1);
+            }
+            if (scanner.nextLine()) {
+                readSecondLine(scanner, exerciseName, columns, 2);
+            }
+        } finally {
+            scanner.close();
+        }
+        final int exerciseColumns = columns;
+        int chunk = Math.max(PARALLEL_BLOCK_CHARS, (chars.length 
+            - dataStart) / (4 * ParallelTasks.getParallelism()));
+        List<Callable<List<ReviewRecord>>> tasks = 
+            new ArrayList<Callable<List<ReviewRecord>>>();
+        for (int start = dataStart; start < chars.length; ) {
+            final int from = start;
+            final int to = nextLineStart(chars, 
+                (int) Math.min((long) from + chunk, chars.length));
+            tasks.add(new Callable<List<ReviewRecord>>() {
+                public List<ReviewRecord> call() throws IOException {
+                    List<ReviewRecord> records = 
+                        new ArrayList<ReviewRecord>();
+                    try {
+                        readRows(chars, from, to, 0, exerciseName, 
+                            exerciseColumns, throwOnMissingUser, records);
+                    } catch (CommunicationException e) {
+                        // line number unknown here, reported below
+                        records = null;
+                    }
+                    return records;
                 }
+            });
+            start = to;
+        }
+        List<ReviewRecord> result = new ArrayList<ReviewRecord>();
+        boolean failed = false;
+        for (List<ReviewRecord> records : ParallelTasks.invokeAll(tasks)) {
+            if (null == records) {
+                failed = true;
+            } else {
+                result.addAll(records);
             }
-        } while (null != line);
-        reader.close();
+        }
+        if (failed) {
+            result.clear();
+            readRows(chars, dataStart, chars.length, HEADER_LINES, 
+                exerciseName, exerciseColumns, throwOnMissingUser, result);
+        }
+        return result;
+    }
+
+    /**
+     * Reads a range of rows behind the header lines of the 
+     * tabulator-separated file (see {@link #readOtherLines}).
+     * 
+     * @param chars
+     *            the characters of the file
+     * @param from
+     *            the start of the range, i.e. a line start
+     * @param to
+     *            the end of the range (exclusive), i.e. a line start or 
+     *            the end of the file
+     * @param linesBefore
+     *            the number of lines in front of <code>from</code> 
+     * @param exerciseName
+     *            the exercise names, <b>null</b> for skipped exercises
+     * @param columns the number of columns per exercise
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     * @param records 
+     *            the review records to be modified as a side effect 
+     *            in this method
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    private void readRows(char[] chars, int from, int to, int linesBefore, 
+        List<String> exerciseName, int columns, boolean throwOnMissingUser,
+        List<ReviewRecord> records) 
+        throws IOException, CommunicationException {
+        TsvScanner scanner = new TsvScanner(
+            new CharArrayReader(chars, from, to - from));
+        try {
+            while (scanner.nextLine()) {
+                readOtherLines(scanner, exerciseName, columns, 
+                    linesBefore + scanner.getLineNumber(), 
+                    throwOnMissingUser, records);
+            }
+        } finally {
+            scanner.close();
+        }
+    }
+
+    /**
+     * Reads all characters from a reader.
+     * 
+     * @param in the reader (will be closed)
+     * @return the characters read
+     * @throws IOException if input/output problems occur
+     * 
+     * @since 2.2
+     */
+    private static char[] readFully(Reader in) throws IOException {
+        CharArrayWriter out = new CharArrayWriter();
+        try {
+            char[] buffer = new char[8192];
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                out.write(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toCharArray();
+    }
+
+    /**
+     * Returns the start of the line following the given position, i.e.
+     * the position behind the next line terminator (<code>\n</code>, 
+     * <code>\r</code> or <code>\r\n</code> as for {@link TsvScanner}).
+     * 
+     * @param chars the characters
+     * @param pos the position to start searching at
+     * @return the start of the next line, the length of 
+     *     <code>chars</code> if there is no further line
+     * 
+     * @since 2.2
+     */
+    private static int nextLineStart(char[] chars, int pos) {
+        int result = pos;
+        while (result < chars.length && '\n' != chars[result] 
+            && '\r' != chars[result]) {
+            result++;
+        }
+        if (result < chars.length) {
+            if ('\r' == chars[result] && result + 1 < chars.length 
+                && '\n' == chars[result + 1]) {
+                result++;
+            }
+            result++;
+        }
+        return result;
+    }
+    
+    /**
+     * Loads the exercise data structure from the tabulator-separated file
+     * (see {@link #load(Reader, boolean)}) incrementally. If 
+     * <code>digests</code> were not {@link RowDigests#isIndexed() indexed}
+     * before, the complete file is loaded. Otherwise, only the rows which 
+     * changed since the digests were recorded are parsed and applied as 
+     * delta:
+     * <ul>
+     *  <li>Reviews in changed rows replace the current reviews unless the
+     *      current review has a newer timestamp, i.e. changes without new 
+     *      timestamp, e.g. made in a spreadsheet, are taken over.</li>
+     *  <li>Empty cells in changed rows as well as removed rows remove the 
+     *      current reviews unless they were changed after the 
+     *      {@link RowDigests#getBaseline() baseline}, i.e. local changes
+     *      which are not reflected by the file yet are kept.</li>
+     * </ul>
+     * If the header lines changed, nothing is applied and the caller shall
+     * load the complete file into a new data structure with new digests.
+     * Rows of unknown users are ignored until the users become known.
+     * 
+     * @param in
+     *            the input reader (will be closed)
+     * @param digests
+     *            the digests of the rows as read last, updated as a side 
+     *            effect
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     *            while loading the complete file
+     * @return the number of added, changed or removed rows, negative if 
+     *            the header lines changed
+     * @throws IOException
+     *             if input/output problems occur
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    public int loadChanges(Reader in, RowDigests digests, 
+        boolean throwOnMissingUser) throws IOException, 
+        CommunicationException {
+        boolean complete = !digests.isIndexed();
+        ChangeHandler handler = new ChangeHandler(
+            complete && throwOnMissingUser);
+        int changed = digests.scan(in, handler);
+        if (complete) {
+            addReviews(handler.records);
+        } else if (changed > 0) {
+            applyChanges(handler, digests.getBaseline());
+        }
+        return changed;
+    }
+
+    /**
+     * Applies the rows read by <code>handler</code> as delta (see 
+     * {@link #loadChanges(Reader, RowDigests, boolean)}).
+     * 
+     * @param handler the handler which read the changed rows
+     * @param baseline the timestamp of the latest change reflected by the
+     *     file before it changed
+     * 
+     * @since 2.2
+     */
+    private void applyChanges(ChangeHandler handler, long baseline) {
+        Map<String, Set<Exercise>> present = handler.changed;
+        List<ReviewRecord> apply = new ArrayList<ReviewRecord>();
+        for (ReviewRecord record : handler.records) {
+            String user = record.getUserName();
+            present.get(user).add(record.getExercise());
+            Review existing = record.getExercise().getReview(user);
+            if (null == existing 
+                || record.getTimestamp() >= existing.getTimestamp()) {
+                apply.add(record);
+            }
+        }
+        for (Map.Entry<String, Set<Exercise>> entry : present.entrySet()) {
+            removeReviews(entry.getKey(), entry.getValue(), baseline);
+        }
+        for (String user : handler.removed) {
+            if (!present.containsKey(user)) {
+                removeReviews(user, Collections.<Exercise>emptySet(), 
+                    baseline);
+            }
+        }
+        addReviews(apply);
+    }
+
+    /**
+     * Removes the reviews of a user which were not changed after the given
+     * baseline.
+     * 
+     * @param user the name of the user (group)
+     * @param keep the exercises to keep the reviews for
+     * @param baseline the baseline timestamp
+     * 
+     * @since 2.2
+     */
+    private void removeReviews(String user, Set<Exercise> keep, 
+        long baseline) {
+        for (Exercise exercise : exercises.get().values()) {
+            Review review = exercise.getReview(user);
+            if (null != review && !keep.contains(exercise) 
+                && review.getTimestamp() <= baseline) {
+                exercise.removeReview(user);
+            }
+        }
+    }
+
+    /**
+     * Returns the latest timestamp of all reviews.
+     * 
+     * @return the latest timestamp (see {@link ReviewClock}), 
+     *     <code>0</code> if there are no reviews with timestamp
+     * 
+     * @since 2.2
+     */
+    public long getLatestTimestamp() {
+        long result = 0;
+        for (Exercise exercise : exercises.get().values()) {
+            for (Iterator<Map.Entry<String, Review>> iter = 
+                exercise.userReviewMappings(); iter.hasNext();) {
+                result = Math.max(result, 
+                    iter.next().getValue().getTimestamp());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the tabulator-separated file for 
+     * {@link ExerciseData#loadChanges(Reader, RowDigests, boolean)}.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class ChangeHandler 
+        extends RowDigests.Handler<CommunicationException> {
+
+        /**
+         * Stores if an exception shall be thrown when an user cannot be 
+         * found.
+         * 
+         * @since 2.2
+         */
+        private boolean throwOnMissingUser;
+
+        /**
+         * Stores the exercise names in column order.
+         * 
+         * @since 2.2
+         */
+        private List<String> exerciseName = new ArrayList<String>();
+
+        /**
+         * Stores the number of columns per exercise.
+         * 
+         * @since 2.2
+         */
+        private int columns = EXERCISE_COLUMNS;
+
+        /**
+         * Stores the records of the rows read.
+         * 
+         * @since 2.2
+         */
+        private List<ReviewRecord> records = new ArrayList<ReviewRecord>();
+
+        /**
+         * Stores the users of the rows read and the exercises they have 
+         * reviews for (filled by {@link ExerciseData#applyChanges}).
+         * 
+         * @since 2.2
+         */
+        private Map<String, Set<Exercise>> changed = 
+            new HashMap<String, Set<Exercise>>();
+
+        /**
+         * Stores the users of the removed rows.
+         * 
+         * @since 2.2
+         */
+        private List<String> removed = new ArrayList<String>();
+
+        /**
+         * Creates a new handler.
+         * 
+         * @param throwOnMissingUser should an exception be thrown when an 
+         *     user cannot be found
+         * 
+         * @since 2.2
+         */
+        ChangeHandler(boolean throwOnMissingUser) {
+            this.throwOnMissingUser = throwOnMissingUser;
+        }
+
+        @Override
+        void header(TsvScanner scanner, boolean complete) 
+            throws CommunicationException {
+            int lineNr = scanner.getLineNumber();
+            if (1 == lineNr) {
+                columns = readFirstLine(scanner, exerciseName, lineNr);
+            } else if (complete) {
+                readSecondLine(scanner, exerciseName, columns, lineNr);
+            }
+        }
+
+        @Override
+        boolean row(TsvScanner scanner, String key, String name) 
+            throws CommunicationException {
+            boolean known = null != provider.getSubmissionUser(name);
+            if (known) {
+                if (!changed.containsKey(name)) {
+                    changed.put(name, new HashSet<Exercise>());
+                }
+                readRow(scanner, name, exerciseName, columns, 
+                    scanner.getLineNumber(), records);
+            } else if (throwOnMissingUser) {
+                throw new ReviewException(ReviewPublicMessage.NO_USER_FOUND, 
+                    new Throwable(), name);
+            }
+            return known;
+        }
+
+        @Override
+        void removed(String key, String name) {
+            removed.add(name);
+        }
+
+    }
+
+    /**
+     * Loads the exercise data structure from the binary snapshot format
+     * (see {@link BinarySnapshot}). As for {@link #load(Reader, boolean)},
+     * the assessments of all users in the snapshot are fetched in one 
+     * step by a subsequent call of {@link #fetchAssessments()}.
+     * 
+     * @param in
+     *            the input stream (will be closed)
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     * @throws IOException
+     *             if input/output problems occur or <code>in</code> is 
+     *             not a supported snapshot
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    public void loadSnapshot(InputStream in, boolean throwOnMissingUser) 
+        throws IOException, CommunicationException {
+        BinarySnapshot.read(this, provider, in, throwOnMissingUser);
+    }
+
+    /**
+     * Stores the exercise data structure in the binary snapshot format
+     * (see {@link BinarySnapshot}).
+     * 
+     * @param out
+     *            the output stream (will be closed)
+     * @throws IOException
+     *             if input/output problems occur
+     * 
+     * @since 2.2
+     */
+    public void storeSnapshot(OutputStream out) throws IOException {
+        BinarySnapshot.write(this, out, null);
+    }
+
+    /**
+     * Loads the exercise data structure lazily from the binary snapshot 
+     * file of <code>bodies</code>. In contrast to 
+     * {@link #loadSnapshot(InputStream, boolean)}, the review texts are 
+     * not decoded, i.e. credits and submission state are taken from the
+     * snapshot and the texts are decoded on first access (see 
+     * {@link ReviewBodies}). As for the other loading methods, the 
+     * assessments are fetched by a subsequent call of 
+     * {@link #fetchAssessments()}.
+     * 
+     * @param bodies
+     *            the provider of the review texts
+     * @param throwOnMissingUser 
+     *            should an exception be thrown when an user cannot be found
+     * @throws IOException
+     *             if input/output problems occur or the file is not a 
+     *             supported snapshot
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    public void loadSnapshot(ReviewBodies bodies, boolean throwOnMissingUser) 
+        throws IOException, CommunicationException {
+        BinarySnapshot.read(this, provider, bodies.open(), 
+            throwOnMissingUser, bodies);
+    }
+
+    /**
+     * Stores the exercise data structure in the binary snapshot format
+     * (see {@link BinarySnapshot}) in order to replace the snapshot file 
+     * of <code>bodies</code>. The reviews loaded lazily from 
+     * <code>bodies</code> are bound to the written snapshot when the file
+     * was replaced (see {@link ReviewBodies#endReplace(boolean)}).
+     * 
+     * @param out
+     *            the output stream (will be closed)
+     * @param bodies
+     *            the provider of the review texts, may be <b>null</b>
+     * @throws IOException
+     *             if input/output problems occur
+     * 
+     * @since 2.2
+     */
+    public void storeSnapshot(OutputStream out, ReviewBodies bodies) 
+        throws IOException {
+        BinarySnapshot.write(this, out, bodies);
+    }
+
+    /**
+     * Loads the exercise data structure from a partitioned binary snapshot
+     * (see {@link SnapshotPartitions}). Only the manifest is read, the
+     * reviews of an exercise are loaded from its segment on first access.
+     * Reviews of users which are unknown at that time are omitted.
+     *
+     * @param partitions
+     *            the partitioned snapshot
+     * @throws IOException
+     *             if input/output problems occur or the partitions are
+     *             not supported
+     *
+     * @since 2.2
+     */
+    public void loadSnapshot(SnapshotPartitions partitions)
+        throws IOException {
+        partitions.load(this, provider);
+    }
+
+    /**
+     * Adds the reviews of the partitioned binary snapshot which are newer
+     * than the tabulator-separated export the partitions were written
+     * with, unless this data structure contains newer reviews. Allows
+     * recovering the reviews stored since the last export after the export
+     * was modified by another program and loaded again.
+     *
+     * @param partitions
+     *            the partitioned snapshot
+     * @return the number of recovered reviews
+     * @throws IOException
+     *             if input/output problems occur or the partitions are
+     *             not supported
+     *
+     * @since 2.2
+     */
+    public int loadSnapshotChanges(SnapshotPartitions partitions)
+        throws IOException {
+        return partitions.recover(this, provider);
+    }
+
+    /**
+     * Renders the exercises modified since they were loaded from or
+     * written to <code>partitions</code> last (see
+     * {@link SnapshotPartitions}). The rendered segments are written by
+     * {@link SnapshotPartitions#commit()}, i.e. this data structure must
+     * not be modified only while rendering.
+     *
+     * @param partitions
+     *            the partitioned snapshot
+     * @param exported
+     *            the timestamp of the latest review reflected by the
+     *            tabulator-separated export of this data structure
+     * @throws IOException
+     *             if input/output problems occur
+     *
+     * @since 2.2
+     */
+    public void storeSnapshot(SnapshotPartitions partitions, long exported)
+        throws IOException {
+        partitions.stage(this, exported);
+    }
+
+    /**
+     * Turns the given review records into reviews carrying the credits 
+     * and texts of the records and adds them to their exercises. The 
+     * server is not contacted, the assessments are fetched later by 
+     * {@link #fetchAssessments()}.
+     * 
+     * @param records the review records to be added
+     * 
+     * @since 2.2
+     */
+    void addReviews(List<ReviewRecord> records) {
+        List<Review> reviews = new ArrayList<Review>(records.size());
+        for (ReviewRecord record : records) {
+            Review review = new Review(record.getUserName(), 
+                record.getCredits(), record.getText());
+            if (record.isSubmitted()) {
+                review.setSubmittedToServer();
+            }
+            review.setTimestamp(record.getTimestamp());
+            ReviewClock.observe(record.getTimestamp());
+            record.getExercise().addReview(review);
+            reviews.add(review);
+        }
+        synchronized (unfetched) {
+            unfetched.addAll(reviews);
+        }
+    }
+
+    /**
+     * Fetches the assessments of the reviews loaded since the last call
+     * and attaches them to the reviews. The assessments of all users
+     * (groups) are fetched in one step, i.e. they are taken from the 
+     * assessments loaded by the protocol in a single request and only the
+     * users missing there cause one further server request each (see 
+     * {@link AssessmentPrefetcher}) instead of one request per review 
+     * cell.
+     * As this method accesses the network, it shall not be called while
+     * holding locks on this data. If the server cannot be contacted, the
+     * reviews without assessment are fetched again by the next call.
+     * 
+     * @throws CommunicationException if the server cannot be contacted
+     * 
+     * @since 2.2
+     */
+    public void fetchAssessments() throws CommunicationException {
+        List<Review> reviews;
+        synchronized (unfetched) {
+            reviews = new ArrayList<Review>(unfetched);
+            unfetched.clear();
+        }
+        Set<String> userNames = new LinkedHashSet<String>();
+        for (Review review : reviews) {
+            userNames.add(review.getUserName());
+        }
+        Map<String, Assessment> assessments = 
+            new HashMap<String, Assessment>();
+        boolean fetched = false;
+        try {
+            AssessmentPrefetcher.fetch(userNames, assessments);
+            fetched = true;
+        } finally {
+            List<Review> failed = new ArrayList<Review>();
+            for (Review review : reviews) {
+                Assessment assessment = assessments.get(review.getUserName());
+                if (null != assessment) {
+                    review.attachAssessment(assessment);
+                } else if (!fetched) {
+                    failed.add(review);
+                }
+            }
+            synchronized (unfetched) {
+                unfetched.addAll(failed);
+            }
+        }
     }
 
     /**
      * Reads the first line in the exercise table. Called by
      * {@link #load(Reader)}.
      * 
-     * @param tokenizer
-     *            the current line split up by {@link #SEPARATOR}
+     * @param scanner
+     *            the scanner positioned at the current line
      * @param exerciseName
      *            the exercise names to be modified as a side effect in this
-     *            method
+     *            method, <b>null</b> for exercises to be skipped
      * @param lineNr the current line lumber
+     * @return the number of columns per exercise
+     * 
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
      * 
      * @since 1.11
      */
-    private void readFirstLine(StringTokenizer tokenizer,
-        List<String> exerciseName, int lineNr) {
-        if (tokenizer.hasMoreTokens()) {
-            tokenizer.nextToken();
-            while (tokenizer.hasMoreTokens()) {
-                exerciseName.add(tokenizer.nextToken());
-                if (tokenizer.hasMoreTokens()) {
-                    // ignore review text column
-                    tokenizer.nextToken();
-                }
-                if (tokenizer.hasMoreTokens()) {
-                    // ignore review submitted column
-                    tokenizer.nextToken();
-                }
+    private int readFirstLine(TsvScanner scanner,
+        List<String> exerciseName, int lineNr) 
+        throws CommunicationException {
+        List<String> header = new ArrayList<String>();
+        if (scanner.skipField()) {
+            while (scanner.nextField()) {
+                header.add(scanner.fieldToPooledString());
+            }
+        }
+        int columns = 1;
+        while (columns < header.size() 
+            && header.get(columns).equals(header.get(0))) {
+            columns++;
+        }
+        if (header.isEmpty()) {
+            columns = EXERCISE_COLUMNS;
+        } else if (columns != EXERCISE_COLUMNS 
+            && columns != LEGACY_EXERCISE_COLUMNS) {
+            throw createException(ReviewPublicMessage.INVALID_SYNTAX, 
+                new Throwable(), lineNr);
+        }
+        int last = 0;
+        for (int i = 0; i < header.size(); i += columns) {
+            String name = header.get(i);
+            if (isRead(name)) {
+                exerciseName.add(name);
+                last = exerciseName.size();
+            } else {
+                // column is skipped
+                exerciseName.add(null);
             }
         }
+        if (isProjected()) {
+            // no need to scan behind the last exercise to be read
+            exerciseName.subList(last, exerciseName.size()).clear();
+        }
+        return columns;
     }
 
     /**
      * Reads the second line in the exercise table. Called by
      * {@link #load(Reader)}.
      * 
-     * @param tokenizer
-     *            the current line split up by {@link #SEPARATOR}
+     * @param scanner
+     *            the scanner positioned at the current line
      * @param exerciseName
-     *            the exercise names
+     *            the exercise names, <b>null</b> for skipped exercises
+     * @param columns the number of columns per exercise
      * @param lineNr the current line lumber
      * 
      * @throws CommunicationException
@@ -266,35 +1215,33 @@ public class ExerciseData {
      * 
      * @since 1.11
      */
-    private void readSecondLine(StringTokenizer tokenizer,
-        List<String> exerciseName, int lineNr) 
+    private void readSecondLine(TsvScanner scanner,
+        List<String> exerciseName, int columns, int lineNr) 
         throws CommunicationException {
-        if (tokenizer.hasMoreTokens()) {
-            tokenizer.nextToken();
+        if (scanner.skipField()) {
             int pos = 0;
-            while (tokenizer.hasMoreTokens()) {
+            while (hasMoreColumns(scanner, exerciseName, pos)) {
                 try {
-                    Exercise ex =
-                        new Exercise(exerciseName.get(pos), 
-                            readCredits(tokenizer.nextToken()));
-                    addExercise(ex);
+                    String name = exerciseName.get(pos);
+                    if (null == name) {
+                        scanner.skipFields(columns);
+                    } else {
+                        scanner.nextField();
+                        Exercise ex = new Exercise(name, 
+                            Credits.toDouble(scanner.fieldToCredits()));
+                        addExercise(ex);
+                        // ignore review text, submitted and timestamp
+                        scanner.skipFields(columns - 1);
+                    }
                 } catch (NumberFormatException nfe) {
                     throw createException(
                         ReviewPublicMessage.INVALID_SYNTAX, 
                         nfe, lineNr);
-                } catch (ArrayIndexOutOfBoundsException ae) {
+                } catch (IndexOutOfBoundsException ae) {
                     throw createException(
                         ReviewPublicMessage.INVALID_SYNTAX, 
                         ae, lineNr);
                 }
-                if (tokenizer.hasMoreTokens()) {
-                    // ignore review text column
-                    tokenizer.nextToken();
-                }
-                if (tokenizer.hasMoreTokens()) {
-                    // ignore review submitted column
-                    tokenizer.nextToken();
-                }
                 pos++;
             }
         }
@@ -304,24 +1251,29 @@ public class ExerciseData {
      * Reads the other lines in the exercise table. Called by
      * {@link #load(Reader)}.
      * 
-     * @param tokenizer
-     *            the current line split up by {@link #SEPARATOR}
+     * @param scanner
+     *            the scanner positioned at the current line
      * @param exerciseName
-     *            the exercise names
+     *            the exercise names, <b>null</b> for skipped exercises
+     * @param columns the number of columns per exercise
      * @param lineNr the current line lumber
      * @param throwOnMissingUser 
      *            should an exception be thrown when an user cannot be found
+     * @param records 
+     *            the review records to be modified as a side effect 
+     *            in this method
      * 
      * @throws CommunicationException
      *             wrapped exceptions while reading
      * 
      * @since 1.11
      */
-    private void readOtherLines(StringTokenizer tokenizer,
-        List<String> exerciseName, int lineNr, boolean throwOnMissingUser) 
+    private void readOtherLines(TsvScanner scanner,
+        List<String> exerciseName, int columns, int lineNr, 
+        boolean throwOnMissingUser, List<ReviewRecord> records) 
         throws CommunicationException {
-        if (tokenizer.hasMoreTokens()) {
-            String user = tokenizer.nextToken();
+        if (scanner.nextField()) {
+            String user = scanner.fieldToPooledString();
             if (null == provider.getSubmissionUser(user)) {
                 if (throwOnMissingUser) {
                     throw new ReviewException(
@@ -329,30 +1281,84 @@ public class ExerciseData {
                         new Throwable(), user);
                 }
             } else {
-                int pos = 0;
-                while (tokenizer.hasMoreTokens()) {
-                    try {
-                        Exercise ex = getExercise(exerciseName.get(pos));
-                        double credits =
-                            readCredits(tokenizer.nextToken());
-                        if (tokenizer.hasMoreTokens()) {
-                            considerReview(tokenizer, user, credits, ex);
+                readRow(scanner, user, exerciseName, columns, lineNr, 
+                    records);
+            }
+        }
+    }
+
+    /**
+     * Reads the reviews of a (known) user in the exercise table.
+     * 
+     * @param scanner
+     *            the scanner positioned at the user field
+     * @param user 
+     *            the name of the user
+     * @param exerciseName
+     *            the exercise names, <b>null</b> for skipped exercises
+     * @param columns the number of columns per exercise
+     * @param lineNr the current line lumber
+     * @param records 
+     *            the review records to be modified as a side effect 
+     *            in this method
+     * 
+     * @throws CommunicationException
+     *             wrapped exceptions while reading
+     * 
+     * @since 2.2
+     */
+    private void readRow(TsvScanner scanner, String user, 
+        List<String> exerciseName, int columns, int lineNr, 
+        List<ReviewRecord> records) throws CommunicationException {
+        int pos = 0;
+        while (hasMoreColumns(scanner, exerciseName, pos)) {
+            try {
+                String name = exerciseName.get(pos);
+                if (null == name) {
+                    scanner.skipFields(columns);
+                } else {
+                    scanner.nextField();
+                    Exercise ex = getExercise(name);
+                    long credits = scanner.fieldToCredits();
+                    if (scanner.hasMoreFields()) {
+                        ReviewRecord record = considerReview(scanner, user, 
+                            credits, ex, columns);
+                        if (null != record) {
+                            records.add(record);
                         }
-                    } catch (NumberFormatException nfe) {
-                        throw createException(
-                            ReviewPublicMessage.INVALID_SYNTAX, 
-                            nfe, lineNr);
-                    } catch (ArrayIndexOutOfBoundsException ae) {
-                        throw createException(
-                            ReviewPublicMessage.INVALID_SYNTAX, 
-                            ae, lineNr);
                     }
-                    pos++;
                 }
+            } catch (NumberFormatException nfe) {
+                throw createException(
+                    ReviewPublicMessage.INVALID_SYNTAX, nfe, lineNr);
+            } catch (IndexOutOfBoundsException ae) {
+                throw createException(
+                    ReviewPublicMessage.INVALID_SYNTAX, ae, lineNr);
             }
+            pos++;
         }
     }
     
+    /**
+     * Returns if there are more exercise columns to be read in the current
+     * line. If only selected exercises are read, the columns behind the
+     * last selected exercise are not considered.
+     * 
+     * @param scanner the scanner positioned before the exercise columns
+     * @param exerciseName the exercise names in column order, 
+     *     <b>null</b> for skipped exercises
+     * @param pos the position of the exercise in <code>exerciseName</code>
+     * @return <code>true</code> if there are more columns, 
+     *     <code>false</code> else
+     * 
+     * @since 2.2
+     */
+    private boolean hasMoreColumns(TsvScanner scanner, 
+        List<String> exerciseName, int pos) {
+        return scanner.hasMoreFields() 
+            && (!isProjected() || pos < exerciseName.size());
+    }
+
     /**
      * Creates a new reviewer exception for a dedicated line number.
      * 
@@ -371,98 +1377,69 @@ public class ExerciseData {
     }
 
     /**
-     * Considers a review for creation while reading.
+     * Considers a review for creation while reading. The review itself is
+     * created later in {@link #addReviews(List)}.
      * 
-     * @param tokenizer the tokenizer of the current line
+     * @param scanner the scanner positioned before the review text column
      * @param user the user name of the currently handled user
-     * @param credits the number of credits read before
+     * @param credits the number of credits read before (in tenths)
      * @param ex the currently considered exercise
+     * @param columns the number of columns per exercise
+     * @return the record describing the review, <b>null</b> if the
+     *         cell denotes an empty review
+     * @throws NumberFormatException if the timestamp is invalid
      * 
      * @since 1.00
      */
-    private void considerReview(StringTokenizer tokenizer, String user, double credits, Exercise ex) {
-        Assessment assessment = null;
-        try {
-            // Not nice here, but the tool uses only one protocol instance -> Thus, it can be used that way
-            assessment = ((ExerciseReviewerProtocol) Activator.getProtocol()).getAssessmentForSubmission(user);
-        } catch (NetworkException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-        if (null != assessment) {
-            Review review = new Review(assessment);
-            ex.addReview(review);
-        }
-        
-//        String rev = unmask(tokenizer.nextToken());
-//        if (tokenizer.hasMoreTokens()) {
-//            String submitted = tokenizer.nextToken();
-//            if (!EMPTY_REVIEW.equals(rev)) {
-//                Review review =
-//                    new Review(assessment);
-//                if (Boolean.parseBoolean(submitted)) {
-//                    review.setSubmittedToServer();
-//                }
-//                ex.addReview(review);
-//            }
-//        }
-    }
-    
-    /**
-     * Masks the given string so that it can be stored
-     * in a tabulator-separated file.
-     * 
-     * @param string the string to be masked
-     * @return the masked string
-     * 
-     * @since 1.00
-     */
-    private String mask(String string) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < string.length(); i++) {
-            char c = string.charAt(i);
-            switch (c) {
-            case '\n':
-                builder.append("<*n*>");
-                break;
-            case '\r':
-                builder.append("<*r*>");
-                break;
-            case '\t':
-                builder.append("<*t*>");
-                break;
-            default:
-                builder.append(c);
-                break;
-            }
+    private ReviewRecord considerReview(TsvScanner scanner, String user, 
+        long credits, Exercise ex, int columns) {
+        scanner.nextField();
+        String rev = null;
+        if (!scanner.fieldEquals(EMPTY_REVIEW, false)) {
+            rev = ReviewTextCodec.unmask(scanner.field());
+        }
+        boolean submitted = false;
+        if (scanner.nextField()) {
+            submitted = scanner.fieldEquals(Boolean.TRUE.toString(), true);
         }
-        String result = builder.toString();
-        if (0 == result.length()) {
-            result = EMPTY_REVIEW;
+        long timestamp = 0;
+        if (EXERCISE_COLUMNS == columns && scanner.nextField()) {
+            timestamp = ReviewClock.parse(scanner.field());
+        }
+        ReviewRecord result = null;
+        if (null != rev) {
+            result = new ReviewRecord(user, ex, credits, rev, submitted, 
+                timestamp);
         }
         return result;
     }
-
+    
     /**
-     * Unmasks the given string so that a string that
-     * was stored in a tabulator-separated file can
-     * be displayed without additional substrings 
-     * introduced by {@link #mask(String)}.
+     * Writes out this data structure.
      * 
-     * @param string the string to be unmasked
-     * @return the unmasked string
+     * @param out
+     *            the output writer
+     * @param realUsers
+     *            <code>true</code> write each real user in one
+     *            line, <code>false</code> write lines for users 
+     *            (user groups) only
+     * @throws IOException
+     *             if input/output problems occur
      * 
      * @since 1.00
      */
-    private String unmask(String string) {
-        string = string.replace("<*t*>", "\t");
-        string = string.replace("<*n*>", "\n");
-        string = string.replace("<*r*>", "\r");
-        return string;
+    public void store(Writer out, boolean realUsers) throws IOException {
+        store(out, realUsers, false);
     }
 
     /**
-     * Writes out this data structure.
+     * Writes out this data structure. In parallel mode, blocks of rows 
+     * are rendered concurrently on the common fork-join pool into reusable
+     * buffers, which are written to <code>out</code> in order, i.e. the 
+     * output is the same as in sequential mode. The data structure must 
+     * not be modified while storing. Exercises the reviews of which cannot
+     * be loaded (see {@link SnapshotPartitions}) cause an exception 
+     * instead of an incomplete output.
      * 
      * @param out
      *            the output writer
@@ -470,19 +1447,22 @@ public class ExerciseData {
      *            <code>true</code> write each real user in one
      *            line, <code>false</code> write lines for users 
      *            (user groups) only
+     * @param parallel
+     *            <code>true</code> render the rows in parallel, 
+     *            <code>false</code> render sequentially
      * @throws IOException
      *             if input/output problems occur
      * 
-     * @since 1.00
+     * @since 2.2
      */
-    public void store(Writer out, boolean realUsers) throws IOException {
+    public void store(Writer out, boolean realUsers, boolean parallel) 
+        throws IOException {
         PrintWriter writer = new PrintWriter(out);
 
-        List<Exercise> exerciseList = new ArrayList<Exercise>();
-        for (Exercise ex : exercises.values()) {
-            exerciseList.add(ex);
+        Collection<Exercise> exerciseList = exercises.get().values();
+        for (Exercise exercise : exerciseList) {
+            exercise.load();
         }
-        Collections.sort(exerciseList);
 
         writer.print("user");
         writer.print(SEPARATOR);
@@ -499,6 +1479,9 @@ public class ExerciseData {
             // review submitted column
             writer.print(exercise.getName());
             writer.print(SEPARATOR);
+            // review timestamp column
+            writer.print(exercise.getName());
+            writer.print(SEPARATOR);
         }
         writer.println();
 
@@ -508,50 +1491,178 @@ public class ExerciseData {
             writer.print(SEPARATOR);
         }
         for (Exercise exercise : exerciseList) {
-            writer.print(formatCredits(exercise.getMaxCredits()));
+            long maxCredits = exercise.getMaxCreditsFixedPoint();
+            Credits.write(maxCredits, writer);
             writer.print(SEPARATOR);
             // review text column
-            writer.print(formatCredits(exercise.getMaxCredits()));
+            Credits.write(maxCredits, writer);
             writer.print(SEPARATOR);
             // review submitted column
-            writer.print(formatCredits(exercise.getMaxCredits()));
+            Credits.write(maxCredits, writer);
+            writer.print(SEPARATOR);
+            // review timestamp column
+            Credits.write(maxCredits, writer);
             writer.print(SEPARATOR);
         }
         writer.println();
 
-        List<User> userList = new ArrayList<User>();
-        List<RealUser> realUserList = new ArrayList<RealUser>();
-        Map<RealUser, User> realUserMap = new HashMap<RealUser, User>();
-        for (User user : provider.submissionUsers()) {
-            userList.add(user);
+        RowRenderer rows = new RowRenderer(exerciseList, 
+            provider.getUserIndex(), realUsers);
+        if (parallel && rows.getRowCount() > PARALLEL_BLOCK_ROWS) {
+            rows.storeRowsParallel(writer);
+        } else {
+            rows.storeRows(writer, 0, rows.getRowCount());
+        }
+
+        writer.close();
+    }
+
+    /**
+     * Renders the user rows of the exercise review table.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class RowRenderer {
+
+        /**
+         * Stores the exercises to be rendered (in column order).
+         * 
+         * @since 2.2
+         */
+        private Collection<Exercise> exerciseList;
+
+        /**
+         * Stores the user index.
+         * 
+         * @since 2.2
+         */
+        private UserIndex index;
+
+        /**
+         * Stores the real users to be rendered (<b>null</b> if user 
+         * groups are rendered).
+         * 
+         * @since 2.2
+         */
+        private List<RealUser> realUsers;
+
+        /**
+         * Stores the users (user groups).
+         * 
+         * @since 2.2
+         */
+        private List<User> users;
+
+        /**
+         * Creates a new row renderer.
+         * 
+         * @param exerciseList the exercises to be rendered
+         * @param index the user index
+         * @param realUsers <code>true</code> render each real user in one
+         *            line, <code>false</code> render lines for users 
+         *            (user groups) only
+         * 
+         * @since 2.2
+         */
+        RowRenderer(Collection<Exercise> exerciseList, UserIndex index, 
+            boolean realUsers) {
+            this.exerciseList = exerciseList;
+            this.index = index;
+            this.users = index.users();
             if (realUsers) {
-                for (Iterator<RealUser> iter = user.getRealUsers();
-                    iter.hasNext();) {
-                    RealUser ru = iter.next();
-                    realUserList.add(ru);
-                    realUserMap.put(ru, user);
+                this.realUsers = index.realUsers();
+            }
+        }
+
+        /**
+         * Returns the number of rows.
+         * 
+         * @return the number of rows
+         * 
+         * @since 2.2
+         */
+        int getRowCount() {
+            return null != realUsers ? realUsers.size() : users.size();
+        }
+
+        /**
+         * Renders a range of rows sequentially.
+         * 
+         * @param writer the output print writer
+         * @param from the first row to be rendered
+         * @param to the row after the last row to be rendered
+         * @throws IOException if input/output problems occur 
+         * 
+         * @since 2.2
+         */
+        void storeRows(PrintWriter writer, int from, int to) 
+            throws IOException {
+            for (int row = from; row < to; row++) {
+                if (null != realUsers) {
+                    RealUser realUser = realUsers.get(row);
+                    writer.print(realUser.getName());
+                    writer.print(SEPARATOR);
+                    writeSafe(writer, realUser.getSystemAccount());
+                    storeExercises(writer, exerciseList, 
+                        index.getUser(realUser));
+                } else {
+                    User user = users.get(row);
+                    writer.print(user.getUserName());
+                    storeExercises(writer, exerciseList, user);
                 }
             }
         }
 
-        if (realUsers) {
-            Collections.sort(realUserList);
-            for (RealUser realUser : realUserList) {
-                User user = realUserMap.get(realUser);
-                writer.print(realUser.getName());
-                writer.print(SEPARATOR);
-                writeSafe(writer, realUser.getSystemAccount());
-                storeExercises(writer, exerciseList, user);
+        /**
+         * Renders all rows in parallel. The rows are processed in rounds,
+         * each rendering one block of rows per available thread into a 
+         * buffer, which is reused in the next round after the buffers were
+         * written in order.
+         * 
+         * @param writer the output print writer
+         * @throws IOException if input/output problems occur 
+         * 
+         * @since 2.2
+         */
+        void storeRowsParallel(PrintWriter writer) throws IOException {
+            int rowCount = getRowCount();
+            int slots = Math.min(ParallelTasks.getParallelism(), 
+                (rowCount + PARALLEL_BLOCK_ROWS - 1) / PARALLEL_BLOCK_ROWS);
+            final CharArrayWriter[] buffers = new CharArrayWriter[slots];
+            final PrintWriter[] writers = new PrintWriter[slots];
+            for (int s = 0; s < slots; s++) {
+                buffers[s] = new CharArrayWriter();
+                writers[s] = new PrintWriter(buffers[s]);
             }
-        } else {
-            Collections.sort(userList);
-            for (User user : userList) {
-                writer.print(user.getUserName());
-                storeExercises(writer, exerciseList, user);
+            List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+            for (int start = 0; start < rowCount; 
+                start += slots * PARALLEL_BLOCK_ROWS) {
+                tasks.clear();
+                for (int s = 0; s < slots; s++) {
+                    final int slot = s;
+                    final int from = start + s * PARALLEL_BLOCK_ROWS;
+                    final int to = Math.min(from + PARALLEL_BLOCK_ROWS, 
+                        rowCount);
+                    buffers[slot].reset();
+                    if (from < to) {
+                        tasks.add(new Callable<Object>() {
+                            public Object call() throws IOException {
+                                storeRows(writers[slot], from, to);
+                                writers[slot].flush();
+                                return null;
+                            }
+                        });
+                    }
+                }
+                ParallelTasks.invokeAll(tasks);
+                for (int s = 0; s < slots; s++) {
+                    buffers[s].writeTo(writer);
+                }
             }
         }
 
-        writer.close();
     }
     
     /**
@@ -568,7 +1679,7 @@ public class ExerciseData {
     }
 
     /**
-     * Formats credits for output.
+     * Formats credits for output (see {@link Credits}).
      * 
      * @param credits the credits to be formatted
      * @return the formatted credits
@@ -576,11 +1687,11 @@ public class ExerciseData {
      * @since 1.00
      */
     public static final String formatCredits(double credits) {
-        return CREDIT_FORMATTER.format(credits);
+        return Credits.format(Credits.toFixedPoint(credits));
     }
     
     /**
-     * Converts credits from an input string.
+     * Converts credits from an input string (see {@link Credits}).
      * 
      * @param text the text to be converted to credits
      * @return the converted credits
@@ -590,21 +1701,7 @@ public class ExerciseData {
      * @since 1.00
      */
     public static final double readCredits(String text) {
-        try {
-            int pos1 = text.indexOf('.');
-            if (pos1 >= 0) {
-                int pos2 = text.indexOf('.', pos1 + 1);
-                if (pos2 < 0) {
-                    pos2 = text.indexOf(',');
-                    if (pos2 < 0) {
-                        text = text.replace(".", ",");
-                    }
-                }
-            }
-            return CREDIT_FORMATTER.parse(text).doubleValue();
-        } catch (ParseException ex) {
-            throw new NumberFormatException(ex.getMessage());
-        }
+        return Credits.toDouble(Credits.parse(text));
     }
 
     /**
@@ -622,19 +1719,21 @@ public class ExerciseData {
      *             if input/output problems occur 
      * @since 1.00
      */
-    private void storeExercises(PrintWriter writer, List<Exercise> 
+    private void storeExercises(PrintWriter writer, Collection<Exercise> 
         exerciseList, User user) throws IOException {
         writer.print(SEPARATOR);
+        String userName = user.getUserName();
         for (Exercise exercise : exerciseList) {
-            Review review =
-                getReview(exercise.getName(), user.getUserName());
+            Review review = exercise.getReview(userName);
             if (null != review) {
-                writer.print(formatCredits(review.getCredits()));
+                Credits.write(review.getCreditsFixedPoint(), writer);
                 writer.print(SEPARATOR);
-                writer.print(mask(review.getReview()));
+                ReviewTextCodec.mask(review.getReview(), writer);
                 writer.print(SEPARATOR);
                 writer.print(review.isSubmittedToServer());
                 writer.print(SEPARATOR);
+                writer.print(review.getTimestamp());
+                writer.print(SEPARATOR);
             } else {
                 writer.print(0);
                 writer.print(SEPARATOR);
@@ -642,6 +1741,8 @@ public class ExerciseData {
                 writer.print(SEPARATOR);
                 writer.print(false);
                 writer.print(SEPARATOR);
+                writer.print(0);
+                writer.print(SEPARATOR);
             }
         }
         writer.println();
@@ -656,7 +1757,12 @@ public class ExerciseData {
      * @since 1.00
      */
     public void addExercise(Exercise exercise) {
-        exercises.put(exercise.getName(), exercise);
+        String name = exercise.getName();
+        PersistentMap<String, Exercise> current;
+        do {
+            current = exercises.get();
+        } while (!exercises.compareAndSet(current, 
+            current.put(name, exercise)));
     }
 
     /**
@@ -670,7 +1776,7 @@ public class ExerciseData {
      * @since 1.00
      */
     public Exercise getExercise(String task) {
-        return exercises.get(task);
+        return exercises.get().get(task);
     }
 
     /**
@@ -686,7 +1792,7 @@ public class ExerciseData {
      * @since 1.00
      */
     public Review getReview(String task, String userName) {
-        Exercise exercise = exercises.get(task);
+        Exercise exercise = getExercise(task);
         Review result;
         if (null == exercise) {
             result = null;
@@ -704,10 +1810,7 @@ public class ExerciseData {
      * @since 1.08
      */
     public List<String> getAllExcerciseTasks() {
-        List<String> result = new ArrayList<String>();
-        result.addAll(exercises.keySet());
-        Collections.sort(result);
-        return result;
+        return new ArrayList<String>(exercises.get().keys());
     }
     
     /**
@@ -720,7 +1823,11 @@ public class ExerciseData {
      * @since 1.08
      */
     public boolean removeExerciseTask(String task) {
-        return exercises.remove(task) != null;
+        PersistentMap<String, Exercise> current;
+        do {
+            current = exercises.get();
+        } while (!exercises.compareAndSet(current, current.remove(task)));
+        return current.get(task) != null;
     }
     
 }
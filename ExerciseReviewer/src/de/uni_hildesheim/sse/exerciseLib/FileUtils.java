@@ -0,0 +1,137 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Some file utilities for crash-safe persistence.
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class FileUtils {
+
+    /**
+     * Defines the extension of temporary files written before they
+     * replace their target file.
+     * 
+     * @since 2.2
+     */
+    public static final String TEMP_EXTENSION = ".tmp";
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     * 
+     * @since 2.2
+     */
+    private FileUtils() {
+    }
+
+    /**
+     * Returns the temporary file to be written before replacing 
+     * <code>target</code>.
+     * 
+     * @param target the target file
+     * @return the temporary file
+     * 
+     * @since 2.2
+     */
+    public static File getTempFile(File target) {
+        return new File(target.getPath() + TEMP_EXTENSION);
+    }
+
+    /**
+     * Writes <code>data</code> to the temporary file of <code>target</code>
+     * (see {@link #getTempFile(File)}) and forces it to disk.
+     * 
+     * @param target the target file
+     * @param data the data to be written
+     * @return the temporary file
+     * @throws IOException if writing fails
+     * 
+     * @since 2.2
+     */
+    public static File writeTempFile(File target, byte[] data) 
+        throws IOException {
+        File tmp = getTempFile(target);
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            out.write(data);
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        return tmp;
+    }
+
+    /**
+     * Replaces <code>target</code> by <code>source</code> so that 
+     * <code>target</code> is either the old or the new file, even in 
+     * the case of a crash. Falls back to a non-atomic replacement if the
+     * file system does not support atomic moves.
+     * 
+     * @param source the source file (usually a forced temporary file)
+     * @param target the target file
+     * @throws IOException if moving fails
+     * 
+     * @since 2.2
+     */
+    public static void replace(File source, File target) throws IOException {
+        try {
+            Files.move(source.toPath(), target.toPath(), 
+                StandardCopyOption.ATOMIC_MOVE, 
+                StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source.toPath(), target.toPath(), 
+                StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /**
+     * Forces the directory entries of <code>dir</code> to disk if this
+     * is supported by the operating system.
+     * 
+     * @param dir the directory (may be <b>null</b>)
+     * 
+     * @since 2.2
+     */
+    private static void forceDirectory(File dir) {
+        if (null != dir) {
+            try {
+                FileChannel channel = FileChannel.open(dir.toPath(), 
+                    StandardOpenOption.READ);
+                try {
+                    channel.force(true);
+                } finally {
+                    channel.close();
+                }
+            } catch (IOException e) {
+                // not supported, e.g. on Windows
+            }
+        }
+    }
+
+    /**
+     * Deletes a temporary file left over by an interrupted write 
+     * of <code>target</code>.
+     * 
+     * @param target the target file
+     * 
+     * @since 2.2
+     */
+    public static void deleteTempFile(File target) {
+        File tmp = getTempFile(target);
+        if (tmp.exists()) {
+            tmp.delete();
+        }
+    }
+
+}
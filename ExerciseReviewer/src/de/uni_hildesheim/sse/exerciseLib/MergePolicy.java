@@ -0,0 +1,41 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+/**
+ * Defines how conflicting reviews, i.e. different reviews for the same 
+ * task and user (group), are resolved while merging review files (see 
+ * {@link ReviewFileMerger}).
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public enum MergePolicy {
+
+    /**
+     * Keeps the review seen first, i.e. reviews in the current data take
+     * precedence over merged files and earlier files take precedence over
+     * later ones.
+     * 
+     * @since 2.2
+     */
+    KEEP_EXISTING,
+    
+    /**
+     * Keeps the review seen last, i.e. later files take precedence over 
+     * earlier ones and merged files take precedence over the current data.
+     * 
+     * @since 2.2
+     */
+    REPLACE_EXISTING,
+
+    /**
+     * Keeps the review with the newer timestamp (see {@link ReviewClock}),
+     * i.e. the result does not depend on the order in which the files and
+     * the current data are merged (see 
+     * {@link ExerciseData#merge(ExerciseData)}).
+     * 
+     * @since 2.2
+     */
+    LAST_WRITER_WINS;
+    
+}
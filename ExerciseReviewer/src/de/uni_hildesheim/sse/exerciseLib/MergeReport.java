@@ -0,0 +1,276 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes the result of merging exercise data (see
+ * {@link ExerciseData#merge(ExerciseData)} and {@link ReviewFileMerger}) in
+ * terms of the review cells, i.e. pairs of task and user (group), 
+ * considered during the merge.
+ * <ul>
+ *  <li><i>added</i> cells were taken over from the merged data.</li>
+ *  <li><i>skipped</i> cells were not taken over as the user is not known
+ *      or as the same review is already present (possibly with an older
+ *      timestamp, which is updated then).</li>
+ *  <li><i>conflicting</i> cells were either not taken over as a different
+ *      review is already present or replaced that review, depending on
+ *      the {@link MergePolicy} or the timestamps of the reviews.</li>
+ * </ul>
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class MergeReport {
+
+    /**
+     * Stores the added cells.
+     *
+     * @since 2.2
+     */
+    private List<Cell> added = new ArrayList<Cell>();
+
+    /**
+     * Stores the skipped cells.
+     *
+     * @since 2.2
+     */
+    private List<Cell> skipped = new ArrayList<Cell>();
+
+    /**
+     * Stores the conflicting cells.
+     *
+     * @since 2.2
+     */
+    private List<Cell> conflicting = new ArrayList<Cell>();
+
+    /**
+     * Stores if the merge modified the target data.
+     *
+     * @since 2.2
+     */
+    private boolean modified;
+
+    /**
+     * Records an added cell.
+     *
+     * @param task the task of the cell
+     * @param user the user (group) of the cell
+     *
+     * @since 2.2
+     */
+    void added(String task, String user) {
+        added.add(new Cell(task, user));
+        modified = true;
+    }
+
+    /**
+     * Records a skipped cell.
+     *
+     * @param task the task of the cell
+     * @param user the user (group) of the cell
+     *
+     * @since 2.2
+     */
+    void skipped(String task, String user) {
+        skipped(task, user, false);
+    }
+
+    /**
+     * Records a skipped cell.
+     *
+     * @param task the task of the cell
+     * @param user the user (group) of the cell
+     * @param replaced whether the existing (same) review was replaced, 
+     *     e.g. to take over a newer timestamp
+     *
+     * @since 2.2
+     */
+    void skipped(String task, String user, boolean replaced) {
+        skipped.add(new Cell(task, user));
+        modified |= replaced;
+    }
+
+    /**
+     * Records that the target data was modified apart from review cells, 
+     * e.g. due to changed maximum credits.
+     *
+     * @since 2.2
+     */
+    void changed() {
+        modified = true;
+    }
+
+    /**
+     * Records a conflicting cell.
+     *
+     * @param task the task of the cell
+     * @param user the user (group) of the cell
+     *
+     * @since 2.2
+     */
+    void conflicting(String task, String user) {
+        conflicting(task, user, false);
+    }
+
+    /**
+     * Records a conflicting cell.
+     *
+     * @param task the task of the cell
+     * @param user the user (group) of the cell
+     * @param replaced whether the existing review was replaced
+     *
+     * @since 2.2
+     */
+    void conflicting(String task, String user, boolean replaced) {
+        conflicting.add(new Cell(task, user));
+        modified |= replaced;
+    }
+
+    /**
+     * Adds all cells recorded by the given report to this report.
+     *
+     * @param report the report to be added
+     *
+     * @since 2.2
+     */
+    public void addAll(MergeReport report) {
+        added.addAll(report.added);
+        skipped.addAll(report.skipped);
+        conflicting.addAll(report.conflicting);
+        modified |= report.modified;
+    }
+
+    /**
+     * Returns if data was merged, i.e. if cells were added or replaced or
+     * if exercises were changed.
+     *
+     * @return <code>true</code> if data was merged, <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean isMerged() {
+        return modified;
+    }
+
+    /**
+     * Returns the added cells.
+     *
+     * @return the added cells
+     *
+     * @since 2.2
+     */
+    public List<Cell> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    /**
+     * Returns the skipped cells.
+     *
+     * @return the skipped cells
+     *
+     * @since 2.2
+     */
+    public List<Cell> getSkipped() {
+        return Collections.unmodifiableList(skipped);
+    }
+
+    /**
+     * Returns the conflicting cells.
+     *
+     * @return the conflicting cells
+     *
+     * @since 2.2
+     */
+    public List<Cell> getConflicting() {
+        return Collections.unmodifiableList(conflicting);
+    }
+
+    /**
+     * Returns a textual summary of this report.
+     *
+     * @return the summary
+     *
+     * @since 2.2
+     */
+    @Override
+    public String toString() {
+        return "added: " + added.size() + ", skipped: " + skipped.size()
+            + ", conflicting: " + conflicting.size();
+    }
+
+    /**
+     * Denotes a review cell.
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    public static class Cell {
+
+        /**
+         * Stores the task.
+         *
+         * @since 2.2
+         */
+        private String task;
+
+        /**
+         * Stores the user (group).
+         *
+         * @since 2.2
+         */
+        private String user;
+
+        /**
+         * Creates a new cell.
+         *
+         * @param task the task
+         * @param user the user (group)
+         *
+         * @since 2.2
+         */
+        Cell(String task, String user) {
+            this.task = task;
+            this.user = user;
+        }
+
+        /**
+         * Returns the task.
+         *
+         * @return the task
+         *
+         * @since 2.2
+         */
+        public String getTask() {
+            return task;
+        }
+
+        /**
+         * Returns the user (group).
+         *
+         * @return the user name
+         *
+         * @since 2.2
+         */
+        public String getUser() {
+            return user;
+        }
+
+        /**
+         * Returns a textual representation of this cell.
+         *
+         * @return the textual representation
+         *
+         * @since 2.2
+         */
+        @Override
+        public String toString() {
+            return task + "/" + user;
+        }
+
+    }
+
+}
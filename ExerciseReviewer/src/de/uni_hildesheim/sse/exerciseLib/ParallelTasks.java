@@ -0,0 +1,77 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Executes independent tasks on the common fork-join pool and waits for
+ * their results.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class ParallelTasks {
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     *
+     * @since 2.2
+     */
+    private ParallelTasks() {
+    }
+
+    /**
+     * Returns the number of tasks which are executed in parallel.
+     *
+     * @return the parallelism (at least 1)
+     *
+     * @since 2.2
+     */
+    static int getParallelism() {
+        return Math.max(1, ForkJoinPool.commonPool().getParallelism());
+    }
+
+    /**
+     * Executes the given tasks and waits for their completion.
+     *
+     * @param <T> the result type of the tasks
+     * @param tasks the tasks to be executed
+     * @return the results of the tasks in the order of <code>tasks</code>
+     * @throws IOException if a task failed due to input/output problems
+     *     or if waiting was interrupted ({@link InterruptedIOException})
+     *
+     * @since 2.2
+     */
+    static <T> List<T> invokeAll(List<? extends Callable<T>> tasks)
+        throws IOException {
+        List<T> results = new ArrayList<T>(tasks.size());
+        try {
+            for (Future<T> future
+                : ForkJoinPool.commonPool().invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+        return results;
+    }
+
+}
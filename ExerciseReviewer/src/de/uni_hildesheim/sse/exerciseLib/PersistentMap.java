@@ -0,0 +1,543 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements an immutable map sorted by its keys. Modifications return a
+ * new map which shares all unchanged parts with the original map (path
+ * copying in a balanced AVL tree), i.e. they require logarithmic time and
+ * space. As instances never change, they can be read by any number of
+ * threads without synchronization. Mutable holders shall publish new
+ * versions via a volatile reference, e.g. by compare-and-set on an
+ * {@link java.util.concurrent.atomic.AtomicReference}, so that readers
+ * obtain a consistent version by a single volatile read.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the values
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+final class PersistentMap<K extends Comparable<? super K>, V> {
+
+    /**
+     * Stores the empty map.
+     *
+     * @since 2.2
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static final PersistentMap EMPTY = new PersistentMap(null);
+
+    /**
+     * Stores the root node, <b>null</b> if the map is empty.
+     *
+     * @since 2.2
+     */
+    private final Node<K, V> root;
+
+    /**
+     * Creates a new map.
+     *
+     * @param root the root node, <b>null</b> for the empty map
+     *
+     * @since 2.2
+     */
+    private PersistentMap(Node<K, V> root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the empty map.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @return the empty map
+     *
+     * @since 2.2
+     */
+    @SuppressWarnings("unchecked")
+    static <K extends Comparable<? super K>, V> PersistentMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Returns the number of mappings.
+     *
+     * @return the number of mappings
+     *
+     * @since 2.2
+     */
+    int size() {
+        return size(root);
+    }
+
+    /**
+     * Returns the height of the tree, which is logarithmic in the number
+     * of mappings as the tree is balanced.
+     *
+     * @return the height, <code>0</code> for the empty map
+     *
+     * @since 2.2
+     */
+    int height() {
+        return height(root);
+    }
+
+    /**
+     * Returns the value mapped to a key.
+     *
+     * @param key the key
+     * @return the value, <b>null</b> if there is no mapping for
+     *     <code>key</code>
+     *
+     * @since 2.2
+     */
+    V get(K key) {
+        V result = null;
+        Node<K, V> node = root;
+        while (null != node) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                node = node.right;
+            } else {
+                result = node.value;
+                node = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns a map with the given mapping added or replaced.
+     *
+     * @param key the key
+     * @param value the value
+     * @return the modified map, this map if the mapping exists already
+     *
+     * @since 2.2
+     */
+    PersistentMap<K, V> put(K key, V value) {
+        Node<K, V> node = put(root, key, value);
+        return node == root ? this : new PersistentMap<K, V>(node);
+    }
+
+    /**
+     * Returns a map without the mapping for the given key.
+     *
+     * @param key the key
+     * @return the modified map, this map if there is no mapping for
+     *     <code>key</code>
+     *
+     * @since 2.2
+     */
+    PersistentMap<K, V> remove(K key) {
+        Node<K, V> node = remove(root, key);
+        return node == root ? this : new PersistentMap<K, V>(node);
+    }
+
+    /**
+     * Returns the mappings in ascending order of their keys. The entries
+     * do not support {@link Map.Entry#setValue(Object)}.
+     *
+     * @return the mappings
+     *
+     * @since 2.2
+     */
+    Iterator<Map.Entry<K, V>> entries() {
+        return new EntryIterator<K, V>(root);
+    }
+
+    /**
+     * Returns the keys in ascending order.
+     *
+     * @return the keys as (unmodifiable) collection
+     *
+     * @since 2.2
+     */
+    Collection<K> keys() {
+        return new AbstractCollection<K>() {
+
+            @Override
+            public Iterator<K> iterator() {
+                final Iterator<Map.Entry<K, V>> iter = entries();
+                return new Iterator<K>() {
+
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    public K next() {
+                        return iter.next().getKey();
+                    }
+
+                };
+            }
+
+            @Override
+            public int size() {
+                return PersistentMap.this.size();
+            }
+
+        };
+    }
+
+    /**
+     * Returns the values in ascending order of their keys.
+     *
+     * @return the values as (unmodifiable) collection
+     *
+     * @since 2.2
+     */
+    Collection<V> values() {
+        return new AbstractCollection<V>() {
+
+            @Override
+            public Iterator<V> iterator() {
+                final Iterator<Map.Entry<K, V>> iter = entries();
+                return new Iterator<V>() {
+
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+
+                    public V next() {
+                        return iter.next().getValue();
+                    }
+
+                };
+            }
+
+            @Override
+            public int size() {
+                return PersistentMap.this.size();
+            }
+
+        };
+    }
+
+    /**
+     * Returns the size of a subtree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param node the root of the subtree, may be <b>null</b>
+     * @return the number of nodes in the subtree
+     *
+     * @since 2.2
+     */
+    private static <K, V> int size(Node<K, V> node) {
+        return null == node ? 0 : node.size;
+    }
+
+    /**
+     * Returns the height of a subtree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param node the root of the subtree, may be <b>null</b>
+     * @return the height of the subtree
+     *
+     * @since 2.2
+     */
+    private static <K, V> int height(Node<K, V> node) {
+        return null == node ? 0 : node.height;
+    }
+
+    /**
+     * Adds or replaces a mapping in a subtree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param node the root of the subtree, may be <b>null</b>
+     * @param key the key
+     * @param value the value
+     * @return the root of the modified subtree, <code>node</code> if the
+     *     mapping exists already
+     *
+     * @since 2.2
+     */
+    private static <K extends Comparable<? super K>, V> Node<K, V> put(
+        Node<K, V> node, K key, V value) {
+        Node<K, V> result;
+        if (null == node) {
+            result = new Node<K, V>(key, value, null, null);
+        } else {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                Node<K, V> left = put(node.left, key, value);
+                result = left == node.left ? node
+                    : balance(node.key, node.value, left, node.right);
+            } else if (cmp > 0) {
+                Node<K, V> right = put(node.right, key, value);
+                result = right == node.right ? node
+                    : balance(node.key, node.value, node.left, right);
+            } else if (value == node.value) {
+                result = node;
+            } else {
+                result = new Node<K, V>(key, value, node.left, node.right);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes a mapping from a subtree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param node the root of the subtree, may be <b>null</b>
+     * @param key the key
+     * @return the root of the modified subtree, <code>node</code> if there
+     *     is no mapping for <code>key</code>
+     *
+     * @since 2.2
+     */
+    private static <K extends Comparable<? super K>, V> Node<K, V> remove(
+        Node<K, V> node, K key) {
+        Node<K, V> result = node;
+        if (null != node) {
+            int cmp = key.compareTo(node.key);
+            if (cmp < 0) {
+                Node<K, V> left = remove(node.left, key);
+                if (left != node.left) {
+                    result = balance(node.key, node.value, left, node.right);
+                }
+            } else if (cmp > 0) {
+                Node<K, V> right = remove(node.right, key);
+                if (right != node.right) {
+                    result = balance(node.key, node.value, node.left, right);
+                }
+            } else if (null == node.left) {
+                result = node.right;
+            } else if (null == node.right) {
+                result = node.left;
+            } else {
+                Node<K, V> min = node.right;
+                while (null != min.left) {
+                    min = min.left;
+                }
+                result = balance(min.key, min.value, node.left,
+                    removeMin(node.right));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the smallest mapping from a (non-empty) subtree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param node the root of the subtree
+     * @return the root of the modified subtree
+     *
+     * @since 2.2
+     */
+    private static <K, V> Node<K, V> removeMin(Node<K, V> node) {
+        return null == node.left ? node.right
+            : balance(node.key, node.value, removeMin(node.left), node.right);
+    }
+
+    /**
+     * Creates a balanced subtree from a mapping and two subtrees whose
+     * heights differ by at most two.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     * @param key the key of the mapping
+     * @param value the value of the mapping
+     * @param left the left subtree
+     * @param right the right subtree
+     * @return the root of the balanced subtree
+     *
+     * @since 2.2
+     */
+    private static <K, V> Node<K, V> balance(K key, V value,
+        Node<K, V> left, Node<K, V> right) {
+        Node<K, V> result;
+        if (height(left) > height(right) + 1) {
+            if (height(left.left) >= height(left.right)) {
+                result = new Node<K, V>(left.key, left.value, left.left,
+                    new Node<K, V>(key, value, left.right, right));
+            } else {
+                Node<K, V> inner = left.right;
+                result = new Node<K, V>(inner.key, inner.value,
+                    new Node<K, V>(left.key, left.value, left.left,
+                        inner.left),
+                    new Node<K, V>(key, value, inner.right, right));
+            }
+        } else if (height(right) > height(left) + 1) {
+            if (height(right.right) >= height(right.left)) {
+                result = new Node<K, V>(right.key, right.value,
+                    new Node<K, V>(key, value, left, right.left),
+                    right.right);
+            } else {
+                Node<K, V> inner = right.left;
+                result = new Node<K, V>(inner.key, inner.value,
+                    new Node<K, V>(key, value, left, inner.left),
+                    new Node<K, V>(right.key, right.value, inner.right,
+                        right.right));
+            }
+        } else {
+            result = new Node<K, V>(key, value, left, right);
+        }
+        return result;
+    }
+
+    /**
+     * Represents an (immutable) node of the tree.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private static final class Node<K, V> implements Map.Entry<K, V> {
+
+        /**
+         * Stores the key.
+         *
+         * @since 2.2
+         */
+        private final K key;
+
+        /**
+         * Stores the value.
+         *
+         * @since 2.2
+         */
+        private final V value;
+
+        /**
+         * Stores the left subtree (smaller keys).
+         *
+         * @since 2.2
+         */
+        private final Node<K, V> left;
+
+        /**
+         * Stores the right subtree (larger keys).
+         *
+         * @since 2.2
+         */
+        private final Node<K, V> right;
+
+        /**
+         * Stores the height of the subtree.
+         *
+         * @since 2.2
+         */
+        private final int height;
+
+        /**
+         * Stores the number of nodes in the subtree.
+         *
+         * @since 2.2
+         */
+        private final int size;
+
+        /**
+         * Creates a new node.
+         *
+         * @param key the key
+         * @param value the value
+         * @param left the left subtree, may be <b>null</b>
+         * @param right the right subtree, may be <b>null</b>
+         *
+         * @since 2.2
+         */
+        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
+            this.key = key;
+            this.value = value;
+            this.left = left;
+            this.right = right;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = size(left) + size(right) + 1;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
+        }
+
+    }
+
+    /**
+     * Iterates over the nodes of a tree in ascending order of their keys.
+     *
+     * @param <K> the type of the keys
+     * @param <V> the type of the values
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private static final class EntryIterator<K, V>
+        implements Iterator<Map.Entry<K, V>> {
+
+        /**
+         * Stores the path to the next node.
+         *
+         * @since 2.2
+         */
+        private Deque<Node<K, V>> path = new ArrayDeque<Node<K, V>>();
+
+        /**
+         * Creates a new iterator.
+         *
+         * @param root the root of the tree, may be <b>null</b>
+         *
+         * @since 2.2
+         */
+        private EntryIterator(Node<K, V> root) {
+            descend(root);
+        }
+
+        /**
+         * Pushes the path to the smallest node of a subtree.
+         *
+         * @param node the root of the subtree, may be <b>null</b>
+         *
+         * @since 2.2
+         */
+        private void descend(Node<K, V> node) {
+            while (null != node) {
+                path.push(node);
+                node = node.left;
+            }
+        }
+
+        public boolean hasNext() {
+            return !path.isEmpty();
+        }
+
+        public Map.Entry<K, V> next() {
+            if (path.isEmpty()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = path.pop();
+            descend(node.right);
+            return node;
+        }
+
+    }
+
+}
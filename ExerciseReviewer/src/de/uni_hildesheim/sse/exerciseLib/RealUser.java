@@ -4,7 +4,6 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.PrintWriter;
 import java.io.Reader;
 import java.io.Writer;
@@ -13,7 +12,6 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
 
 /**
  * Stores the data of a real user.
@@ -249,42 +247,108 @@ public class RealUser implements Comparable<RealUser> {
     public static List<RealUser> readRealUserList(Reader usersFile)
         throws IOException {
         List<RealUser> result = new ArrayList<RealUser>();
-        LineNumberReader lnis =
-            new LineNumberReader(usersFile);
-        String line;
-        do {
-            line = lnis.readLine();
-            if (null != line) {
-                StringTokenizer tokens = new StringTokenizer(line, 
-                    SEPARATOR);
-                if (tokens.hasMoreTokens()) {
-                    String group = tokens.nextToken();
-                    while (tokens.hasMoreTokens()) {
-                        String name = nextTokenIfExists(tokens);
-                        if (null != name) {
-                            String systemAccount = nextTokenIfExists(tokens);
-                            String email = nextTokenIfExists(tokens);
-                            result.add(new RealUser(name, 
-                                email, group, systemAccount)); 
-                        }
-                    }
+        TsvScanner scanner = new TsvScanner(usersFile);
+        try {
+            while (scanner.nextLine()) {
+                if (scanner.nextField()) {
+                    readRealUsers(scanner, scanner.fieldToPooledString(), 
+                        result);
                 }
             }
-        } while (line != null);
-        lnis.close();
+        } finally {
+            scanner.close();
+        }
         return result;
     }
 
     /**
-     * Reads the next token if it exists.
+     * Reads the real users from a simple text file (see 
+     * {@link #readRealUserList(Reader)}) incrementally, i.e. only the 
+     * lines which changed since the last call with the same 
+     * <code>digests</code> are parsed.
+     * 
+     * @param usersFile
+     *            the file to be read (will be closed)
+     * @param digests
+     *            the digests of the lines as read last, updated as a side 
+     *            effect
+     * @param rows
+     *            the real users per line as read last, updated as a side
+     *            effect (in the order of the lines as read first)
+     * @return the number of added, changed or removed lines
+     * 
+     * @throws IOException
+     *             if any I/O error occurs
+     * 
+     * @since 2.2
+     */
+    public static int readRealUserList(Reader usersFile, RowDigests digests, 
+        final Map<String, List<RealUser>> rows) throws IOException {
+        return digests.scan(usersFile, 
+            new RowDigests.Handler<RuntimeException>() {
+
+                @Override
+                boolean row(TsvScanner scanner, String key, String name) {
+                    List<RealUser> users = new ArrayList<RealUser>();
+                    readRealUsers(scanner, name, users);
+                    rows.put(key, users);
+                    return true;
+                }
+
+                @Override
+                void removed(String key, String name) {
+                    rows.remove(key);
+                }
+
+            });
+    }
+
+    /**
+     * Reads the real users in a line of a simple text file (see 
+     * {@link #readRealUserList(Reader)}). As documented for the file 
+     * format, the field after the name of a user is only taken as system
+     * account if it does not contain a "@", as 
+     * {@link #writeRealUserList(List, Writer)} omits empty system 
+     * accounts. Reading the fields by position would take the email as
+     * system account and the name of the next user as email in this case.
+     * Files with system accounts are read as before.
+     * 
+     * @param scanner the scanner positioned at the group field
+     * @param group the submission group
+     * @param result the real users to be modified as a side effect
+     * 
+     * @since 2.2
+     */
+    private static void readRealUsers(TsvScanner scanner, String group, 
+        List<RealUser> result) {
+        while (scanner.nextField()) {
+            String name = scanner.fieldToString();
+            String systemAccount = null;
+            String email = null;
+            boolean hasField = scanner.nextField();
+            if (hasField && !scanner.fieldContains('@')) {
+                systemAccount = fieldIfNotEmpty(scanner);
+                hasField = scanner.nextField();
+            }
+            if (hasField) {
+                email = fieldIfNotEmpty(scanner);
+            }
+            result.add(new RealUser(name, email, group, systemAccount)); 
+        }
+    }
+
+    /**
+     * Returns the current field of <code>scanner</code> if it is not empty.
+     * 
+     * @param scanner the scanner positioned at the field to be returned
+     * @return the current field or <b>null</b> if the field is empty
      * 
-     * @param tokens the next token
-     * @return the next token or <b>null</b>
+     * @since 2.2
      */
-    private static String nextTokenIfExists(StringTokenizer tokens) {
+    private static String fieldIfNotEmpty(TsvScanner scanner) {
         String result = null;
-        if (tokens.hasMoreTokens()) {
-            result = tokens.nextToken();
+        if (scanner.fieldLength() > 0) {
+            result = scanner.fieldToString();
         }
         return result;
     }
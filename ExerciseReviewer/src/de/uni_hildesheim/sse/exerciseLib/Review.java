@@ -1,10 +1,23 @@
 package de.uni_hildesheim.sse.exerciseLib;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
 import net.ssehub.exercisesubmitter.protocol.frontend.Assessment;
 
 /**
- * Represents an individual (read-only) review.
+ * Represents an individual (read-only) review. Reviews loaded from a 
+ * persistent representation (see {@link ExerciseData}) provide credits, 
+ * text and state as stored, i.e. the local grades are the only source 
+ * for eagerly and lazily loaded reviews. Reviews loaded lazily from a 
+ * binary snapshot (see {@link ReviewBodies}) decode their text on first
+ * access. The assessment of the server is only needed for submitting a 
+ * loaded review. It is attached when loading or fetched explicitly via
+ * {@link #fetchAssessment()}, i.e. no getter accesses the network.
  * 
  * @author El-Sharkawy
  * @author Holger Eichelberger
@@ -20,13 +33,77 @@ public class Review {
      */
     private Assessment review;
 
+    /**
+     * Stores the name of the user if this review was loaded, <b>null</b>
+     * if the review is represented by its assessment.
+     * 
+     * @since 2.2
+     */
+    private String userName;
+
+    /**
+     * Stores the credits (in tenths) if this review was loaded.
+     * 
+     * @since 2.2
+     */
+    private long credits;
+
+    /**
+     * Stores the text if this review was loaded completely, <b>null</b> 
+     * else.
+     * 
+     * @since 2.2
+     */
+    private String text;
+
+    /**
+     * Stores the provider of the text if this review is loaded lazily, 
+     * <b>null</b> else.
+     * 
+     * @since 2.2
+     */
+    private ReviewBodies bodies;
+
+    /**
+     * Stores the generation of the snapshot file the text offset refers
+     * to. Guarded by {@link #bodies}.
+     * 
+     * @since 2.2
+     */
+    private int bodyGeneration;
+
+    /**
+     * Stores the byte offset of the text in the snapshot file. Guarded by 
+     * {@link #bodies}.
+     * 
+     * @since 2.2
+     */
+    private int bodyOffset;
+
+    /**
+     * Stores the length of the text in bytes. Guarded by {@link #bodies}.
+     * 
+     * @since 2.2
+     */
+    private int bodyLength;
+
     /**
      * Stores, if this review was submitted to
-     * a server after the last modification.
+     * a server after the last modification. As modified reviews are new
+     * instances, this is the inverse of a dirty bit for submitting the
+     * reviewed project again.
      * 
      * @since 1.00
      */
     private boolean isSubmittedToServer;
+
+    /**
+     * Stores the version of this review as timestamp of the last change 
+     * (see {@link ReviewClock}), <code>0</code> if unknown.
+     * 
+     * @since 2.2
+     */
+    private long timestamp;
     
     /**
      * Creates a new review object.
@@ -39,6 +116,40 @@ public class Review {
         this.review = review;
     }
 
+    /**
+     * Creates a review loaded from a persistent representation.
+     * 
+     * @param userName the name of the user
+     * @param credits the credits in tenths (see {@link Credits})
+     * @param text the review text
+     * 
+     * @since 2.2
+     */
+    Review(String userName, long credits, String text) {
+        this.userName = userName;
+        this.credits = credits;
+        this.text = text;
+    }
+
+    /**
+     * Creates a lazily loaded review.
+     * 
+     * @param userName the name of the user
+     * @param credits the credits in tenths (see {@link Credits})
+     * @param bodies the provider of the text
+     * @param offset the byte offset of the text in the snapshot file
+     * @param length the length of the text in bytes
+     * 
+     * @since 2.2
+     */
+    Review(String userName, long credits, ReviewBodies bodies, int offset, 
+        int length) {
+        this.userName = userName;
+        this.credits = credits;
+        this.bodies = bodies;
+        bindBody(bodies.getGeneration(), offset, length);
+    }
+
     /**
      * Returns the assigned credits.
      * 
@@ -47,7 +158,20 @@ public class Review {
      * @since 1.00
      */
     public double getCredits() {
-        return review.getAchievedPoints();
+        return null == userName ? review.getAchievedPoints() 
+            : Credits.toDouble(credits);
+    }
+
+    /**
+     * Returns the assigned credits as fixed-point number.
+     * 
+     * @return the assigned credits in tenths (see {@link Credits})
+     * 
+     * @since 2.2
+     */
+    public long getCreditsFixedPoint() {
+        return null == userName 
+            ? Credits.toFixedPoint(review.getAchievedPoints()) : credits;
     }
 
     /**
@@ -58,7 +182,14 @@ public class Review {
      * @since 1.00
      */
     public String getReview() {
-        return review.getFullReviewComment() != null ? review.getFullReviewComment() : "";
+        String result = text;
+        if (null == result && null != bodies) {
+            result = bodies.read(this);
+        }
+        if (null == result && null == userName) {
+            result = review.getFullReviewComment();
+        }
+        return null == result ? "" : result;
     }
 
     /**
@@ -70,15 +201,14 @@ public class Review {
      * @since 1.00
      */
     public String getUserName() {
-        return review.getSubmitterName();
+        return null == userName ? review.getSubmitterName() : userName;
     }
     
     /**
      * Notifies this review that it is submitted to
-     * a server. Note, that an appropriate method in
-     * {@link ReviewCommunication} like 
-     * {@link ReviewCommunication#submitReview(String, Review)}
-     * must be called in order to store the change.
+     * a server. Note, that this does not store the change. Use
+     * {@link ReviewCommunication#markSubmitted} instead in order to
+     * store the change.
      * 
      * @since 1.00
      */
@@ -100,11 +230,234 @@ public class Review {
     }
     
     /**
-     * Returns the assessment to be submitted to the server.
-     * @return The assessment to be submitted to the server.
+     * Returns the version of this review.
+     * 
+     * @return the timestamp of the last change (see {@link ReviewClock}), 
+     *     <code>0</code> if unknown
+     * 
+     * @since 2.2
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Changes the version of this review. Note, that submitting the review
+     * to a file-based {@link ReviewCommunication} stamps the review with a
+     * new timestamp.
+     * 
+     * @param timestamp the timestamp of the last change (see 
+     *     {@link ReviewClock})
+     * 
+     * @since 2.2
+     */
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Compares the version of this review with the given review data in 
+     * last-writer-wins order, i.e. by timestamp and, for equal timestamps,
+     * by credits, text and submission state so that the order is total 
+     * and all replicas agree on the winner. Unversioned (legacy) reviews,
+     * i.e. both timestamps are 0, are considered to be equal so that
+     * merging just fills in missing reviews as before versioning.
+     * 
+     * @param timestamp the timestamp to compare with
+     * @param credits the credits to compare with (in tenths)
+     * @param text the review text to compare with
+     * @param submitted the submission state to compare with
+     * @return a negative integer, zero, or a positive integer as this 
+     *     review is older than, equal to, or newer than the given data
+     * 
+     * @since 2.2
+     */
+    int compareVersion(long timestamp, long credits, String text, 
+        boolean submitted) {
+        int result = Long.compare(this.timestamp, timestamp);
+        if (0 == result && 0 == timestamp) {
+            return 0;
+        }
+        if (0 == result) {
+            result = Long.compare(getCreditsFixedPoint(), credits);
+        }
+        if (0 == result) {
+            result = getReview().compareTo(text);
+        }
+        if (0 == result) {
+            result = Boolean.compare(isSubmittedToServer, submitted);
+        }
+        return result;
+    }
+
+    /**
+     * Compares the version of this review with the given review (see 
+     * {@link #compareVersion(long, long, String, boolean)}).
+     * 
+     * @param review the review to compare with
+     * @return a negative integer, zero, or a positive integer as this 
+     *     review is older than, equal to, or newer than <code>review</code>
+     * 
+     * @since 2.2
+     */
+    int compareVersion(Review review) {
+        return compareVersion(review.timestamp, review.getCreditsFixedPoint(),
+            review.getReview(), review.isSubmittedToServer);
+    }
+
+    /**
+     * Returns the hash code of the contents of this review, i.e. of the
+     * credits and the text.
+     *
+     * @return the content hash
+     *
+     * @since 2.2
+     */
+    public int getContentHash() {
+        return 31 * Long.hashCode(getCreditsFixedPoint())
+            + getReview().hashCode();
+    }
+
+    /**
+     * Returns if this review does not change the given (previous) review,
+     * i.e. if it has the same credits and text and it is not submitted to
+     * the server unless <code>review</code> is submitted. Then, neither
+     * storing this review nor submitting it to the server is required.
+     *
+     * @param review the previous review (may be <b>null</b>)
+     * @return <code>true</code> if this review is unchanged,
+     *     <code>false</code> else
+     *
+     * @since 2.2
      */
-    public Assessment getAssessment() {
+    public boolean isUnchanged(Review review) {
+        return null != review && review != this
+            && (review.isSubmittedToServer || !isSubmittedToServer)
+            && getContentHash() == review.getContentHash()
+            && getCreditsFixedPoint() == review.getCreditsFixedPoint()
+            && getReview().equals(review.getReview());
+    }
+
+    /**
+     * Returns the assessment of the server this review is based on or 
+     * which is attached to this loaded review. The assessment is not 
+     * changed, i.e. for a loaded review it may not reflect the credits 
+     * and the text of this review (see {@link #fetchAssessment()}).
+     * 
+     * @return The assessment, <b>null</b> if no assessment is attached to 
+     *     a loaded review
+     */
+    public synchronized Assessment getAssessment() {
         return review;
     }
 
+    /**
+     * Returns the assessment to be submitted to the server. The assessment
+     * is fetched from the server if it is not attached to this loaded 
+     * review. The assessment of a loaded review is updated with the 
+     * credits and the text of this review. Thus, this method may access 
+     * the network and shall not be called while holding locks on the 
+     * review data.
+     * 
+     * @return the assessment, <b>null</b> if not available
+     * @throws CommunicationException if the server cannot be contacted
+     * 
+     * @since 2.2
+     */
+    public Assessment fetchAssessment() throws CommunicationException {
+        Assessment result = getAssessment();
+        if (null == result) {
+            Map<String, Assessment> assessments = 
+                new HashMap<String, Assessment>();
+            AssessmentPrefetcher.fetch(Collections.singleton(userName), 
+                assessments);
+            attachAssessment(assessments.get(userName));
+            result = getAssessment();
+        }
+        if (null != userName && null != result) {
+            result.setAchievedPoints(getCredits());
+            result.setFullReviewComment(getReview());
+        }
+        return result;
+    }
+
+    /**
+     * Attaches the assessment of the server to a loaded review, e.g. as
+     * fetched for several reviews in one step.
+     * 
+     * @param assessment the assessment, ignored if <b>null</b>
+     * 
+     * @since 2.2
+     */
+    synchronized void attachAssessment(Assessment assessment) {
+        if (null != assessment) {
+            review = assessment;
+        }
+    }
+
+    /**
+     * Returns if this review is loaded lazily from the given bodies.
+     * 
+     * @param bodies the bodies
+     * @return <code>true</code> if the text of this review is provided by
+     *     <code>bodies</code>, <code>false</code> else
+     * 
+     * @since 2.2
+     */
+    boolean isBodyOf(ReviewBodies bodies) {
+        return null != bodies && this.bodies == bodies;
+    }
+
+    /**
+     * Binds the text of this lazily loaded review to a snapshot file. To
+     * be called while holding the lock of {@link #bodies}.
+     * 
+     * @param generation the generation of the snapshot file
+     * @param offset the byte offset of the text
+     * @param length the length of the text in bytes
+     * 
+     * @since 2.2
+     */
+    void bindBody(int generation, int offset, int length) {
+        bodyGeneration = generation;
+        bodyOffset = offset;
+        bodyLength = length;
+    }
+
+    /**
+     * Returns the generation of the snapshot file the text is bound to. To
+     * be called while holding the lock of {@link #bodies}.
+     * 
+     * @return the generation
+     * 
+     * @since 2.2
+     */
+    int getBodyGeneration() {
+        return bodyGeneration;
+    }
+
+    /**
+     * Returns the byte offset of the text in the snapshot file. To be 
+     * called while holding the lock of {@link #bodies}.
+     * 
+     * @return the byte offset
+     * 
+     * @since 2.2
+     */
+    int getBodyOffset() {
+        return bodyOffset;
+    }
+
+    /**
+     * Returns the length of the text in bytes. To be called while holding 
+     * the lock of {@link #bodies}.
+     * 
+     * @return the length
+     * 
+     * @since 2.2
+     */
+    int getBodyLength() {
+        return bodyLength;
+    }
+
 }
@@ -0,0 +1,297 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Provides the texts of lazily loaded reviews from a binary snapshot file
+ * (see {@link ExerciseData#loadSnapshot(ReviewBodies, boolean)}). Instead
+ * of the texts, the reviews store the byte offsets of their texts in the
+ * snapshot file. A text is decoded on first access and kept in a cache
+ * bounded to the given number of texts, i.e. the memory required for the
+ * texts does not grow with the number of reviews. As the snapshot stores
+ * equal texts only once, reviews sharing a text also share the cached 
+ * text.<br/>
+ *
+ * When the snapshot file is replaced by a new snapshot of the same data
+ * (see {@link ExerciseData#storeSnapshot(java.io.OutputStream, 
+ * ReviewBodies)}), the reviews are bound to the offsets of their texts in
+ * the new file. Access to the texts is blocked while the file is being 
+ * replaced (see {@link #beginReplace()}, {@link #endReplace(boolean)}).
+ * Reviews which cannot be bound anymore, e.g. as the file was changed by
+ * another program, do not provide a text.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewBodies {
+
+    /**
+     * Stores the cached snapshot file.
+     *
+     * @since 2.2
+     */
+    private CachedFile snapshot;
+
+    /**
+     * Stores the maximum number of cached texts.
+     *
+     * @since 2.2
+     */
+    private int cacheSize;
+
+    /**
+     * Stores the decoded texts by their offsets in access order.
+     *
+     * @since 2.2
+     */
+    private Map<Integer, String> cache;
+
+    /**
+     * Stores the generation of the snapshot file. Reviews of a different
+     * generation are not bound to the current file.
+     *
+     * @since 2.2
+     */
+    private int generation;
+
+    /**
+     * Stores the size of the snapshot file of the current generation.
+     *
+     * @since 2.2
+     */
+    private long size;
+
+    /**
+     * Stores the modification time of the snapshot file of the current
+     * generation.
+     *
+     * @since 2.2
+     */
+    private long time;
+
+    /**
+     * Stores if the snapshot file is being replaced.
+     *
+     * @since 2.2
+     */
+    private boolean replacing;
+
+    /**
+     * Stores the reviews written to the next snapshot file.
+     *
+     * @since 2.2
+     */
+    private List<Review> staged = new ArrayList<Review>();
+
+    /**
+     * Stores the offsets and lengths of the texts of {@link #staged} in
+     * the next snapshot file (two entries per review).
+     *
+     * @since 2.2
+     */
+    private List<Integer> stagedBodies = new ArrayList<Integer>();
+
+    /**
+     * Creates new review bodies.
+     *
+     * @param snapshot the cached snapshot file
+     * @param cacheSize the maximum number of cached texts
+     *
+     * @since 2.2
+     */
+    public ReviewBodies(CachedFile snapshot, final int cacheSize) {
+        this.snapshot = snapshot;
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<Integer, String>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+
+        };
+    }
+
+    /**
+     * Returns the maximum number of cached texts.
+     *
+     * @return the maximum number of cached texts
+     *
+     * @since 2.2
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Opens the snapshot file for loading. Starts a new generation, i.e.
+     * reviews loaded before do not provide texts anymore.
+     *
+     * @return the contents of the snapshot file
+     * @throws java.io.FileNotFoundException if the file does not exist
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    synchronized ByteBuffer open() throws IOException {
+        generation++;
+        cache.clear();
+        recordFile();
+        ByteBuffer result = snapshot.getContents();
+        snapshot.release(); // texts are read on demand
+        return result;
+    }
+
+    /**
+     * Returns the current generation.
+     *
+     * @return the generation
+     *
+     * @since 2.2
+     */
+    synchronized int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Records size and modification time of the snapshot file.
+     *
+     * @since 2.2
+     */
+    private void recordFile() {
+        File file = snapshot.getFile();
+        size = file.length();
+        time = file.lastModified();
+    }
+
+    /**
+     * Returns the text of a lazily loaded review.
+     *
+     * @param review the review
+     * @return the text, <b>null</b> if the text is not available
+     *
+     * @since 2.2
+     */
+    synchronized String read(Review review) {
+        String result = null;
+        try {
+            while (replacing) {
+                wait();
+            }
+            if (review.getBodyGeneration() == generation) {
+                Integer offset = review.getBodyOffset();
+                result = cache.get(offset);
+                if (null == result) {
+                    result = decode(offset, review.getBodyLength());
+                    if (null != result) {
+                        cache.put(offset, result);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return result;
+    }
+
+    /**
+     * Decodes a text from the snapshot file.
+     *
+     * @param offset the byte offset of the text
+     * @param length the length of the text in bytes
+     * @return the text, <b>null</b> if the file changed or cannot be read
+     *
+     * @since 2.2
+     */
+    private String decode(int offset, int length) {
+        String result = null;
+        File file = snapshot.getFile();
+        if (file.length() == size && file.lastModified() == time) {
+            try {
+                result = StandardCharsets.UTF_8.decode(
+                    snapshot.read(offset, length)).toString();
+            } catch (IOException e) {
+                // not available or changed meanwhile
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts writing a new snapshot file, i.e. discards reviews staged
+     * before.
+     *
+     * @since 2.2
+     */
+    synchronized void beginStaging() {
+        staged.clear();
+        stagedBodies.clear();
+    }
+
+    /**
+     * Records the offset of the text of a review in the new snapshot file.
+     * Reviews which are not loaded from this instance are ignored.
+     *
+     * @param review the review
+     * @param offset the byte offset of the text in the new file
+     * @param length the length of the text in bytes
+     *
+     * @since 2.2
+     */
+    synchronized void stage(Review review, int offset, int length) {
+        if (review.isBodyOf(this)) {
+            staged.add(review);
+            stagedBodies.add(offset);
+            stagedBodies.add(length);
+        }
+    }
+
+    /**
+     * Blocks access to the texts as the snapshot file is going to be
+     * replaced.
+     *
+     * @since 2.2
+     */
+    public synchronized void beginReplace() {
+        replacing = true;
+        snapshot.release();
+    }
+
+    /**
+     * Ends replacing the snapshot file and releases the access to the
+     * texts.
+     *
+     * @param replaced <code>true</code> if the snapshot file was replaced
+     *     by the snapshot written last, i.e. the staged reviews are bound
+     *     to the new file, <code>false</code> if the file was not replaced
+     *     and the reviews remain bound to the existing file
+     *
+     * @since 2.2
+     */
+    public synchronized void endReplace(boolean replaced) {
+        if (replaced) {
+            generation++;
+            cache.clear();
+            recordFile();
+            for (int r = 0; r < staged.size(); r++) {
+                staged.get(r).bindBody(generation, stagedBodies.get(2 * r),
+                    stagedBodies.get(2 * r + 1));
+            }
+        }
+        beginStaging();
+        replacing = false;
+        notifyAll();
+    }
+
+}
@@ -0,0 +1,108 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+/**
+ * Realizes a hybrid logical clock for versioning review cells. A timestamp
+ * consists of the physical time in milliseconds (upper bits) and a logical
+ * counter (lower {@link #LOGICAL_BITS} bits), which orders changes made
+ * within the same millisecond or after the physical clock went backwards.
+ * Timestamps read from persistent data are {@link #observe(long) observed}
+ * so that local changes are always ordered after the changes already seen,
+ * also if the files were written on machines with a clock ahead of the
+ * local one. The timestamp <code>0</code> denotes an unknown version, e.g.
+ * of a review read from a format revision without timestamps.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewClock {
+
+    /**
+     * Defines the number of bits of the logical counter.
+     *
+     * @since 2.2
+     */
+    private static final int LOGICAL_BITS = 16;
+
+    /**
+     * Stores the last timestamp issued or observed.
+     *
+     * @since 2.2
+     */
+    private static long last;
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     *
+     * @since 2.2
+     */
+    private ReviewClock() {
+    }
+
+    /**
+     * Returns a new timestamp for a local change. The timestamp is greater
+     * than all timestamps issued or observed before.
+     *
+     * @return the timestamp
+     *
+     * @since 2.2
+     */
+    public static synchronized long tick() {
+        last = Math.max(last + 1, System.currentTimeMillis() << LOGICAL_BITS);
+        return last;
+    }
+
+    /**
+     * Observes a timestamp of a change made elsewhere.
+     *
+     * @param timestamp the observed timestamp
+     *
+     * @since 2.2
+     */
+    public static synchronized void observe(long timestamp) {
+        last = Math.max(last, timestamp);
+    }
+
+    /**
+     * Returns the physical time of a timestamp.
+     *
+     * @param timestamp the timestamp
+     * @return the physical time in milliseconds (see
+     *     {@link System#currentTimeMillis()})
+     *
+     * @since 2.2
+     */
+    public static long toMillis(long timestamp) {
+        return timestamp >>> LOGICAL_BITS;
+    }
+
+    /**
+     * Parses a textual (decimal) timestamp.
+     *
+     * @param text the text to be parsed
+     * @return the timestamp
+     * @throws NumberFormatException if <code>text</code> does not denote
+     *     a timestamp
+     *
+     * @since 2.2
+     */
+    static long parse(CharSequence text) {
+        int length = text.length();
+        if (0 == length || length > 19) {
+            throw new NumberFormatException("Invalid timestamp: " + text);
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid timestamp: " + text);
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (value < 0) {
+            throw new NumberFormatException("Invalid timestamp: " + text);
+        }
+        return value;
+    }
+
+}
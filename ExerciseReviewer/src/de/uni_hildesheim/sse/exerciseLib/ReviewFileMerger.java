@@ -0,0 +1,208 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Merges an arbitrary number of tabulator-separated review files into
+ * exercise data. Each file is streamed once via {@link #add(Reader)} (or
+ * read completely and parsed in parallel via 
+ * {@link #add(Reader, boolean)}), whereby only the winning review record
+ * per task and user (group) is kept according to the {@link MergePolicy}.
+ * No reviews are created while adding files. 
+ * {@link #mergeInto(ExerciseData)} finally applies the collected records
+ * to the target data in one step, i.e. the assessments can be fetched 
+ * once for all files (see {@link ExerciseData#fetchAssessments()}) and 
+ * the target needs to be stored only once afterwards. The merged reviews
+ * carry the credits and texts of the winning records. Rows of users 
+ * unknown to the user provider are ignored. As for 
+ * {@link ExerciseData#merge(ExerciseData)}, the larger maximum number of
+ * credits of an exercise is kept.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewFileMerger {
+
+    /**
+     * Stores the user data provider.
+     *
+     * @since 2.2
+     */
+    private UserProvider provider;
+
+    /**
+     * Stores the conflict resolution policy.
+     *
+     * @since 2.2
+     */
+    private MergePolicy policy;
+
+    /**
+     * Stores the largest maximum credits (in tenths) of the exercises 
+     * found in the files.
+     *
+     * @since 2.2
+     */
+    private Map<String, Long> maxCredits = new HashMap<String, Long>();
+
+    /**
+     * Stores the winning records per task and user (sorted).
+     *
+     * @since 2.2
+     */
+    private Map<String, Map<String, ReviewRecord>> cells
+        = new TreeMap<String, Map<String, ReviewRecord>>();
+
+    /**
+     * Stores the report on conflicts among the added files.
+     *
+     * @since 2.2
+     */
+    private MergeReport report = new MergeReport();
+
+    /**
+     * Creates a new merger.
+     *
+     * @param provider the user data provider
+     * @param policy the conflict resolution policy
+     *
+     * @since 2.2
+     */
+    public ReviewFileMerger(UserProvider provider, MergePolicy policy) {
+        this.provider = provider;
+        this.policy = policy;
+    }
+
+    /**
+     * Reads a review file and records its reviews for merging.
+     *
+     * @param in the reader on the file (will be closed)
+     * @throws IOException if input/output problems occur
+     * @throws CommunicationException wrapped exceptions while reading
+     *
+     * @since 2.2
+     */
+    public void add(Reader in) throws IOException, CommunicationException {
+        add(in, false);
+    }
+
+    /**
+     * Reads a review file and records its reviews for merging. In parallel
+     * mode, the rows are parsed concurrently (see 
+     * {@link ExerciseData#load(Reader, boolean, boolean)}), which pays off 
+     * for large files, e.g. archives.
+     *
+     * @param in the reader on the file (will be closed)
+     * @param parallel <code>true</code> parse the rows in parallel, 
+     *     <code>false</code> parse sequentially
+     * @throws IOException if input/output problems occur
+     * @throws CommunicationException wrapped exceptions while reading
+     *
+     * @since 2.2
+     */
+    public void add(Reader in, boolean parallel) 
+        throws IOException, CommunicationException {
+        ExerciseData part = new ExerciseData(provider);
+        for (ReviewRecord record : part.readRecords(in, false, parallel)) {
+            Exercise exercise = record.getExercise();
+            String task = exercise.getName();
+            Long max = maxCredits.get(task);
+            if (null == max || exercise.getMaxCreditsFixedPoint() > max) {
+                maxCredits.put(task, exercise.getMaxCreditsFixedPoint());
+            }
+            Map<String, ReviewRecord> users = cells.get(task);
+            if (null == users) {
+                users = new TreeMap<String, ReviewRecord>();
+                cells.put(task, users);
+            }
+            String user = record.getUserName();
+            ReviewRecord existing = users.get(user);
+            if (null == existing) {
+                users.put(user, record);
+            } else {
+                boolean same = existing.getCredits() == record.getCredits()
+                    && record.getText().equals(existing.getText());
+                if (MergePolicy.LAST_WRITER_WINS == policy 
+                    ? record.compareVersion(existing) > 0 
+                    : !same && MergePolicy.REPLACE_EXISTING == policy) {
+                    users.put(user, record);
+                }
+                if (same) {
+                    report.skipped(task, user);
+                } else {
+                    report.conflicting(task, user);
+                }
+            }
+        }
+    }
+
+    /**
+     * Merges the reviews of all added files into the given data. Missing
+     * exercises are created, the maximum credits of existing exercises
+     * are raised if a file contains larger ones.
+     *
+     * @param target the data to merge into
+     * @return the merge report including the conflicts among the files
+     *
+     * @since 2.2
+     */
+    public MergeReport mergeInto(ExerciseData target) {
+        MergeReport result = new MergeReport();
+        result.addAll(report);
+        List<ReviewRecord> records = new ArrayList<ReviewRecord>();
+        for (Map.Entry<String, Map<String, ReviewRecord>> entry
+            : cells.entrySet()) {
+            String task = entry.getKey();
+            Exercise exercise = target.getExercise(task);
+            long max = maxCredits.get(task);
+            if (null == exercise) {
+                exercise = new Exercise(task, Credits.toDouble(max));
+                target.addExercise(exercise);
+            } else if (max > exercise.getMaxCreditsFixedPoint()) {
+                exercise.setMaxCreditsFixedPoint(max);
+                result.changed();
+            }
+            for (ReviewRecord record : entry.getValue().values()) {
+                String user = record.getUserName();
+                Review existing = exercise.getReview(user);
+                boolean add;
+                if (null == existing) {
+                    add = true;
+                    result.added(task, user);
+                } else {
+                    boolean same = existing.getCreditsFixedPoint()
+                        == record.getCredits()
+                        && record.getText().equals(existing.getReview());
+                    if (MergePolicy.LAST_WRITER_WINS == policy) {
+                        add = record.compareVersion(existing) > 0;
+                    } else {
+                        add = !same && MergePolicy.REPLACE_EXISTING == policy;
+                    }
+                    if (same) {
+                        result.skipped(task, user, add);
+                    } else {
+                        result.conflicting(task, user, add);
+                    }
+                }
+                if (add) {
+                    records.add(new ReviewRecord(user, exercise,
+                        record.getCredits(), record.getText(),
+                        record.isSubmitted(), record.getTimestamp()));
+                }
+            }
+        }
+        target.addReviews(records);
+        return result;
+    }
+
+}
@@ -0,0 +1,603 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * Provides random access to the rows of a tabulator-separated reviews file
+ * (see {@link ExerciseData#load(java.io.Reader, boolean)}) via a sidecar
+ * index file, which maps the users (groups) to the byte offsets of their
+ * rows. Reading the reviews of a few users (see
+ * {@link ExerciseData#load(ReviewIndex, Collection, boolean)}) reads only
+ * the header lines and the rows of these users by positioned reads,
+ * i.e. the time does not depend on the size of the reviews file. The
+ * index records length and modification time of the reviews file it was
+ * written for, an index of a reviews file changed afterwards, e.g. by
+ * another program, is not used.<br/>
+ * Further, the index records CRC-32 checksums of the header lines and of
+ * blocks of {@link #BLOCK_ROWS} consecutive rows, so that a corrupted 
+ * reviews file can be detected by a fast pre-pass before parsing it (see
+ * {@link #verify()}). Rows read via the index are verified lazily, i.e. 
+ * only the blocks containing the requested rows are read and checked.
+ * <br/>
+ * Structure of the index file (big endian):<br/>
+ * <code>
+ * int magic, int version, long reviewsLength, long reviewsTime<br/>
+ * int headerLength, int headerCrc, int #rows, 
+ * {string user, long offset, int length}*<br/>
+ * int blockRows, {int blockCrc}*
+ * </code><br/>
+ * Thereby, offsets and lengths are given in bytes of the reviews file,
+ * rows include their line terminators and strings are stored as
+ * length-prefixed UTF-8 bytes. The rows cover the reviews file after the
+ * header lines without gaps, the last block may contain less rows.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewIndex {
+
+    /**
+     * Defines the magic number identifying the format ("ERIX").
+     *
+     * @since 2.2
+     */
+    private static final int MAGIC = 0x45524958;
+
+    /**
+     * Defines the current version of the format.
+     *
+     * @since 2.2
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Defines the number of rows per checksum block.
+     *
+     * @since 2.2
+     */
+    public static final int BLOCK_ROWS = 32;
+
+    /**
+     * Defines the size of the buffer for verifying the checksums.
+     *
+     * @since 2.2
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Stores the reviews file.
+     *
+     * @since 2.2
+     */
+    private File reviewsFile;
+
+    /**
+     * Stores the length of the reviews file the index was written for.
+     *
+     * @since 2.2
+     */
+    private long reviewsLength;
+
+    /**
+     * Stores the modification time of the reviews file the index was
+     * written for.
+     *
+     * @since 2.2
+     */
+    private long reviewsTime;
+
+    /**
+     * Stores the length of the header lines in bytes.
+     *
+     * @since 2.2
+     */
+    private int headerLength;
+
+    /**
+     * Stores the checksum of the header lines.
+     *
+     * @since 2.2
+     */
+    private int headerCrc;
+
+    /**
+     * Stores the row numbers (in file order, starting at <code>0</code>
+     * after the header lines) by user name.
+     *
+     * @since 2.2
+     */
+    private Map<String, Integer> rows = new LinkedHashMap<String, Integer>();
+
+    /**
+     * Stores the byte offsets of the rows in file order.
+     *
+     * @since 2.2
+     */
+    private long[] offsets;
+
+    /**
+     * Stores the byte lengths of the rows in file order.
+     *
+     * @since 2.2
+     */
+    private int[] lengths;
+
+    /**
+     * Stores the number of rows per checksum block.
+     *
+     * @since 2.2
+     */
+    private int blockRows;
+
+    /**
+     * Stores the checksums of the row blocks.
+     *
+     * @since 2.2
+     */
+    private int[] blockCrcs;
+
+    /**
+     * Creates an index instance for reading.
+     *
+     * @param reviewsFile the reviews file
+     *
+     * @since 2.2
+     */
+    private ReviewIndex(File reviewsFile) {
+        this.reviewsFile = reviewsFile;
+    }
+
+    /**
+     * Writes the index for the given contents of the reviews file. To be
+     * called after <code>reviewsFile</code> was written, as the index
+     * records its length and modification time.
+     *
+     * @param reviews the contents of the reviews file as written
+     *     (platform encoding as for {@link java.io.FileWriter})
+     * @param reviewsFile the reviews file
+     * @param indexFile the index file to be (atomically) replaced
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    public static void write(byte[] reviews, File reviewsFile,
+        File indexFile) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(reviewsFile.length());
+        out.writeLong(reviewsFile.lastModified());
+        List<Integer> lineStarts = new ArrayList<Integer>();
+        int pos = 0;
+        while (pos < reviews.length) {
+            lineStarts.add(pos);
+            while (pos < reviews.length && '\n' != reviews[pos++]) {
+                // find end of line
+            }
+        }
+        lineStarts.add(reviews.length);
+        int header = Math.min(ExerciseData.HEADER_LINES,
+            lineStarts.size() - 1);
+        int rowCount = lineStarts.size() - 1 - header;
+        out.writeInt(lineStarts.get(header));
+        out.writeInt(checksum(reviews, 0, lineStarts.get(header)));
+        out.writeInt(rowCount);
+        Charset charset = Charset.defaultCharset();
+        for (int l = header; l < lineStarts.size() - 1; l++) {
+            int start = lineStarts.get(l);
+            int end = start;
+            while (end < reviews.length && '\t' != reviews[end]
+                && '\r' != reviews[end] && '\n' != reviews[end]) {
+                end++;
+            }
+            byte[] user = new String(reviews, start, end - start, charset)
+                .getBytes(StandardCharsets.UTF_8);
+            out.writeInt(user.length);
+            out.write(user);
+            out.writeLong(start);
+            out.writeInt(lineStarts.get(l + 1) - start);
+        }
+        out.writeInt(BLOCK_ROWS);
+        for (int b = 0; b < rowCount; b += BLOCK_ROWS) {
+            int start = lineStarts.get(header + b);
+            int end = lineStarts.get(header + Math.min(b + BLOCK_ROWS, 
+                rowCount));
+            out.writeInt(checksum(reviews, start, end - start));
+        }
+        out.close();
+        FileUtils.replace(FileUtils.writeTempFile(indexFile,
+            bytes.toByteArray()), indexFile);
+    }
+
+    /**
+     * Opens the index of a reviews file.
+     *
+     * @param reviewsFile the reviews file
+     * @param indexFile the index file
+     * @return the index, <b>null</b> if there is no index, the index is
+     *     not supported or the reviews file changed after writing the
+     *     index
+     * @throws IOException if reading the index fails
+     *
+     * @since 2.2
+     */
+    public static ReviewIndex open(File reviewsFile, File indexFile)
+        throws IOException {
+        ReviewIndex result = null;
+        if (indexFile.exists()) {
+            ByteBuffer in = ByteBuffer.wrap(
+                Files.readAllBytes(indexFile.toPath()));
+            try {
+                if (MAGIC == in.getInt() && VERSION == in.getInt()) {
+                    result = new ReviewIndex(reviewsFile);
+                    result.reviewsLength = in.getLong();
+                    result.reviewsTime = in.getLong();
+                    result.headerLength = in.getInt();
+                    result.headerCrc = in.getInt();
+                    checkRange(0, result.headerLength, result.reviewsLength);
+                    // user length, offset and length at least
+                    int count = readCount(in, 16);
+                    result.offsets = new long[count];
+                    result.lengths = new int[count];
+                    for (int r = 0; r < count; r++) {
+                        byte[] user = new byte[readCount(in, 1)];
+                        in.get(user);
+                        result.offsets[r] = in.getLong();
+                        result.lengths[r] = in.getInt();
+                        checkRange(result.offsets[r], result.lengths[r], 
+                            result.reviewsLength);
+                        result.rows.put(
+                            new String(user, StandardCharsets.UTF_8), r);
+                    }
+                    result.blockRows = in.getInt();
+                    if (result.blockRows <= 0) {
+                        throw new IOException("Corrupted index");
+                    }
+                    int blocks = (int) ((count + (long) result.blockRows - 1) 
+                        / result.blockRows);
+                    if ((long) blocks * 4 > in.remaining()) {
+                        throw new IOException("Corrupted index");
+                    }
+                    result.blockCrcs = new int[blocks];
+                    for (int b = 0; b < result.blockCrcs.length; b++) {
+                        result.blockCrcs[b] = in.getInt();
+                    }
+                    if (!result.isCurrent()) {
+                        result = null;
+                    }
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Corrupted index", e);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads a count or a length from the index and checks it against the
+     * remaining bytes before anything is allocated for it.
+     *
+     * @param in the index contents
+     * @param elementSize the minimum number of bytes per counted element
+     * @return the count
+     * @throws IOException if the count is negative or exceeds the 
+     *     remaining bytes
+     *
+     * @since 2.2
+     */
+    private static int readCount(ByteBuffer in, int elementSize) 
+        throws IOException {
+        int count = in.getInt();
+        if (count < 0 || (long) count * elementSize > in.remaining()) {
+            throw new IOException("Corrupted index");
+        }
+        return count;
+    }
+
+    /**
+     * Checks that a part denoted by the index lies within the reviews 
+     * file the index was written for.
+     *
+     * @param offset the byte offset of the part
+     * @param length the length of the part in bytes
+     * @param fileLength the length of the reviews file
+     * @throws IOException if the part is not within the reviews file
+     *
+     * @since 2.2
+     */
+    private static void checkRange(long offset, int length, long fileLength)
+        throws IOException {
+        if (offset < 0 || length < 0 || offset + length > fileLength) {
+            throw new IOException("Corrupted index");
+        }
+    }
+
+    /**
+     * Returns if the reviews file did not change after writing the index.
+     *
+     * @return <code>true</code> if the index is current,
+     *     <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean isCurrent() {
+        return reviewsFile.length() == reviewsLength
+            && reviewsFile.lastModified() == reviewsTime;
+    }
+
+    /**
+     * Returns the users (groups) having a row in the reviews file.
+     *
+     * @return the user names in file order
+     *
+     * @since 2.2
+     */
+    public Set<String> getUsers() {
+        return Collections.unmodifiableSet(rows.keySet());
+    }
+
+    /**
+     * Verifies the checksums of the header lines and of all row blocks of
+     * the reviews file in a single sequential pass without parsing it.
+     *
+     * @throws IOException if reading fails, a checksum does not match or
+     *     the reviews file changed after writing the index, the message
+     *     names the affected lines
+     *
+     * @since 2.2
+     */
+    public void verify() throws IOException {
+        FileChannel channel = FileChannel.open(reviewsFile.toPath(),
+            StandardOpenOption.READ);
+        try {
+            checkCurrent();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            checkBlock(channel, buffer, -1);
+            for (int b = 0; b < blockCrcs.length; b++) {
+                checkBlock(channel, buffer, b);
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Reads the header lines and the rows of the given users from the
+     * reviews file by positioned reads. The header lines and the blocks
+     * containing the requested rows are read completely and their 
+     * checksums are verified.
+     *
+     * @param users the names of the users (groups), users without row are
+     *     ignored
+     * @return a reader on the header lines and the rows in the order of
+     *     <code>users</code>
+     * @throws IOException if reading fails, a checksum does not match or 
+     *     the reviews file changed after writing the index
+     *
+     * @since 2.2
+     */
+    public Reader read(Collection<String> users) throws IOException {
+        Map<Integer, ByteBuffer> blocks = new TreeMap<Integer, ByteBuffer>();
+        List<Integer> selected = new ArrayList<Integer>();
+        int size = headerLength;
+        for (String user : users) {
+            Integer row = rows.get(user);
+            if (null != row) {
+                selected.add(row);
+                blocks.put(row / blockRows, null);
+                size += lengths[row];
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        FileChannel channel = FileChannel.open(reviewsFile.toPath(),
+            StandardOpenOption.READ);
+        try {
+            checkCurrent();
+            buffer.limit(headerLength);
+            readFully(channel, buffer, 0);
+            buffer.flip();
+            checkCrc(buffer, headerCrc, -1);
+            buffer.limit(size);
+            buffer.position(headerLength);
+            for (Map.Entry<Integer, ByteBuffer> entry : blocks.entrySet()) {
+                int block = entry.getKey();
+                ByteBuffer bytes = ByteBuffer.allocate(
+                    (int) (blockEnd(block) - blockStart(block)));
+                readFully(channel, bytes, blockStart(block));
+                bytes.flip();
+                checkCrc(bytes, blockCrcs[block], block);
+                entry.setValue(bytes);
+            }
+        } finally {
+            channel.close();
+        }
+        for (int row : selected) {
+            int block = row / blockRows;
+            ByteBuffer bytes = blocks.get(block).duplicate();
+            bytes.position((int) (offsets[row] - blockStart(block)));
+            bytes.limit(bytes.position() + lengths[row]);
+            buffer.put(bytes);
+        }
+        buffer.flip();
+        CharBuffer chars = Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE)
+            .decode(buffer);
+        return new CharArrayReader(chars.array(), 
+            chars.arrayOffset() + chars.position(), chars.remaining());
+    }
+
+    /**
+     * Throws an exception if the reviews file changed after writing the 
+     * index.
+     *
+     * @throws IOException if the reviews file changed
+     *
+     * @since 2.2
+     */
+    private void checkCurrent() throws IOException {
+        if (!isCurrent()) {
+            throw new IOException("Reviews file changed");
+        }
+    }
+
+    /**
+     * Returns the byte offset of a row block.
+     *
+     * @param block the block number
+     * @return the byte offset
+     *
+     * @since 2.2
+     */
+    private long blockStart(int block) {
+        return offsets[block * blockRows];
+    }
+
+    /**
+     * Returns the byte offset after a row block.
+     *
+     * @param block the block number
+     * @return the byte offset after the last row of <code>block</code>
+     *
+     * @since 2.2
+     */
+    private long blockEnd(int block) {
+        int last = Math.min((block + 1) * blockRows, offsets.length) - 1;
+        return offsets[last] + lengths[last];
+    }
+
+    /**
+     * Reads the header lines or a row block sequentially through 
+     * <code>buffer</code> and verifies its checksum.
+     *
+     * @param channel the channel on the reviews file
+     * @param buffer the buffer to read through
+     * @param block the block number, <code>-1</code> for the header lines
+     * @throws IOException if reading fails or the checksum does not match
+     *
+     * @since 2.2
+     */
+    private void checkBlock(FileChannel channel, ByteBuffer buffer, 
+        int block) throws IOException {
+        long position = block < 0 ? 0 : blockStart(block);
+        long end = block < 0 ? headerLength : blockEnd(block);
+        CRC32 crc = new CRC32();
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(channel, buffer, position);
+            position += buffer.position();
+            buffer.flip();
+            crc.update(buffer);
+        }
+        if ((int) crc.getValue() != (block < 0 ? headerCrc 
+            : blockCrcs[block])) {
+            throw createChecksumException(block);
+        }
+    }
+
+    /**
+     * Verifies the checksum of the header lines or of a row block.
+     *
+     * @param bytes the bytes of the header lines or the block (position
+     *     and limit remain unchanged)
+     * @param expected the expected checksum
+     * @param block the block number, <code>-1</code> for the header lines
+     * @throws IOException if the checksum does not match
+     *
+     * @since 2.2
+     */
+    private void checkCrc(ByteBuffer bytes, int expected, int block) 
+        throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(bytes.duplicate());
+        if ((int) crc.getValue() != expected) {
+            throw createChecksumException(block);
+        }
+    }
+
+    /**
+     * Creates the exception for a checksum mismatch.
+     *
+     * @param block the block number, <code>-1</code> for the header lines
+     * @return the exception naming the affected lines (starting at 
+     *     <code>1</code>)
+     *
+     * @since 2.2
+     */
+    private IOException createChecksumException(int block) {
+        int first = 1;
+        int last = ExerciseData.HEADER_LINES;
+        if (block >= 0) {
+            first = last + block * blockRows + 1;
+            last = Math.min(first + blockRows, 
+                last + offsets.length + 1) - 1;
+        }
+        return new IOException("Checksum mismatch in lines " + first + "-" 
+            + last + " of " + reviewsFile);
+    }
+
+    /**
+     * Fills <code>buffer</code> up to its limit by positioned reads.
+     *
+     * @param channel the channel to read from
+     * @param buffer the buffer to fill
+     * @param position the position in the channel to start reading at
+     * @throws IOException if reading fails or the channel ends before
+     *
+     * @since 2.2
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+        long position) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, pos);
+            if (count < 0) {
+                throw new IOException("Reviews file changed");
+            }
+            pos += count;
+        }
+    }
+
+    /**
+     * Calculates the checksum of a byte range.
+     *
+     * @param bytes the bytes
+     * @param offset the offset of the range
+     * @param length the length of the range
+     * @return the checksum
+     *
+     * @since 2.2
+     */
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+}
@@ -0,0 +1,376 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Realizes an append-only journal of review changes. Instead of rewriting
+ * the complete exercise data on each change, one compact record per 
+ * changed review is appended (and forced to disk). The journal is replayed
+ * on top of the last snapshot written by 
+ * {@link ExerciseData#store(java.io.Writer, boolean)} and shall be 
+ * {@link #reset() reset} whenever a new snapshot was written. If records
+ * may be appended while a snapshot is written, the position at the time
+ * the snapshot was taken shall be obtained by {@link #mark()} and passed
+ * to {@link #reset(long)}.<br/>
+ * Structure of a record (one line):<br/>
+ * task user credits review submitted timestamp<br/>
+ * Records without timestamp, i.e. written before timestamps were 
+ * introduced, are replayed with an unknown timestamp (<code>0</code>).
+ * An incomplete last line, e.g. due to a crash while appending, is 
+ * removed before further records are appended.
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewJournal implements Closeable {
+
+    /**
+     * Defines the number of fields of a complete record.
+     * 
+     * @since 2.2
+     */
+    private static final int RECORD_FIELDS = 6;
+
+    /**
+     * Defines the number of fields of a complete record without timestamp.
+     * 
+     * @since 2.2
+     */
+    private static final int LEGACY_RECORD_FIELDS = 5;
+
+    /**
+     * Stores the journal file.
+     * 
+     * @since 2.2
+     */
+    private File file;
+
+    /**
+     * Stores the channel for appending records (lazily opened).
+     * 
+     * @since 2.2
+     */
+    private FileChannel channel;
+
+    /**
+     * Stores the number of records in the journal.
+     * 
+     * @since 2.2
+     */
+    private int recordCount;
+
+    /**
+     * Creates a new journal instance.
+     * 
+     * @param file the journal file (may not exist)
+     * 
+     * @since 2.2
+     */
+    public ReviewJournal(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends a record for the given review and forces it to disk.
+     * 
+     * @param task the task/exercise the review belongs to
+     * @param review the changed review
+     * @throws IOException if writing the record fails
+     * 
+     * @since 2.2
+     */
+    public synchronized void append(String task, Review review) 
+        throws IOException {
+        StringWriter record = new StringWriter();
+        record.append(task);
+        record.append(TsvScanner.SEPARATOR);
+        record.append(review.getUserName());
+        record.append(TsvScanner.SEPARATOR);
+        Credits.write(review.getCreditsFixedPoint(), record);
+        record.append(TsvScanner.SEPARATOR);
+        ReviewTextCodec.mask(review.getReview(), record);
+        record.append(TsvScanner.SEPARATOR);
+        record.append(String.valueOf(review.isSubmittedToServer()));
+        record.append(TsvScanner.SEPARATOR);
+        record.append(String.valueOf(review.getTimestamp()));
+        record.append('\n');
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(record.toString());
+        FileChannel out = getChannel();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        out.force(false);
+        recordCount++;
+    }
+
+    /**
+     * Returns the channel for appending records. Truncates an incomplete
+     * last line before opening the channel.
+     * 
+     * @return the channel
+     * @throws IOException if opening the channel fails
+     * 
+     * @since 2.2
+     */
+    private FileChannel getChannel() throws IOException {
+        if (null == channel) {
+            truncateIncomplete();
+            channel = FileChannel.open(file.toPath(), 
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, 
+                StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    /**
+     * Truncates the journal file after its last complete line, so that an
+     * incomplete record is not continued by the next record.
+     * 
+     * @throws IOException if reading or truncating the file fails
+     * 
+     * @since 2.2
+     */
+    private void truncateIncomplete() throws IOException {
+        if (file.exists()) {
+            FileChannel repair = FileChannel.open(file.toPath(), 
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                long complete = getCompleteLength(repair);
+                if (complete < repair.size()) {
+                    repair.truncate(complete);
+                    repair.force(false);
+                }
+            } finally {
+                repair.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the complete lines in the given channel, i.e.
+     * the position after the last line end.
+     * 
+     * @param in the channel to read from
+     * @return the length of the complete lines
+     * @throws IOException if reading fails
+     * 
+     * @since 2.2
+     */
+    private static long getCompleteLength(FileChannel in) 
+        throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long result = 0;
+        long end = in.size();
+        while (0 == result && end > 0) {
+            long start = Math.max(0, end - buffer.capacity());
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining() 
+                && in.read(buffer, start + buffer.position()) >= 0) {
+                // read until complete
+            }
+            for (int i = buffer.position() - 1; 0 == result && i >= 0; i--) {
+                if ('\n' == buffer.get(i)) {
+                    result = start + i + 1;
+                }
+            }
+            end = start;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of records in this journal, i.e. the valid 
+     * records replayed or appended since the last {@link #reset()}.
+     * 
+     * @return the number of records
+     * 
+     * @since 2.2
+     */
+    public synchronized int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the current end of the journal, i.e. the position after the
+     * last record appended so far.
+     * 
+     * @return the current end of the journal
+     * @throws IOException if determining the position fails
+     * 
+     * @since 2.2
+     */
+    public synchronized long mark() throws IOException {
+        long result;
+        if (null != channel) {
+            result = channel.size();
+        } else {
+            result = file.length();
+        }
+        return result;
+    }
+
+    /**
+     * Removes all records up to the given mark, e.g. as they are part of a 
+     * new snapshot, while keeping the records appended after the mark.
+     * 
+     * @param mark the mark as returned by {@link #mark()}
+     * @throws IOException if modifying the journal fails
+     * 
+     * @since 2.2
+     */
+    public synchronized void reset(long mark) throws IOException {
+        long size = mark();
+        if (mark >= size) {
+            reset();
+        } else if (mark > 0) {
+            ByteBuffer rest = ByteBuffer.allocate((int) (size - mark));
+            FileChannel in = FileChannel.open(file.toPath(), 
+                StandardOpenOption.READ);
+            try {
+                while (rest.hasRemaining() 
+                    && in.read(rest, mark + rest.position()) >= 0) {
+                    // read until complete
+                }
+            } finally {
+                in.close();
+            }
+            int count = 0;
+            for (int i = 0; i < rest.position(); i++) {
+                if ('\n' == rest.get(i)) {
+                    count++;
+                }
+            }
+            close();
+            File tmp = FileUtils.writeTempFile(file, 
+                Arrays.copyOf(rest.array(), rest.position()));
+            FileUtils.replace(tmp, file);
+            recordCount = count;
+        }
+    }
+
+    /**
+     * Removes all records, e.g. as they are part of a new snapshot.
+     * 
+     * @throws IOException if truncating the journal fails
+     * 
+     * @since 2.2
+     */
+    public synchronized void reset() throws IOException {
+        if (null != channel || file.exists()) {
+            getChannel().truncate(0);
+            getChannel().force(false);
+        }
+        recordCount = 0;
+    }
+
+    /**
+     * Replays the records of this journal on the given data. Records
+     * referring to unknown exercises as well as incomplete records, 
+     * e.g. due to a crash while appending, are ignored.
+     * 
+     * @param data the data to apply the records to
+     * @throws IOException if reading the journal fails
+     * 
+     * @since 2.2
+     */
+    public synchronized void replay(ExerciseData data) throws IOException {
+        List<ReviewRecord> records = new ArrayList<ReviewRecord>();
+        int count = 0;
+        try {
+            TsvScanner scanner = new TsvScanner(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8));
+            try {
+                while (scanner.nextLine()) {
+                    ReviewRecord record = readRecord(scanner, data);
+                    if (null != record) {
+                        records.add(record);
+                        count++;
+                    }
+                }
+            } finally {
+                scanner.close();
+            }
+        } catch (FileNotFoundException e) {
+            // no journal, nothing to replay
+        }
+        data.addReviews(records);
+        recordCount = count;
+    }
+
+    /**
+     * Reads a journal record from the current line.
+     * 
+     * @param scanner the scanner positioned at the record line
+     * @param data the data to resolve the exercise from
+     * @return the record or <b>null</b> if the record is incomplete, 
+     *     denotes an empty review or refers to an unknown exercise
+     * 
+     * @since 2.2
+     */
+    private static ReviewRecord readRecord(TsvScanner scanner, 
+        ExerciseData data) {
+        String[] fields = new String[RECORD_FIELDS];
+        int count = 0;
+        while (count < RECORD_FIELDS && scanner.nextField()) {
+            if (count < 2) {
+                // task and user
+                fields[count] = scanner.fieldToPooledString();
+            } else {
+                fields[count] = scanner.fieldToString();
+            }
+            count++;
+        }
+        ReviewRecord result = null;
+        boolean submitted = Boolean.TRUE.toString().equals(fields[4]);
+        if (count >= LEGACY_RECORD_FIELDS && !scanner.hasMoreFields()
+            && (submitted || Boolean.FALSE.toString().equals(fields[4]))
+            && !ExerciseData.EMPTY_REVIEW.equals(fields[3])) {
+            Exercise exercise = data.getExercise(fields[0]);
+            try {
+                long credits = Credits.parse(fields[2]);
+                long timestamp = 0;
+                if (RECORD_FIELDS == count) {
+                    timestamp = ReviewClock.parse(fields[5]);
+                }
+                if (null != exercise) {
+                    result = new ReviewRecord(fields[1], exercise, credits, 
+                        ReviewTextCodec.unmask(fields[3]), submitted, 
+                        timestamp);
+                }
+            } catch (NumberFormatException e) {
+                // incomplete record
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Closes this journal.
+     * 
+     * @throws IOException if closing fails
+     * 
+     * @since 2.2
+     */
+    public synchronized void close() throws IOException {
+        if (null != channel) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+}
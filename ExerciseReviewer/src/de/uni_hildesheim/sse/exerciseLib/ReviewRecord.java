@@ -0,0 +1,188 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+/**
+ * Stores the data of one review cell as read from a persistent 
+ * representation before it is turned into a {@link Review}.
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class ReviewRecord {
+
+    /**
+     * Stores the name of the reviewed user (group).
+     * 
+     * @since 2.2
+     */
+    private String userName;
+
+    /**
+     * Stores the exercise the review belongs to.
+     * 
+     * @since 2.2
+     */
+    private Exercise exercise;
+
+    /**
+     * Stores the credits as read (in tenths, see {@link Credits}).
+     * 
+     * @since 2.2
+     */
+    private long credits;
+
+    /**
+     * Stores the (unmasked) review text as read.
+     * 
+     * @since 2.2
+     */
+    private String text;
+
+    /**
+     * Stores if the review was submitted to a server.
+     * 
+     * @since 2.2
+     */
+    private boolean submitted;
+
+    /**
+     * Stores the timestamp of the last change (see {@link ReviewClock}).
+     * 
+     * @since 2.2
+     */
+    private long timestamp;
+
+    /**
+     * Creates a new review record.
+     * 
+     * @param userName the name of the reviewed user (group)
+     * @param exercise the exercise the review belongs to
+     * @param credits the credits as read (in tenths)
+     * @param text the (unmasked) review text as read
+     * @param submitted if the review was submitted to a server
+     * @param timestamp the timestamp of the last change, <code>0</code> if
+     *     unknown
+     * 
+     * @since 2.2
+     */
+    ReviewRecord(String userName, Exercise exercise, long credits, 
+        String text, boolean submitted, long timestamp) {
+        this.userName = userName;
+        this.exercise = exercise;
+        this.credits = credits;
+        this.text = text;
+        this.submitted = submitted;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Returns the name of the reviewed user (group).
+     * 
+     * @return the name of the user
+     * 
+     * @since 2.2
+     */
+    String getUserName() {
+        return userName;
+    }
+
+    /**
+     * Returns the exercise the review belongs to.
+     * 
+     * @return the exercise
+     * 
+     * @since 2.2
+     */
+    Exercise getExercise() {
+        return exercise;
+    }
+
+    /**
+     * Returns the credits as read.
+     * 
+     * @return the credits in tenths
+     * 
+     * @since 2.2
+     */
+    long getCredits() {
+        return credits;
+    }
+
+    /**
+     * Returns the (unmasked) review text as read.
+     * 
+     * @return the review text
+     * 
+     * @since 2.2
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Returns if the review was submitted to a server.
+     * 
+     * @return <code>true</code> if it was submitted, <code>false</code> else
+     * 
+     * @since 2.2
+     */
+    boolean isSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Returns the timestamp of the last change.
+     * 
+     * @return the timestamp (see {@link ReviewClock}), <code>0</code> if
+     *     unknown
+     * 
+     * @since 2.2
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Compares the version of this record with the given review in 
+     * last-writer-wins order (see 
+     * {@link Review#compareVersion(long, long, String, boolean)}).
+     * 
+     * @param review the review to compare with
+     * @return a negative integer, zero, or a positive integer as this 
+     *     record is older than, equal to, or newer than <code>review</code>
+     * 
+     * @since 2.2
+     */
+    int compareVersion(Review review) {
+        return -review.compareVersion(timestamp, credits, text, submitted);
+    }
+
+    /**
+     * Compares the version of this record with the given record in 
+     * last-writer-wins order (see 
+     * {@link Review#compareVersion(long, long, String, boolean)}).
+     * 
+     * @param record the record to compare with
+     * @return a negative integer, zero, or a positive integer as this 
+     *     record is older than, equal to, or newer than <code>record</code>
+     * 
+     * @since 2.2
+     */
+    int compareVersion(ReviewRecord record) {
+        int result = Long.compare(timestamp, record.timestamp);
+        if (0 == result && 0 == timestamp) {
+            return 0;
+        }
+        if (0 == result) {
+            result = Long.compare(credits, record.credits);
+        }
+        if (0 == result) {
+            result = text.compareTo(record.text);
+        }
+        if (0 == result) {
+            result = Boolean.compare(submitted, record.submitted);
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,160 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Masks review texts so that they can be stored in a single cell of a
+ * tabulator-separated file and unmasks them while reading. Line breaks
+ * and tabulators are replaced by <code>&lt;*n*&gt;</code>,
+ * <code>&lt;*r*&gt;</code> and <code>&lt;*t*&gt;</code>, empty texts are
+ * represented by {@link ExerciseData#EMPTY_REVIEW}. Both directions work
+ * in a single pass; masking writes directly to the output and unmasking
+ * only copies the text if it actually contains a mask.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class ReviewTextCodec {
+
+    /**
+     * Defines the length of a mask.
+     *
+     * @since 2.2
+     */
+    private static final int MASK_LENGTH = 5;
+
+    /**
+     * Prevents this class from being instantiated from outside.
+     *
+     * @since 2.2
+     */
+    private ReviewTextCodec() {
+    }
+
+    /**
+     * Writes the masked text to the given writer.
+     *
+     * @param text the text to be masked
+     * @param out the writer
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    static void mask(String text, Writer out) throws IOException {
+        int length = text.length();
+        if (0 == length) {
+            out.write(ExerciseData.EMPTY_REVIEW);
+        }
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char code = getCode(text.charAt(i));
+            if (0 != code) {
+                out.write(text, start, i - start);
+                out.write('<');
+                out.write('*');
+                out.write(code);
+                out.write('*');
+                out.write('>');
+                start = i + 1;
+            }
+        }
+        out.write(text, start, length - start);
+    }
+
+    /**
+     * Returns the code character of the mask for <code>c</code>.
+     *
+     * @param c the character to be masked
+     * @return the code character or <code>0</code> if <code>c</code>
+     *         does not need to be masked
+     *
+     * @since 2.2
+     */
+    private static char getCode(char c) {
+        char result;
+        switch (c) {
+        case '\n':
+            result = 'n';
+            break;
+        case '\r':
+            result = 'r';
+            break;
+        case '\t':
+            result = 't';
+            break;
+        default:
+            result = 0;
+            break;
+        }
+        return result;
+    }
+
+    /**
+     * Unmasks the given text.
+     *
+     * @param text the masked text
+     * @return the unmasked text
+     *
+     * @since 2.2
+     */
+    static String unmask(CharSequence text) {
+        int length = text.length();
+        StringBuilder result = null;
+        int start = 0;
+        for (int i = 0; i + MASK_LENGTH <= length; i++) {
+            char c = getMaskedChar(text, i);
+            if (0 != c) {
+                if (null == result) {
+                    result = new StringBuilder(length);
+                }
+                result.append(text, start, i);
+                result.append(c);
+                i += MASK_LENGTH - 1;
+                start = i + 1;
+            }
+        }
+        String unmasked;
+        if (null == result) {
+            unmasked = text.toString();
+        } else {
+            result.append(text, start, length);
+            unmasked = result.toString();
+        }
+        return unmasked;
+    }
+
+    /**
+     * Returns the character masked at the given position.
+     *
+     * @param text the masked text
+     * @param pos the position to check, at least {@link #MASK_LENGTH}
+     *        characters must be available from there
+     * @return the masked character or <code>0</code> if there is no mask
+     *         at <code>pos</code>
+     *
+     * @since 2.2
+     */
+    private static char getMaskedChar(CharSequence text, int pos) {
+        char result = 0;
+        if ('<' == text.charAt(pos) && '*' == text.charAt(pos + 1)
+            && '*' == text.charAt(pos + 3) && '>' == text.charAt(pos + 4)) {
+            switch (text.charAt(pos + 2)) {
+            case 'n':
+                result = '\n';
+                break;
+            case 'r':
+                result = '\r';
+                break;
+            case 't':
+                result = '\t';
+                break;
+            default:
+                break;
+            }
+        }
+        return result;
+    }
+
+}
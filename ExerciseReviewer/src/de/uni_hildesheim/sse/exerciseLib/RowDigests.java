@@ -0,0 +1,262 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records digests of the rows of a tabulator-separated file as read last,
+ * so that the file can be re-read incrementally, i.e. only rows which
+ * were added or changed since then are parsed and applied, while rows
+ * which disappeared are reported as removed. Rows are identified by their
+ * first field (e.g. the user name), repeated names by their occurrence. 
+ * The given number of header lines is compared as a whole. In addition,
+ * a baseline timestamp (see {@link ReviewClock}) can be recorded denoting
+ * the latest change which is reflected by the file, so that newer local
+ * changes can be kept when the file changes.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class RowDigests {
+
+    /**
+     * Stores the number of header lines.
+     *
+     * @since 2.2
+     */
+    private int headerLines;
+
+    /**
+     * Stores the digest of the header lines.
+     *
+     * @since 2.2
+     */
+    private long header;
+
+    /**
+     * Stores the digests of the rows by their keys.
+     *
+     * @since 2.2
+     */
+    private Map<String, Long> rows = new HashMap<String, Long>();
+
+    /**
+     * Stores if the file was read before.
+     *
+     * @since 2.2
+     */
+    private boolean indexed;
+
+    /**
+     * Stores the baseline timestamp.
+     *
+     * @since 2.2
+     */
+    private long baseline;
+
+    /**
+     * Creates new (empty) row digests, i.e. the next read of the file
+     * considers all rows as added.
+     *
+     * @param headerLines the number of header lines of the file
+     *
+     * @since 2.2
+     */
+    public RowDigests(int headerLines) {
+        this.headerLines = headerLines;
+    }
+
+    /**
+     * Creates the row digests of a file without parsing its rows.
+     *
+     * @param in the reader on the file (will be closed)
+     * @param headerLines the number of header lines of the file
+     * @param baseline the timestamp of the latest change reflected by the
+     *     file
+     * @return the row digests
+     * @throws IOException if reading fails
+     *
+     * @since 2.2
+     */
+    public static RowDigests index(Reader in, int headerLines,
+        long baseline) throws IOException {
+        RowDigests result = new RowDigests(headerLines);
+        result.scan(in, new Handler<RuntimeException>());
+        result.setBaseline(baseline);
+        return result;
+    }
+
+    /**
+     * Returns if the file was read before, i.e. if these digests can be
+     * used to determine changes.
+     *
+     * @return <code>true</code> if the file was read before,
+     *     <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    /**
+     * Returns the baseline timestamp.
+     *
+     * @return the timestamp of the latest change reflected by the file
+     *
+     * @since 2.2
+     */
+    public long getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Changes the baseline timestamp.
+     *
+     * @param baseline the timestamp of the latest change reflected by the
+     *     file
+     *
+     * @since 2.2
+     */
+    public void setBaseline(long baseline) {
+        this.baseline = baseline;
+    }
+
+    /**
+     * Reads the file and passes the header lines as well as the added or
+     * changed rows to <code>handler</code>. If the file was read before
+     * and its header lines changed, reading stops and the digests remain
+     * unchanged, i.e. the caller shall read the complete file with new
+     * digests. The same applies if the file does not contain all header 
+     * lines anymore. Otherwise, the digests are updated.
+     *
+     * @param <E> the type of exception thrown by the handler
+     * @param in the reader on the file (will be closed)
+     * @param handler the handler for the header lines and the rows
+     * @return the number of added, changed or removed rows considered by
+     *     the handler, negative if the header lines changed
+     * @throws IOException if reading fails
+     * @throws E if the handler fails
+     *
+     * @since 2.2
+     */
+    <E extends Exception> int scan(Reader in, Handler<E> handler)
+        throws IOException, E {
+        TsvScanner scanner = new TsvScanner(in);
+        Map<String, Long> current = new HashMap<String, Long>();
+        long headerDigest = 0;
+        boolean valid = true;
+        int changed = 0;
+        try {
+            while (valid && scanner.nextLine()) {
+                int lineNr = scanner.getLineNumber();
+                long digest = scanner.lineDigest();
+                if (lineNr <= headerLines) {
+                    headerDigest = 31 * headerDigest + digest;
+                    valid = !indexed || lineNr < headerLines
+                        || headerDigest == header;
+                    if (valid) {
+                        handler.header(scanner, !indexed);
+                    }
+                } else if (scanner.nextField()) {
+                    String name = scanner.fieldToPooledString();
+                    String key = name;
+                    for (int i = 1; current.containsKey(key); i++) {
+                        // repeated name, identify by occurrence
+                        key = name + TsvScanner.SEPARATOR + i;
+                    }
+                    Long previous = rows.get(key);
+                    if (null != previous && previous == digest) {
+                        current.put(key, digest);
+                    } else if (handler.row(scanner, key, name)) {
+                        current.put(key, digest);
+                        changed++;
+                    }
+                }
+            }
+            // incomplete header lines are considered as changed
+            valid &= !indexed || scanner.getLineNumber() >= headerLines;
+        } finally {
+            scanner.close();
+        }
+        if (valid) {
+            for (String key : rows.keySet()) {
+                if (!current.containsKey(key)) {
+                    int pos = key.indexOf(TsvScanner.SEPARATOR);
+                    handler.removed(key, 
+                        pos < 0 ? key : key.substring(0, pos));
+                    changed++;
+                }
+            }
+            rows = current;
+            header = headerDigest;
+            indexed = true;
+        } else {
+            changed = -1;
+        }
+        return changed;
+    }
+
+    /**
+     * Handles the lines passed by {@link RowDigests#scan(Reader, Handler)}.
+     * The default implementation ignores all lines. Handlers which do not
+     * fail use {@link RuntimeException} as exception type so that scanning
+     * only throws {@link IOException}.
+     *
+     * @param <E> the type of exception thrown by the handler
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    static class Handler<E extends Exception> {
+
+        /**
+         * Handles a header line.
+         *
+         * @param scanner the scanner positioned at the header line
+         * @param complete <code>true</code> if the complete file is read,
+         *     <code>false</code> if only changes are read, i.e. the header
+         *     lines did not change
+         * @throws E if handling the line fails
+         *
+         * @since 2.2
+         */
+        void header(TsvScanner scanner, boolean complete) throws E {
+        }
+
+        /**
+         * Handles an added or changed row.
+         *
+         * @param scanner the scanner positioned at the first field of the
+         *     row
+         * @param key the key identifying the row
+         * @param name the name in the first field of the row
+         * @return <code>true</code> if the row was considered,
+         *     <code>false</code> if the row shall be passed again on the
+         *     next read, e.g. as the row refers to an unknown user
+         * @throws E if handling the row fails
+         *
+         * @since 2.2
+         */
+        boolean row(TsvScanner scanner, String key, String name) throws E {
+            return true;
+        }
+
+        /**
+         * Handles a removed row.
+         *
+         * @param key the key identifying the removed row
+         * @param name the name in the first field of the removed row
+         *
+         * @since 2.2
+         */
+        void removed(String key, String name) {
+        }
+
+    }
+
+}
@@ -0,0 +1,808 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Stores the binary snapshot of {@link ExerciseData} partitioned by
+ * exercise, i.e. as a directory containing one segment file per exercise
+ * (in the format of {@link BinarySnapshot}) and a small manifest listing
+ * the exercises and their segments. In contrast to a single snapshot
+ * file, storing the data rewrites only the segments of the exercises
+ * which were modified since they were written last, i.e. the amount of
+ * data written depends on the active exercises only. Loading the data
+ * reads only the manifest, the reviews of an exercise are loaded from its
+ * segment on first access (see {@link Exercise}). If a cache size is
+ * given, the reviews are loaded lazily from the segments (see
+ * {@link ReviewBodies}, the cache size applies per segment).<br/>
+ * Structure of the manifest (big endian):<br/>
+ * <code>
+ * int magic, int version, long exported, int nextSegment<br/>
+ * int #exercises, {string name, int maxCredits, int segment,
+ * long latest}*
+ * </code><br/>
+ * Thereby, <code>exported</code> is the timestamp of the latest review
+ * reflected by the tabulator-separated export of the data,
+ * <code>segment</code> is the number of the segment file and
+ * <code>latest</code> is the timestamp of the latest review in the
+ * segment. Storing is split into rendering the modified segments while
+ * the data is locked ({@link ExerciseData#storeSnapshot(
+ * SnapshotPartitions, long)}) and writing them afterwards
+ * ({@link #commit()}). Segments are replaced atomically, the manifest is
+ * replaced last, i.e. it acts as commit point. Segments of removed
+ * exercises are deleted after the manifest was replaced.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class SnapshotPartitions {
+
+    /**
+     * Defines the magic number identifying the manifest ("ERPM").
+     *
+     * @since 2.2
+     */
+    private static final int MAGIC = 0x4552504D;
+
+    /**
+     * Defines the current version of the manifest format.
+     *
+     * @since 2.2
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Defines the name of the manifest file.
+     *
+     * @since 2.2
+     */
+    private static final String MANIFEST = "manifest";
+
+    /**
+     * Defines the extension of the segment files.
+     *
+     * @since 2.2
+     */
+    private static final String SEGMENT_EXTENSION = ".bin";
+
+    /**
+     * Stores the directory containing manifest and segments.
+     *
+     * @since 2.2
+     */
+    private File directory;
+
+    /**
+     * Stores the maximum number of cached texts per segment, reviews are
+     * loaded completely if not positive.
+     *
+     * @since 2.2
+     */
+    private int cacheSize;
+
+    /**
+     * Stores the segments by the names of their exercises.
+     *
+     * @since 2.2
+     */
+    private Map<String, Segment> segments = new HashMap<String, Segment>();
+
+    /**
+     * Stores the number of the next new segment.
+     *
+     * @since 2.2
+     */
+    private int nextSegment;
+
+    /**
+     * Stores the timestamp of the latest review reflected by the export.
+     *
+     * @since 2.2
+     */
+    private long exported;
+
+    /**
+     * Stores the segments in manifest order as rendered last, <b>null</b>
+     * if nothing is rendered.
+     *
+     * @since 2.2
+     */
+    private Map<String, Segment> staged;
+
+    /**
+     * Stores the export timestamp rendered last.
+     *
+     * @since 2.2
+     */
+    private long stagedExported;
+
+    /**
+     * Creates new snapshot partitions.
+     *
+     * @param directory the directory containing manifest and segments
+     * @param cacheSize the maximum number of cached texts per segment,
+     *     reviews are loaded completely if not positive
+     *
+     * @since 2.2
+     */
+    public SnapshotPartitions(File directory, int cacheSize) {
+        this.directory = directory;
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Returns if the partitions exist, i.e. if there is a manifest.
+     *
+     * @return <code>true</code> if the partitions exist,
+     *     <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean exists() {
+        return getManifestFile().exists();
+    }
+
+    /**
+     * Returns the time of the last commit.
+     *
+     * @return the modification time of the manifest, <code>0</code> if
+     *     the partitions do not exist
+     *
+     * @since 2.2
+     */
+    public long lastModified() {
+        return getManifestFile().lastModified();
+    }
+
+    /**
+     * Returns the timestamp of the latest review reflected by the
+     * tabulator-separated export as recorded by the last commit or load.
+     *
+     * @return the timestamp (see {@link ReviewClock})
+     *
+     * @since 2.2
+     */
+    public synchronized long getExportedTimestamp() {
+        return exported;
+    }
+
+    /**
+     * Returns if the tabulator-separated export is outdated, i.e. if the
+     * segments contain reviews which are newer than the export.
+     *
+     * @return <code>true</code> if the export is outdated, 
+     *     <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public synchronized boolean isExportOutdated() {
+        boolean outdated = false;
+        for (Segment segment : segments.values()) {
+            outdated |= segment.latest > exported;
+        }
+        return outdated;
+    }
+
+    /**
+     * Returns the manifest file.
+     *
+     * @return the manifest file
+     *
+     * @since 2.2
+     */
+    private File getManifestFile() {
+        return new File(directory, MANIFEST);
+    }
+
+    /**
+     * Loads the manifest into <code>data</code>, i.e. adds the exercises
+     * to be read, the reviews of which are loaded on first access.
+     *
+     * @param data the data to be modified as a side effect
+     * @param provider the user data provider, reviews of unknown users
+     *     are omitted
+     * @throws IOException if the manifest cannot be read, is not
+     *     supported or refers to missing segments
+     *
+     * @since 2.2
+     */
+    synchronized void load(ExerciseData data, UserProvider provider)
+        throws IOException {
+        for (Segment segment : readManifest()) {
+            if (data.isRead(segment.name)) {
+                segment.exercise = new Exercise(segment.name,
+                    segment.maxCredits, segment.createLoader(provider));
+                data.addExercise(segment.exercise);
+            }
+        }
+    }
+
+    /**
+     * Adds the reviews of the segments which are newer than the export
+     * (see {@link #getExportedTimestamp()}) to <code>data</code> unless
+     * <code>data</code> contains newer reviews, e.g. after the export was
+     * changed by another program and loaded into <code>data</code>.
+     *
+     * @param data the data to be modified as a side effect
+     * @param provider the user data provider, reviews of unknown users
+     *     are omitted
+     * @return the number of added reviews
+     * @throws IOException if the manifest cannot be read or is not
+     *     supported
+     *
+     * @since 2.2
+     */
+    synchronized int recover(ExerciseData data, UserProvider provider)
+        throws IOException {
+        int count = 0;
+        for (Segment segment : readManifest()) {
+            Exercise exercise = data.getExercise(segment.name);
+            if (null != exercise && segment.latest > exported) {
+                for (Review review : segment.createLoader(provider).load()) {
+                    Review existing = exercise.getReview(
+                        review.getUserName());
+                    if (review.getTimestamp() > exported
+                        && (null == existing
+                        || existing.getTimestamp() < review.getTimestamp())) {
+                        exercise.addReview(review);
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Reads the manifest, replaces the known segments and removes files
+     * not referenced by the manifest, e.g. left over by an interrupted
+     * commit. The segments are not assigned to exercises.
+     *
+     * @return the segments in manifest order
+     * @throws IOException if the manifest cannot be read, is not
+     *     supported or refers to missing segments
+     *
+     * @since 2.2
+     */
+    private List<Segment> readManifest() throws IOException {
+        List<Segment> result = new ArrayList<Segment>();
+        ByteBuffer in = ByteBuffer.wrap(
+            Files.readAllBytes(getManifestFile().toPath()));
+        long exp;
+        int next;
+        try {
+            if (MAGIC != in.getInt() || VERSION != in.getInt()) {
+                throw new IOException("Unsupported manifest format");
+            }
+            exp = in.getLong();
+            next = in.getInt();
+            // name length, maximum credits, number and timestamp at least
+            int count = readCount(in, 20);
+            for (int e = 0; e < count; e++) {
+                String name = readString(in);
+                int maxCredits = in.getInt();
+                Segment segment = new Segment(name, in.getInt(), maxCredits);
+                segment.latest = in.getLong();
+                if (!segment.file.isFile()) {
+                    throw new IOException("Missing segment "
+                        + segment.file);
+                }
+                result.add(segment);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupted manifest", e);
+        }
+        release();
+        exported = exp;
+        nextSegment = next;
+        long latest = 0;
+        for (Segment segment : result) {
+            segments.put(segment.name, segment);
+            latest = Math.max(latest, segment.latest);
+        }
+        // new reviews shall be newer than the ones not loaded yet
+        ReviewClock.observe(latest);
+        deleteUnreferenced();
+        return result;
+    }
+
+    /**
+     * Renders the segments of the exercises in <code>data</code> which
+     * were modified since they were loaded or written last. To be called
+     * while no modifications of <code>data</code> happen, the segments
+     * are written by {@link #commit()}. Partitions shall not be rendered
+     * from data reading only selected exercises.
+     *
+     * @param data the data to be rendered
+     * @param exported the timestamp of the latest review reflected by the
+     *     tabulator-separated export of <code>data</code>
+     * @throws IOException if rendering fails
+     *
+     * @since 2.2
+     */
+    synchronized void stage(ExerciseData data, long exported)
+        throws IOException {
+        staged = new LinkedHashMap<String, Segment>();
+        stagedExported = exported;
+        for (Iterator<Exercise> iter = data.exercises(); iter.hasNext();) {
+            Exercise exercise = iter.next();
+            String name = exercise.getName();
+            Segment segment = segments.get(name);
+            if (null == segment) {
+                segment = new Segment(name, nextSegment++,
+                    (int) exercise.getMaxCreditsFixedPoint());
+            }
+            if (segment.isModified(exercise)) {
+                segment.render(exercise);
+            }
+            staged.put(name, segment);
+        }
+    }
+
+    /**
+     * Writes the segments rendered last (see
+     * {@link ExerciseData#storeSnapshot(SnapshotPartitions, long)}) and
+     * replaces the manifest. Does nothing if nothing was rendered.
+     *
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    public synchronized void commit() throws IOException {
+        Map<String, Segment> next = staged;
+        staged = null;
+        if (null != next) {
+            try {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + directory);
+                }
+                for (Segment segment : next.values()) {
+                    segment.writeTemp();
+                }
+                for (Segment segment : next.values()) {
+                    segment.replace();
+                }
+                File manifest = getManifestFile();
+                FileUtils.replace(FileUtils.writeTempFile(manifest,
+                    renderManifest(next)), manifest);
+            } finally {
+                for (Segment segment : next.values()) {
+                    segment.unstage();
+                }
+            }
+            for (Segment segment : segments.values()) {
+                if (next.get(segment.name) != segment) {
+                    segment.contents.release();
+                    segment.file.delete();
+                }
+            }
+            segments = new HashMap<String, Segment>(next);
+            exported = stagedExported;
+        }
+    }
+
+    /**
+     * Renders the manifest.
+     *
+     * @param next the segments in manifest order
+     * @return the manifest
+     * @throws IOException if rendering fails
+     *
+     * @since 2.2
+     */
+    private byte[] renderManifest(Map<String, Segment> next)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(stagedExported);
+        out.writeInt(nextSegment);
+        out.writeInt(next.size());
+        for (Segment segment : next.values()) {
+            byte[] name = segment.name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            boolean modified = null != segment.rendered;
+            out.writeInt(modified ? segment.stagedMaxCredits 
+                : segment.maxCredits);
+            out.writeInt(segment.number);
+            out.writeLong(modified ? segment.stagedLatest : segment.latest);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deletes the partitions, e.g. as the data is replaced by an imported
+     * export.
+     *
+     * @since 2.2
+     */
+    public synchronized void delete() {
+        release();
+        staged = null;
+        exported = 0;
+        nextSegment = 0;
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Releases the cached contents of the known segments and forgets them.
+     * Reviews loaded lazily from the segments do not provide texts
+     * anymore.
+     *
+     * @since 2.2
+     */
+    private void release() {
+        for (Segment segment : segments.values()) {
+            segment.contents.release();
+        }
+        segments = new HashMap<String, Segment>();
+    }
+
+    /**
+     * Deletes the files in the directory which are neither the manifest
+     * nor a known segment.
+     *
+     * @since 2.2
+     */
+    private void deleteUnreferenced() {
+        List<File> keep = new ArrayList<File>();
+        keep.add(getManifestFile());
+        for (Segment segment : segments.values()) {
+            keep.add(segment.file);
+        }
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                if (!keep.contains(file)) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a count or a length and checks it against the remaining bytes
+     * before anything is allocated for it.
+     *
+     * @param in the input buffer
+     * @param elementSize the minimum number of bytes per counted element
+     * @return the count
+     * @throws IOException if the count is negative or exceeds the 
+     *     remaining bytes
+     *
+     * @since 2.2
+     */
+    private static int readCount(ByteBuffer in, int elementSize) 
+        throws IOException {
+        int count = in.getInt();
+        if (count < 0 || (long) count * elementSize > in.remaining()) {
+            throw new IOException("Corrupted manifest");
+        }
+        return count;
+    }
+
+    /**
+     * Reads a length-prefixed string.
+     *
+     * @param in the input buffer
+     * @return the string read
+     * @throws IOException if the length is negative or exceeds the 
+     *     remaining bytes
+     *
+     * @since 2.2
+     */
+    private static String readString(ByteBuffer in) throws IOException {
+        byte[] bytes = new byte[readCount(in, 1)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Represents the segment of an exercise.
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class Segment {
+
+        /**
+         * Stores the name of the exercise.
+         *
+         * @since 2.2
+         */
+        private String name;
+
+        /**
+         * Stores the number of the segment.
+         *
+         * @since 2.2
+         */
+        private int number;
+
+        /**
+         * Stores the segment file.
+         *
+         * @since 2.2
+         */
+        private File file;
+
+        /**
+         * Stores the cached segment file.
+         *
+         * @since 2.2
+         */
+        private CachedFile contents;
+
+        /**
+         * Stores the provider of the texts of the reviews loaded lazily
+         * from the segment, <b>null</b> if reviews are loaded completely.
+         *
+         * @since 2.2
+         */
+        private ReviewBodies bodies;
+
+        /**
+         * Stores the exercise as written or loaded last, <b>null</b> if
+         * not known.
+         *
+         * @since 2.2
+         */
+        private Exercise exercise;
+
+        /**
+         * Stores the revision of {@link #exercise} as written last.
+         *
+         * @since 2.2
+         */
+        private long revision;
+
+        /**
+         * Stores the maximum credits as written last (in tenths).
+         *
+         * @since 2.2
+         */
+        private int maxCredits;
+
+        /**
+         * Stores the timestamp of the latest review as written last.
+         *
+         * @since 2.2
+         */
+        private long latest;
+
+        /**
+         * Stores the rendered segment, <b>null</b> if the segment is not
+         * modified.
+         *
+         * @since 2.2
+         */
+        private byte[] rendered;
+
+        /**
+         * Stores the temporary file written from {@link #rendered}.
+         *
+         * @since 2.2
+         */
+        private File temp;
+
+        /**
+         * Stores the rendered exercise.
+         *
+         * @since 2.2
+         */
+        private Exercise stagedExercise;
+
+        /**
+         * Stores the rendered revision.
+         *
+         * @since 2.2
+         */
+        private long stagedRevision;
+
+        /**
+         * Stores the rendered maximum credits (in tenths).
+         *
+         * @since 2.2
+         */
+        private int stagedMaxCredits;
+
+        /**
+         * Stores the rendered timestamp of the latest review.
+         *
+         * @since 2.2
+         */
+        private long stagedLatest;
+
+        /**
+         * Creates a new segment.
+         *
+         * @param name the name of the exercise
+         * @param number the number of the segment
+         * @param maxCredits the maximum credits (in tenths)
+         *
+         * @since 2.2
+         */
+        private Segment(String name, int number, int maxCredits) {
+            this.name = name;
+            this.number = number;
+            this.maxCredits = maxCredits;
+            this.file = new File(directory, number + SEGMENT_EXTENSION);
+            this.contents = new CachedFile(file);
+            if (cacheSize > 0) {
+                bodies = new ReviewBodies(contents, cacheSize);
+            }
+        }
+
+        /**
+         * Creates a loader for the reviews in this segment.
+         *
+         * @param provider the user data provider
+         * @return the loader
+         *
+         * @since 2.2
+         */
+        private Exercise.Loader createLoader(final UserProvider provider) {
+            return new Exercise.Loader() {
+
+                @Override
+                Collection<Review> load() throws IOException {
+                    List<Review> result = new ArrayList<Review>();
+                    ExerciseData data = new ExerciseData(provider,
+                        Collections.singleton(name));
+                    try {
+                        if (null == bodies) {
+                            InputStream in = contents.openStream();
+                            contents.release(); // loaded only once
+                            data.loadSnapshot(in, false);
+                        } else {
+                            data.loadSnapshot(bodies, false);
+                        }
+                    } catch (CommunicationException e) {
+                        throw new IOException(e);
+                    }
+                    Exercise loaded = data.getExercise(name);
+                    if (null != loaded) {
+                        for (Iterator<Map.Entry<String, Review>> iter =
+                            loaded.userReviewMappings(); iter.hasNext();) {
+                            result.add(iter.next().getValue());
+                        }
+                    }
+                    return result;
+                }
+
+            };
+        }
+
+        /**
+         * Returns if <code>exercise</code> was modified since this segment
+         * was written or loaded.
+         *
+         * @param exercise the exercise
+         * @return <code>true</code> if the exercise was modified,
+         *     <code>false</code> else
+         *
+         * @since 2.2
+         */
+        private boolean isModified(Exercise exercise) {
+            return this.exercise != exercise
+                || revision != exercise.getRevision()
+                || maxCredits != exercise.getMaxCreditsFixedPoint();
+        }
+
+        /**
+         * Renders this segment from <code>exercise</code>. The reviews of
+         * <code>exercise</code> are loaded before, i.e. a segment is never
+         * replaced by an exercise the stored reviews of which could not be
+         * loaded.
+         *
+         * @param exercise the exercise
+         * @throws IOException if loading the reviews or rendering fails
+         *
+         * @since 2.2
+         */
+        private void render(Exercise exercise) throws IOException {
+            exercise.load();
+            stagedExercise = exercise;
+            stagedRevision = exercise.getRevision();
+            stagedMaxCredits = (int) exercise.getMaxCreditsFixedPoint();
+            stagedLatest = 0;
+            for (Iterator<Map.Entry<String, Review>> iter =
+                exercise.userReviewMappings(); iter.hasNext();) {
+                stagedLatest = Math.max(stagedLatest,
+                    iter.next().getValue().getTimestamp());
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinarySnapshot.write(Collections.singletonList(exercise), out,
+                bodies);
+            rendered = out.toByteArray();
+        }
+
+        /**
+         * Writes the rendered segment to a temporary file.
+         *
+         * @throws IOException if writing fails
+         *
+         * @since 2.2
+         */
+        private void writeTemp() throws IOException {
+            if (null != rendered) {
+                temp = FileUtils.writeTempFile(file, rendered);
+            }
+        }
+
+        /**
+         * Replaces the segment file by the temporary file and binds the
+         * lazily loaded reviews to the new file.
+         *
+         * @throws IOException if replacing fails
+         *
+         * @since 2.2
+         */
+        private void replace() throws IOException {
+            if (null != temp) {
+                boolean replaced = false;
+                if (null != bodies) {
+                    bodies.beginReplace();
+                }
+                contents.release();
+                try {
+                    FileUtils.replace(temp, file);
+                    replaced = true;
+                    exercise = stagedExercise;
+                    revision = stagedRevision;
+                    maxCredits = stagedMaxCredits;
+                    latest = stagedLatest;
+                } finally {
+                    if (null != bodies) {
+                        bodies.endReplace(replaced);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Discards the rendered state.
+         *
+         * @since 2.2
+         */
+        private void unstage() {
+            if (null != temp) {
+                temp.delete();
+            }
+            rendered = null;
+            temp = null;
+            stagedExercise = null;
+        }
+
+    }
+
+}
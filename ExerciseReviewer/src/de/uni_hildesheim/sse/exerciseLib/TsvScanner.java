@@ -0,0 +1,580 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming scanner for tabulator-separated files. The scanner reads
+ * the input into a reusable character buffer and yields the boundaries
+ * of lines and fields without creating intermediate strings. Strings
+ * are only created for values which are explicitly requested, either
+ * as new strings ({@link #fieldToString()}) or as strings shared via
+ * a scanner-local pool ({@link #fieldToPooledString()}).<br/>
+ *
+ * In contrast to a {@link java.util.StringTokenizer}, empty fields are
+ * kept positionally, i.e. two subsequent separators denote an empty
+ * field. Only a separator at the end of a line does not introduce an
+ * additional (empty) field, as the files written by this library
+ * terminate each field by a separator.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class TsvScanner implements Closeable {
+
+    /**
+     * Defines the field separator character (tabulator).
+     *
+     * @since 2.2
+     */
+    public static final char SEPARATOR = '\t';
+
+    /**
+     * Defines the initial size of the character buffer.
+     *
+     * @since 2.2
+     */
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+
+    /**
+     * Defines the initial size of the string pool (power of 2).
+     *
+     * @since 2.2
+     */
+    private static final int INITIAL_POOL_SIZE = 256;
+
+    /**
+     * Stores the underlying reader.
+     *
+     * @since 2.2
+     */
+    private Reader in;
+
+    /**
+     * Stores the character buffer.
+     *
+     * @since 2.2
+     */
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+
+    /**
+     * Stores the number of valid characters in {@link #buffer}.
+     *
+     * @since 2.2
+     */
+    private int limit;
+
+    /**
+     * Stores the buffer position after the current line including its
+     * line terminator, i.e. where the next line starts.
+     *
+     * @since 2.2
+     */
+    private int nextLine;
+
+    /**
+     * Stores the buffer position where the current line starts.
+     *
+     * @since 2.2
+     */
+    private int lineBegin;
+
+    /**
+     * Stores the buffer position where the current line ends (exclusive,
+     * without line terminator).
+     *
+     * @since 2.2
+     */
+    private int lineEnd;
+
+    /**
+     * Stores the buffer position where the next field of the current line
+     * starts, greater than {@link #lineEnd} if there are no more fields.
+     *
+     * @since 2.2
+     */
+    private int nextField;
+
+    /**
+     * Stores the start position of the current field.
+     *
+     * @since 2.2
+     */
+    private int fieldStart;
+
+    /**
+     * Stores the end position (exclusive) of the current field.
+     *
+     * @since 2.2
+     */
+    private int fieldEnd;
+
+    /**
+     * Stores the number of the current line (1-based).
+     *
+     * @since 2.2
+     */
+    private int lineNumber;
+
+    /**
+     * Stores if the end of the input was reached.
+     *
+     * @since 2.2
+     */
+    private boolean eof;
+
+    /**
+     * Stores if the last line was terminated by a single carriage return
+     * so that a subsequent line feed must be ignored.
+     *
+     * @since 2.2
+     */
+    private boolean skipLineFeed;
+
+    /**
+     * Stores the string pool (open addressing).
+     *
+     * @since 2.2
+     */
+    private String[] pool = new String[INITIAL_POOL_SIZE];
+
+    /**
+     * Stores the number of strings in {@link #pool}.
+     *
+     * @since 2.2
+     */
+    private int poolSize;
+
+    /**
+     * Stores the reusable view on the current field.
+     *
+     * @since 2.2
+     */
+    private CharSequence field = new CharSequence() {
+
+        public int length() {
+            return fieldLength();
+        }
+
+        public char charAt(int index) {
+            return fieldCharAt(index);
+        }
+
+        public CharSequence subSequence(int start, int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return fieldToString();
+        }
+
+    };
+
+    /**
+     * Creates a new scanner.
+     *
+     * @param in the reader to scan
+     *
+     * @since 2.2
+     */
+    public TsvScanner(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return <code>true</code> if there is a next line, <code>false</code>
+     *         if the end of the input was reached
+     * @throws IOException if reading the input fails
+     *
+     * @since 2.2
+     */
+    public boolean nextLine() throws IOException {
+        int lineStart = nextLine;
+        if (skipLineFeed) {
+            if (lineStart >= limit) {
+                fill(lineStart);
+                lineStart = 0;
+            }
+            if (lineStart < limit && '\n' == buffer[lineStart]) {
+                lineStart++;
+            }
+            skipLineFeed = false;
+        }
+        int pos = lineStart;
+        int terminator = -1;
+        boolean searching = true;
+        while (searching) {
+            if (pos < limit) {
+                char c = buffer[pos];
+                if ('\n' == c || '\r' == c) {
+                    terminator = pos;
+                    searching = false;
+                } else {
+                    pos++;
+                }
+            } else {
+                searching = fill(lineStart);
+                pos -= lineStart;
+                lineStart = 0;
+            }
+        }
+        return startLine(lineStart, pos, terminator);
+    }
+
+    /**
+     * Initializes the state for a new line.
+     *
+     * @param lineStart the start position of the line
+     * @param pos the end position of the line (exclusive)
+     * @param terminator the position of the line terminator, negative
+     *        if the line is terminated by the end of the input
+     * @return <code>true</code> if there is a line, <code>false</code>
+     *         if the end of the input was reached
+     *
+     * @since 2.2
+     */
+    private boolean startLine(int lineStart, int pos, int terminator) {
+        boolean result;
+        if (terminator < 0) {
+            nextLine = limit;
+            result = pos > lineStart;
+        } else {
+            skipLineFeed = '\r' == buffer[terminator];
+            nextLine = terminator + 1;
+            result = true;
+        }
+        if (result) {
+            lineNumber++;
+            lineEnd = pos;
+            nextField = lineStart;
+            if (lineStart == lineEnd) {
+                // empty lines do not have fields
+                nextField = lineEnd + 1;
+            }
+        } else {
+            lineEnd = pos;
+            nextField = lineEnd + 1;
+        }
+        lineBegin = lineStart;
+        fieldStart = lineStart;
+        fieldEnd = lineStart;
+        return result;
+    }
+
+    /**
+     * Fills the buffer while keeping the characters starting at
+     * <code>keep</code>, i.e. moves them to the beginning of the buffer.
+     *
+     * @param keep the first buffer position to be kept
+     * @return <code>true</code> if characters were read, <code>false</code>
+     *         if the end of the input was reached
+     * @throws IOException if reading the input fails
+     *
+     * @since 2.2
+     */
+    private boolean fill(int keep) throws IOException {
+        int remaining = limit - keep;
+        if (keep > 0) {
+            System.arraycopy(buffer, keep, buffer, 0, remaining);
+        } else if (remaining == buffer.length) {
+            char[] tmp = new char[buffer.length * 2];
+            System.arraycopy(buffer, 0, tmp, 0, remaining);
+            buffer = tmp;
+        }
+        limit = remaining;
+        int read = -1;
+        if (!eof) {
+            read = in.read(buffer, limit, buffer.length - limit);
+            if (read < 0) {
+                eof = true;
+            } else {
+                limit += read;
+            }
+        }
+        return read >= 0;
+    }
+
+    /**
+     * Returns if the current line has more fields.
+     *
+     * @return <code>true</code> if there are more fields, <code>false</code>
+     *         else
+     *
+     * @since 2.2
+     */
+    public boolean hasMoreFields() {
+        return nextField <= lineEnd;
+    }
+
+    /**
+     * Advances to the next field of the current line.
+     *
+     * @return <code>true</code> if there is a next field, <code>false</code>
+     *         else
+     *
+     * @since 2.2
+     */
+    public boolean nextField() {
+        boolean result = hasMoreFields();
+        if (result) {
+            int pos = nextField;
+            while (pos < lineEnd && SEPARATOR != buffer[pos]) {
+                pos++;
+            }
+            fieldStart = nextField;
+            fieldEnd = pos;
+            nextField = pos + 1;
+            if (nextField == lineEnd) {
+                // trailing separator terminates the line
+                nextField = lineEnd + 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Skips the next field without delimiting it (see 
+     * {@link #skipFields(int)}). The current field is undefined 
+     * afterwards.
+     *
+     * @return <code>true</code> if there was a field to skip,
+     *         <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean skipField() {
+        return 1 == skipFields(1);
+    }
+
+    /**
+     * Skips the given number of fields without delimiting them, i.e. only
+     * the separators are searched for. The current field is undefined
+     * afterwards.
+     *
+     * @param count the number of fields to skip
+     * @return the number of fields skipped, less than <code>count</code>
+     *         if the line ended before
+     *
+     * @since 2.2
+     */
+    public int skipFields(int count) {
+        int skipped = 0;
+        int pos = nextField;
+        while (skipped < count && pos <= lineEnd) {
+            while (pos < lineEnd && SEPARATOR != buffer[pos]) {
+                pos++;
+            }
+            pos++;
+            if (pos == lineEnd) {
+                // trailing separator terminates the line
+                pos = lineEnd + 1;
+            }
+            skipped++;
+        }
+        nextField = pos;
+        return skipped;
+    }
+
+    /**
+     * Returns the number of the current line.
+     *
+     * @return the line number (1-based)
+     *
+     * @since 2.2
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns a 64 bit digest (FNV-1a) of the current line, i.e. of all 
+     * its characters without line terminator. The digest does not depend
+     * on the field the scanner is positioned at.
+     *
+     * @return the digest of the current line
+     *
+     * @since 2.2
+     */
+    public long lineDigest() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = lineBegin; i < lineEnd; i++) {
+            hash ^= buffer[i];
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the length of the current field.
+     *
+     * @return the length of the current field
+     *
+     * @since 2.2
+     */
+    public int fieldLength() {
+        return fieldEnd - fieldStart;
+    }
+
+    /**
+     * Returns a character of the current field.
+     *
+     * @param index the index of the character within the field
+     * @return the character
+     *
+     * @since 2.2
+     */
+    public char fieldCharAt(int index) {
+        return buffer[fieldStart + index];
+    }
+
+    /**
+     * Returns if the current field contains the given character.
+     *
+     * @param c the character to search for
+     * @return <code>true</code> if <code>c</code> is contained,
+     *         <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean fieldContains(char c) {
+        boolean found = false;
+        for (int i = fieldStart; !found && i < fieldEnd; i++) {
+            found = c == buffer[i];
+        }
+        return found;
+    }
+
+    /**
+     * Returns if the current field equals the given string.
+     *
+     * @param string the string to compare with
+     * @param ignoreCase if the case shall be ignored
+     * @return <code>true</code> if both are equal, <code>false</code> else
+     *
+     * @since 2.2
+     */
+    public boolean fieldEquals(String string, boolean ignoreCase) {
+        int length = fieldLength();
+        boolean result = string.length() == length;
+        for (int i = 0; result && i < length; i++) {
+            char c1 = buffer[fieldStart + i];
+            char c2 = string.charAt(i);
+            if (ignoreCase) {
+                c1 = Character.toLowerCase(c1);
+                c2 = Character.toLowerCase(c2);
+            }
+            result = c1 == c2;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a view on the current field. The view is reused and reflects
+     * the field the scanner is positioned at, i.e. it must not be stored.
+     *
+     * @return the current field
+     *
+     * @since 2.2
+     */
+    public CharSequence field() {
+        return field;
+    }
+
+    /**
+     * Returns the current field as fixed-point credits.
+     *
+     * @return the credits in tenths (see {@link Credits})
+     * @throws NumberFormatException if the field does not denote credits
+     *
+     * @since 2.2
+     */
+    public long fieldToCredits() {
+        return Credits.parse(field);
+    }
+
+    /**
+     * Returns the current field as a new string.
+     *
+     * @return the current field
+     *
+     * @since 2.2
+     */
+    public String fieldToString() {
+        return new String(buffer, fieldStart, fieldLength());
+    }
+
+    /**
+     * Returns the current field as a string from the pool of this scanner,
+     * i.e. equal field values read via this method are represented by the
+     * same string instance. A new string is only created if the value was
+     * not seen before. This is intended for frequently repeated values such
+     * as user or exercise names.
+     *
+     * @return the current field
+     *
+     * @since 2.2
+     */
+    public String fieldToPooledString() {
+        int hash = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int mask = pool.length - 1;
+        int index = (hash ^ (hash >>> 16)) & mask;
+        String result = null;
+        while (null == result && null != pool[index]) {
+            if (fieldEquals(pool[index], false)) {
+                result = pool[index];
+            } else {
+                index = (index + 1) & mask;
+            }
+        }
+        if (null == result) {
+            result = fieldToString();
+            pool[index] = result;
+            poolSize++;
+            if (2 * poolSize > pool.length) {
+                rehashPool();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Doubles the size of the string pool.
+     *
+     * @since 2.2
+     */
+    private void rehashPool() {
+        String[] old = pool;
+        pool = new String[old.length * 2];
+        int mask = pool.length - 1;
+        for (String string : old) {
+            if (null != string) {
+                int hash = string.hashCode();
+                int index = (hash ^ (hash >>> 16)) & mask;
+                while (null != pool[index]) {
+                    index = (index + 1) & mask;
+                }
+                pool[index] = string;
+            }
+        }
+    }
+
+    /**
+     * Closes this scanner and the underlying reader.
+     *
+     * @throws IOException if closing fails
+     *
+     * @since 2.2
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+}
@@ -56,17 +56,21 @@ public class User implements Comparable<User> {
      * 
      * @param user
      *            the real user to be added
+     * @return <code>true</code> if <code>user</code> was added, 
+     *         <code>false</code> if an equal real user is already 
+     *         assigned
      * 
      * @since 1.00
      */
-    public void addRealUser(RealUser user) {
+    public boolean addRealUser(RealUser user) {
         for (RealUser u : users) {
             if (u.getEmail().equals(user.getEmail())
                 && u.getName().equals(user.getName())) {
-                return;
+                return false;
             }
         }
         users.add(user);
+        return true;
     }
 
     /**
@@ -0,0 +1,163 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the (repository) users and the real users sorted by their names as
+ * well as the assignment of real users to users. The index is updated
+ * incrementally by the {@link UserProvider} whenever users are added, so
+ * that writing the users in order does neither require sorting nor
+ * building temporary maps.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class UserIndex {
+
+    /**
+     * Stores the users sorted by their names.
+     *
+     * @since 2.2
+     */
+    private List<User> users = new ArrayList<User>();
+
+    /**
+     * Stores the real users sorted by their names.
+     *
+     * @since 2.2
+     */
+    private List<RealUser> realUsers = new ArrayList<RealUser>();
+
+    /**
+     * Stores the users the real users are assigned to.
+     *
+     * @since 2.2
+     */
+    private Map<RealUser, User> groups = new IdentityHashMap<RealUser, User>();
+
+    /**
+     * Stores the users by their names.
+     *
+     * @since 2.2
+     */
+    private Map<String, User> names = new HashMap<String, User>();
+
+    /**
+     * Adds a user including its current real users.
+     *
+     * @param user the user to be added
+     *
+     * @since 2.2
+     */
+    public synchronized void addUser(User user) {
+        if (null == names.put(user.getUserName(), user)) {
+            insertSorted(users, user);
+        }
+        for (Iterator<RealUser> iter = user.getRealUsers(); iter.hasNext();) {
+            addRealUser(user, iter.next());
+        }
+    }
+
+    /**
+     * Adds a real user assigned to the given user.
+     *
+     * @param user the user (group) <code>realUser</code> is assigned to
+     * @param realUser the real user to be added
+     *
+     * @since 2.2
+     */
+    public synchronized void addRealUser(User user, RealUser realUser) {
+        if (null == groups.put(realUser, user)) {
+            insertSorted(realUsers, realUser);
+        }
+    }
+
+    /**
+     * Removes all users.
+     *
+     * @since 2.2
+     */
+    public synchronized void clear() {
+        users.clear();
+        realUsers.clear();
+        groups.clear();
+        names.clear();
+    }
+
+    /**
+     * Returns the users sorted by their names.
+     *
+     * @return the users (unmodifiable)
+     *
+     * @since 2.2
+     */
+    public synchronized List<User> users() {
+        return Collections.unmodifiableList(users);
+    }
+
+    /**
+     * Returns the real users sorted by their names.
+     *
+     * @return the real users (unmodifiable)
+     *
+     * @since 2.2
+     */
+    public synchronized List<RealUser> realUsers() {
+        return Collections.unmodifiableList(realUsers);
+    }
+
+    /**
+     * Returns the user a real user is assigned to.
+     *
+     * @param realUser the real user
+     * @return the user (group) or <b>null</b> if <code>realUser</code>
+     *         is not known
+     *
+     * @since 2.2
+     */
+    public synchronized User getUser(RealUser realUser) {
+        return groups.get(realUser);
+    }
+
+    /**
+     * Returns the user with the given name.
+     *
+     * @param userName the name of the user
+     * @return the user or <b>null</b> if not known
+     *
+     * @since 2.2
+     */
+    public synchronized User getUser(String userName) {
+        return names.get(userName);
+    }
+
+    /**
+     * Inserts an element into a sorted list behind all equal elements.
+     *
+     * @param <T> the element type
+     * @param list the sorted list
+     * @param element the element to be inserted
+     *
+     * @since 2.2
+     */
+    private static <T extends Comparable<? super T>> void insertSorted(
+        List<T> list, T element) {
+        int pos = Collections.binarySearch(list, element);
+        if (pos < 0) {
+            pos = -pos - 1;
+        } else {
+            while (pos < list.size() && 0 == list.get(pos).compareTo(element)) {
+                pos++;
+            }
+        }
+        list.add(pos, element);
+    }
+
+}
@@ -45,5 +45,15 @@ public interface UserProvider {
      * @since 1.10
      */
     public Iterable<User> submissionUsers();
+
+    /**
+     * Returns the index of all (repository) users and their real users
+     * sorted by name. The index must reflect {@link #submissionUsers()}.
+     * 
+     * @return the user index
+     * 
+     * @since 2.2
+     */
+    public UserIndex getUserIndex();
     
 }
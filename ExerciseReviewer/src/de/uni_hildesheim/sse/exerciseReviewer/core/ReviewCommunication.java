@@ -1,7 +1,10 @@
 package de.uni_hildesheim.sse.exerciseReviewer.core;
 
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import de.uni_hildesheim.sse.exerciseLib.MergePolicy;
+import de.uni_hildesheim.sse.exerciseLib.MergeReport;
 import de.uni_hildesheim.sse.exerciseLib.RealUser;
 import de.uni_hildesheim.sse.exerciseLib.Review;
 import de.uni_hildesheim.sse.exerciseLib.ReviewException;
@@ -43,6 +46,14 @@ public abstract class ReviewCommunication {
      */
     private String password;
 
+    /**
+     * Stores the data listeners.
+     * 
+     * @since 2.2
+     */
+    private List<ReviewDataListener> listeners = 
+        new CopyOnWriteArrayList<ReviewDataListener>();
+
     /**
      * Creates a new review communication instance. To be called by an
      * appropriate {@link ReviewPlugin} instance.
@@ -87,6 +98,27 @@ public abstract class ReviewCommunication {
      */
     public abstract void submitReview(Assignment task, Review review) throws CommunicationException;
 
+    /**
+     * Marks a review as submitted to the server, e.g. after the reviewed
+     * project was uploaded. In contrast to 
+     * {@link #submitReview(Assignment, Review)}, the review is not sent
+     * to the server again. The default implementation just changes the
+     * state of <code>review</code>. Backends which store the submission
+     * state shall override this method.
+     * 
+     * @param task
+     *            the task identifier describing the reviewed task/exercise
+     * @param review the review which was submitted
+     * @throws CommunicationException
+     *             if storing the state fails
+     * 
+     * @since 2.2
+     */
+    public void markSubmitted(Assignment task, Review review) 
+        throws CommunicationException {
+        review.setSubmittedToServer();
+    }
+
     /**
      * Returns the specified review for the given task.
      * 
@@ -177,6 +209,7 @@ public abstract class ReviewCommunication {
             } else {
                 listener.doStep("Validating user data for review", step++);
                 if (!comm.authenticateUser()) {
+                    comm.dispose();
                     throw new ReviewException(CommunicationException.SubmissionPublicMessage.
                         AUTHENTICATION_ERROR, new Throwable());
                 }
@@ -192,6 +225,27 @@ public abstract class ReviewCommunication {
         return reviewInstance;
     }
 
+    /**
+     * Releases the review communication instance created by 
+     * {@link #getInstance(String, String, CommunicationInstanceListener)},
+     * e.g. when the workbench shuts down. Pending changes are written by
+     * {@link #flush()} before the instance is disposed. If writing fails,
+     * the instance is kept, so that writing can be retried.
+     * 
+     * @throws CommunicationException if writing the pending changes failed
+     * 
+     * @since 2.2
+     */
+    public static final synchronized void disposeInstance() 
+        throws CommunicationException {
+        ReviewCommunication comm = reviewInstance;
+        if (null != comm) {
+            comm.flush();
+            reviewInstance = null;
+            comm.dispose();
+        }
+    }
+
     /**
      * Returns the password required for the communication with the review
      * collection mechanism.
@@ -280,6 +334,64 @@ public abstract class ReviewCommunication {
      */
     public abstract String getReviewInstanceInformation();
 
+    /**
+     * Adds a listener on data changes.
+     * 
+     * @param listener the listener to be added
+     * 
+     * @since 2.2
+     */
+    public void addDataListener(ReviewDataListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener on data changes.
+     * 
+     * @param listener the listener to be removed
+     * 
+     * @since 2.2
+     */
+    public void removeDataListener(ReviewDataListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Notifies the data listeners that the users changed.
+     * 
+     * @since 2.2
+     */
+    protected void fireUsersChanged() {
+        for (ReviewDataListener listener : listeners) {
+            listener.usersChanged();
+        }
+    }
+
+    /**
+     * Notifies the data listeners that the reviews changed.
+     * 
+     * @since 2.2
+     */
+    protected void fireReviewsChanged() {
+        for (ReviewDataListener listener : listeners) {
+            listener.reviewsChanged();
+        }
+    }
+
+    /**
+     * Notifies the data listeners that writing changes in the background 
+     * failed.
+     * 
+     * @param exception the failure
+     * 
+     * @since 2.2
+     */
+    protected void fireWriteFailed(CommunicationException exception) {
+        for (ReviewDataListener listener : listeners) {
+            listener.writeFailed(exception);
+        }
+    }
+
     /**
      * Reloads the user data.
      * 
@@ -298,6 +410,27 @@ public abstract class ReviewCommunication {
      */
     public abstract void reloadReviews() throws CommunicationException;
 
+    /**
+     * Writes pending changes, e.g. before shutdown (see 
+     * {@link #disposeInstance()}), if this instance writes changes in the
+     * background. The default implementation does nothing.
+     * 
+     * @throws CommunicationException if writing failed
+     * 
+     * @since 2.2
+     */
+    public void flush() throws CommunicationException {
+    }
+
+    /**
+     * Releases the resources of an instance which is not used anymore, 
+     * e.g. background threads. The default implementation does nothing.
+     * 
+     * @since 2.2
+     */
+    protected void dispose() {
+    }
+
     /**
      * Returns the assigned default directory.
      * 
@@ -445,10 +578,26 @@ public abstract class ReviewCommunication {
      * {@link #acceptsTaskMerge()} returns <code>true</code>.
      * 
      * @param file the file to be merged
+     * @return the merge report
      * @throws CommunicationException if any error occurs
      * 
      * @since 1.08
      */
-    public abstract void mergeTasks(String file) throws CommunicationException;
+    public abstract MergeReport mergeTasks(String file) throws CommunicationException;
+
+    /**
+     * Merges the tasks with multiple files and stores the result once. 
+     * This method should be called only if {@link #acceptsTaskMerge()} 
+     * returns <code>true</code>.
+     * 
+     * @param files the files to be merged (in order)
+     * @param policy the policy for resolving conflicting reviews
+     * @return the merge report
+     * @throws CommunicationException if any error occurs
+     * 
+     * @since 2.2
+     */
+    public abstract MergeReport mergeTasks(List<String> files, MergePolicy policy) 
+        throws CommunicationException;
 
 }
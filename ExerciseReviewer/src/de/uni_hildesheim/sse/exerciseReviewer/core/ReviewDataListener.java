@@ -0,0 +1,43 @@
+package de.uni_hildesheim.sse.exerciseReviewer.core;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Defines a listener on changes of the data provided by a 
+ * {@link ReviewCommunication} instance which were not caused by the 
+ * listener itself, e.g. files changed by other programs, as well as on
+ * failures of writes executed in the background. Listeners may be 
+ * notified on any thread.
+ * 
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public interface ReviewDataListener {
+
+    /**
+     * Is called when the users changed.
+     * 
+     * @since 2.2
+     */
+    public void usersChanged();
+
+    /**
+     * Is called when the reviews changed.
+     * 
+     * @since 2.2
+     */
+    public void reviewsChanged();
+
+    /**
+     * Is called when changes could not be written in the background, i.e.
+     * after the modifying call returned. The changes are kept in memory.
+     * 
+     * @param exception the failure
+     * 
+     * @since 2.2
+     */
+    public void writeFailed(CommunicationException exception);
+
+}
@@ -1,25 +1,45 @@
 package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import de.uni_hildesheim.sse.exerciseLib.CachedFile;
+import de.uni_hildesheim.sse.exerciseLib.Credits;
 import de.uni_hildesheim.sse.exerciseLib.Exercise;
 import de.uni_hildesheim.sse.exerciseLib.ExerciseData;
+import de.uni_hildesheim.sse.exerciseLib.MergePolicy;
+import de.uni_hildesheim.sse.exerciseLib.MergeReport;
 import de.uni_hildesheim.sse.exerciseLib.RealUser;
 import de.uni_hildesheim.sse.exerciseLib.Review;
+import de.uni_hildesheim.sse.exerciseLib.ReviewClock;
 import de.uni_hildesheim.sse.exerciseLib.ReviewException;
+import de.uni_hildesheim.sse.exerciseLib.ReviewFileMerger;
+import de.uni_hildesheim.sse.exerciseLib.ReviewIndex;
+import de.uni_hildesheim.sse.exerciseLib.ReviewJournal;
+import de.uni_hildesheim.sse.exerciseLib.RowDigests;
+import de.uni_hildesheim.sse.exerciseLib.SnapshotPartitions;
+import de.uni_hildesheim.sse.exerciseLib.TsvScanner;
 import de.uni_hildesheim.sse.exerciseLib.User;
+import de.uni_hildesheim.sse.exerciseLib.UserIndex;
 import de.uni_hildesheim.sse.exerciseLib.UserProvider;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewPlugin;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewPublicMessage;
+import de.uni_hildesheim.sse.exerciseSubmitter.configuration.IConfiguration;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.CommonStuff;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.
     CommunicationException;
@@ -33,6 +53,61 @@ import net.ssehub.exercisesubmitter.protocol.frontend.Assignment;
  * is expected (see {@link #FileReviewCommunication(String, String)}. The file
  * <code>submissionReviews.tsv</code> will be generated/written.
  * 
+ * <p>Individual review changes are appended to 
+ * <code>submissionReviews.journal</code> and compacted from time to time
+ * into a binary snapshot partitioned by exercise in the directory 
+ * <code>submissionReviews.parts</code> (see {@link SnapshotPartitions}),
+ * i.e. only the partitions of the modified exercises are rewritten. 
+ * Compactions are optionally coalesced within the time window (in 
+ * milliseconds) given by the configuration property 
+ * <code>review.groupCommitWindow</code>, while changes of the exercises,
+ * which are not recorded by the journal, are committed immediately.</p>
+ * 
+ * <p>The snapshot is loaded by preference unless the <code>.tsv</code> 
+ * file is more recent. The reviews of an exercise are loaded when the 
+ * exercise is accessed first. Their texts are read on demand and kept in
+ * a cache (per exercise) of the size given by the configuration property
+ * <code>review.textCacheSize</code> (<code>0</code> loads the reviews 
+ * completely).</p>
+ * 
+ * <p>The <code>.tsv</code> files are kept as human-readable export. In 
+ * contrast to previous versions, they are not rewritten on each submitted
+ * review. If a group commit window is configured, the export is written
+ * by the group commit of the window, i.e. at most once per window. 
+ * Without window, submitted reviews are recorded by the journal and the
+ * binary snapshot only, and the export is written when the exercises 
+ * change and on {@link #flush()}, e.g. when the instance is disposed. 
+ * Thus, other programs reading the <code>.tsv</code> files see reviews 
+ * submitted since then only after the next export. All files are 
+ * replaced atomically. The <code>.tsv</code> files are read into 
+ * buffers, which are reused while the files do not change.</p>
+ * 
+ * <p>Unless the configuration property <code>review.offsetIndex</code> is
+ * <code>false</code>, the index <code>submissionReviews.idx</code> of the
+ * reviews file is written along with the export. It allows tools to read
+ * individual reviews without loading all reviews (see 
+ * {@link #openReviewIndex()}) and records checksums, which are verified 
+ * before the reviews file is loaded. An outdated index, e.g. after the 
+ * reviews file was changed by another program, is rebuilt when loading 
+ * the reviews file.</p>
+ * 
+ * <p>The users file and the reviews file are watched for changes by other
+ * programs. Changes are read incrementally, i.e. only changed rows are 
+ * parsed and applied, and reported to the 
+ * {@link de.uni_hildesheim.sse.exerciseReviewer.core.ReviewDataListener 
+ * data listeners}.</p>
+ * 
+ * <p>Reviews of different users (groups) may be submitted concurrently, 
+ * e.g. by background jobs, as submissions lock only their user (group),
+ * while reloading the data and modifying the tasks is exclusive. The 
+ * reviews files are written by a background thread, i.e. modifications 
+ * return without waiting for the disk. Pending writes are coalesced and 
+ * executed on {@link #flush()}, failures are reported to the data 
+ * listeners. Instances shall be released by 
+ * {@link ReviewCommunication#disposeInstance()}, which flushes the 
+ * pending writes and stops the background threads. Modifications of the
+ * users are written immediately and rolled back if writing fails.</p>
+ * 
  * @author Holger Eichelberger
  * @since 1.00
  * @version 1.11
@@ -85,18 +160,104 @@ public class FileReviewCommunication
     };
 
     /**
-     * Stores the users according to their name.
+     * Defines the number of journal records after which the journal is
+     * compacted into the reviews files.
+     * 
+     * @since 2.2
+     */
+    private static final int JOURNAL_COMPACTION_THRESHOLD = 100;
+
+    /**
+     * Defines the time in milliseconds the watched files must not change
+     * before changes are read.
+     * 
+     * @since 2.2
+     */
+    private static final long WATCH_SETTLE_TIME = 200;
+
+    /**
+     * Defines the default number of review texts kept in memory.
+     * 
+     * @since 2.2
+     */
+    private static final int DEFAULT_REVIEW_CACHE_SIZE = 256;
+
+    /**
+     * Defines the number of locks shared by the users (groups) while
+     * submitting reviews.
+     * 
+     * @since 2.2
+     */
+    private static final int GROUP_LOCK_STRIPES = 32;
+
+    /**
+     * Defines the maximum number of pending writes of {@link #writes}.
+     * 
+     * @since 2.2
+     */
+    private static final int WRITE_QUEUE_CAPACITY = 256;
+
+    /**
+     * Stores the users according to their name. The map is not modified
+     * but replaced as a whole while holding the write lock of 
+     * {@link #dataLock}, so that users can be looked up without locking,
+     * e.g. while parsing reviews in parallel.
      * 
      * @since 1.00
      */
-    private Map<String, User> users = new HashMap<String, User>();
+    private volatile Map<String, User> users = Collections.emptyMap();
+
+    /**
+     * Stores the index of {@link #users}.
+     * 
+     * @since 2.2
+     */
+    private UserIndex userIndex = new UserIndex();
 
     /**
      * Stores the exercise data structure.
      * 
      * @since 1.00
      */
-    private ExerciseData exerciseData;
+    private volatile ExerciseData exerciseData;
+
+    /**
+     * Guards the users and the exercise data. Submitting a review requires
+     * the read lock and the lock of the user (group) in 
+     * {@link #groupLocks}, reloading the data, modifying the tasks and 
+     * rendering snapshots require the write lock. Shall be acquired after
+     * the commit lock of {@link #snapshots}.
+     * 
+     * @since 2.2
+     */
+    private final ReentrantReadWriteLock dataLock = 
+        new ReentrantReadWriteLock();
+
+    /**
+     * Serializes the modifications of the users file, i.e. modifying 
+     * {@link #userList}, writing the file and rolling back on failure.
+     * Shall be acquired before the commit lock of {@link #snapshots}.
+     * 
+     * @since 2.2
+     */
+    private final Object usersWriteLock = new Object();
+
+    /**
+     * Serializes the submissions for the same user (group).
+     * 
+     * @since 2.2
+     */
+    private final StripedLocks groupLocks = 
+        new StripedLocks(GROUP_LOCK_STRIPES);
+
+    /**
+     * Executes the writes of the journal and the reviews files in the
+     * background.
+     * 
+     * @since 2.2
+     */
+    private final WriteBehindQueue writes = new WriteBehindQueue(
+        "Review persistence writer", WRITE_QUEUE_CAPACITY);
 
     /**
      * The list of the real (known and assigned) users.
@@ -104,6 +265,158 @@ public class FileReviewCommunication
      * @since 1.00
      */
     private List<RealUser> userList;
+
+    /**
+     * Stores the real users per line of the users file.
+     * 
+     * @since 2.2
+     */
+    private Map<String, List<RealUser>> userRows = 
+        new LinkedHashMap<String, List<RealUser>>();
+
+    /**
+     * Stores the digests of the lines of the users file as read last.
+     * 
+     * @since 2.2
+     */
+    private RowDigests userDigests = new RowDigests(0);
+
+    /**
+     * Stores the digests of the rows of the reviews file as read or 
+     * written last. Guarded by the commit lock of {@link #snapshots}.
+     * 
+     * @since 2.2
+     */
+    private RowDigests reviewDigests = 
+        new RowDigests(ExerciseData.HEADER_LINES);
+
+    /**
+     * Stores the latest timestamp of the reviews rendered by the last 
+     * commit.
+     * 
+     * @since 2.2
+     */
+    private long renderedTimestamp;
+
+    /**
+     * Stores the journal of review changes since the last snapshot.
+     * 
+     * @since 2.2
+     */
+    private ReviewJournal journal = new ReviewJournal(
+        new File(getJournalFileName()));
+
+    /**
+     * Stores the cached contents of the reviews file.
+     * 
+     * @since 2.2
+     */
+    private CachedFile reviewsCache = new CachedFile(
+        new File(getReviewsFileName()));
+
+    /**
+     * Stores the binary snapshot partitioned by exercise.
+     * 
+     * @since 2.2
+     */
+    private SnapshotPartitions partitions = new SnapshotPartitions(
+        new File(getPartitionsDirectoryName()), getReviewCacheSize());
+
+    /**
+     * Stores the writer for the snapshots of the reviews files. Renders
+     * while holding the write lock of {@link #dataLock}.
+     * 
+     * @since 2.2
+     */
+    private SnapshotWriter snapshots = new SnapshotWriter(
+        new File(getReviewsFileName()), 
+        new File(getReviewsRealUsersFileName()), isOffsetIndexEnabled() 
+        ? new File(getReviewIndexFileName()) : null, journal, 
+        dataLock.writeLock(), getGroupCommitWindow()) {
+
+        @Override
+        protected void render(Writer out, boolean realUsers) 
+            throws IOException {
+            if (!realUsers) {
+                renderedTimestamp = exerciseData.getLatestTimestamp();
+            }
+            exerciseData.store(out, realUsers, true);
+        }
+
+        @Override
+        protected void renderSnapshot(boolean export) throws IOException {
+            exerciseData.storeSnapshot(partitions, export 
+                ? renderedTimestamp : partitions.getExportedTimestamp());
+        }
+
+        @Override
+        protected void writeSnapshot() throws IOException {
+            partitions.commit();
+        }
+
+        @Override
+        protected void releaseFiles() {
+            reviewsCache.release();
+        }
+
+        @Override
+        protected void failed(IOException exception) {
+            fireWriteFailed(new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, exception));
+        }
+
+        @Override
+        protected void committed(byte[] reviews) {
+            recordOwnWrite(new File(getReviewsFileName()));
+            try {
+                reviewDigests = RowDigests.index(new InputStreamReader(
+                    new ByteArrayInputStream(reviews)), 
+                    ExerciseData.HEADER_LINES, renderedTimestamp);
+            } catch (IOException ioe) {
+                // read completely on next refresh
+                reviewDigests = new RowDigests(ExerciseData.HEADER_LINES);
+            }
+        }
+    };
+
+    /**
+     * Stores the watcher of the users file and the reviews file.
+     * 
+     * @since 2.2
+     */
+    private FileWatcher watcher = new FileWatcher(WATCH_SETTLE_TIME, 
+        new File(getUsersFileName()), new File(getReviewsFileName())) {
+
+        @Override
+        protected void changed(Set<String> changed) {
+            ignoreOwnWrites(changed, new File(getUsersFileName()));
+            ignoreOwnWrites(changed, new File(getReviewsFileName()));
+            try {
+                boolean users = changed.contains(
+                    new File(getUsersFileName()).getName()) && refreshUsers();
+                boolean reviews = users || changed.contains(
+                    new File(getReviewsFileName()).getName());
+                if (users) {
+                    fireUsersChanged();
+                }
+                if (reviews && refreshReviews()) {
+                    fireReviewsChanged();
+                }
+            } catch (CommunicationException e) {
+                // e.g. file written partially, read again on next change
+            }
+        }
+    };
+
+    /**
+     * Stores the stamps (size and modification time) of the watched files
+     * as written by this instance last, by file name. Changes of the 
+     * watched files causing these stamps are not reported by 
+     * {@link #watcher}. Guarded by the commit lock of {@link #snapshots}.
+     * 
+     * @since 2.2
+     */
+    private Map<String, String> ownWrites = new HashMap<String, String>();
     
     /**
      * Creates a new review communication instance. To be called by the
@@ -125,53 +438,380 @@ public class FileReviewCommunication
         throws CommunicationException {
         super(username, password);
         reloadUsers(); // and therefore the exercises
+        try {
+            watcher.start();
+        } catch (IOException ioe) {
+            // no automatic updates, refresh explicitly
+        }
+    }
+
+    /**
+     * Stops watching the files and the background threads writing the 
+     * files as this instance is not used anymore. Pending writes shall be
+     * executed by {@link #flush()} before.
+     * 
+     * @since 2.2
+     */
+    @Override
+    protected void dispose() {
+        watcher.stop();
+        writes.close();
+        snapshots.close();
+    }
+
+    /**
+     * Returns the stamp of a file, i.e. its size and modification time.
+     * 
+     * @param file the file
+     * @return the stamp
+     * 
+     * @since 2.2
+     */
+    private static String stampOf(File file) {
+        return file.length() + "@" + file.lastModified();
+    }
+
+    /**
+     * Records that this instance wrote a watched file, so that 
+     * {@link #watcher} does not report the change.
+     * 
+     * @param file the written file
+     * 
+     * @since 2.2
+     */
+    private void recordOwnWrite(File file) {
+        synchronized (snapshots.getCommitLock()) {
+            ownWrites.put(file.getName(), stampOf(file));
+        }
+    }
+
+    /**
+     * Removes a file from the changed files if the change was caused by
+     * this instance (see {@link #recordOwnWrite(File)}). Waits for a 
+     * running commit, which records the reviews file after replacing it.
+     * 
+     * @param changed the names of the changed files, modified as a side
+     *     effect
+     * @param file the file to check
+     * 
+     * @since 2.2
+     */
+    private void ignoreOwnWrites(Set<String> changed, File file) {
+        synchronized (snapshots.getCommitLock()) {
+            if (changed.contains(file.getName()) 
+                && stampOf(file).equals(ownWrites.get(file.getName()))) {
+                changed.remove(file.getName());
+            }
+        }
     }
     
     /**
-     * Reloads the user data.
+     * Reloads the user data. Only the changed lines of the users file are
+     * read, followed by the changed rows of the reviews file.
      * 
      * @throws CommunicationException if any error occurred
      * 
      * @since 1.08
      */
     public void reloadUsers() throws CommunicationException {
+        if (refreshUsers()) {
+            fireUsersChanged();
+        }
+        reloadReviews();
+    }
+
+    /**
+     * Reads the changed lines of the users file and adds new users.
+     * 
+     * @return <code>true</code> if the users changed, <code>false</code>
+     *         else
+     * @throws CommunicationException if any error occurred
+     * 
+     * @since 2.2
+     */
+    private boolean refreshUsers() throws CommunicationException {
+        dataLock.writeLock().lock();
         try {
-            userList = RealUser.readRealUserList(
-                new File(getUsersFileName()));
+            return refreshUserRows();
+        } finally {
+            dataLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Implements {@link #refreshUsers()}. Shall be called while holding 
+     * the write lock of {@link #dataLock}.
+     * 
+     * @return <code>true</code> if the users changed, <code>false</code>
+     *         else
+     * @throws CommunicationException if any error occurred
+     * 
+     * @since 2.2
+     */
+    private boolean refreshUserRows() throws CommunicationException {
+        boolean changed;
+        try {
+            changed = RealUser.readRealUserList(
+                new FileReader(getUsersFileName()), userDigests, userRows) > 0
+                || null == userList;
+        } catch (IOException ioe) {
+            throw new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+        }
+        if (changed) {
+            userList = new ArrayList<RealUser>();
+            for (List<RealUser> row : userRows.values()) {
+                userList.addAll(row);
+            }
+            Map<String, User> next = new HashMap<String, User>(users);
             for (RealUser realUser : userList) {
                 if (null != realUser.getGroup()) {
-                    User user = users.get(realUser.getGroup());
+                    User user = next.get(realUser.getGroup());
                     if (null == user) {
                         user = new User(realUser.getGroup());
-                        users.put(user.getUserName(), user);
+                        next.put(user.getUserName(), user);
+                        userIndex.addUser(user);
+                    }
+                    if (user.addRealUser(realUser)) {
+                        userIndex.addRealUser(user, realUser);
                     }
-                    user.addRealUser(realUser);
                 }
             }
-        } catch (IOException ioe) {
-            throw new ReviewException(
-                SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+            users = Collections.unmodifiableMap(next);
         }
-        reloadReviews();
+        return changed;
     }
 
     /**
-     * Reloads the reviews.
+     * Reloads the reviews. Only the changed rows of the reviews file are
+     * read unless the exercises changed.
      * 
      * @throws CommunicationException if any error occurred
      * 
      * @since 1.08
      */
     public void reloadReviews() throws CommunicationException {
-        exerciseData = new ExerciseData(this);
+        if (refreshReviews()) {
+            fireReviewsChanged();
+        }
+    }
+
+    /**
+     * Reads the changed rows of the reviews file and applies them to the
+     * exercise data (see {@link ExerciseData#loadChanges(java.io.Reader, 
+     * RowDigests, boolean)}). Loads the reviews completely if they were 
+     * not read before or if the exercises changed.
+     * 
+     * @return <code>true</code> if the reviews changed, <code>false</code>
+     *         else
+     * @throws CommunicationException if any error occurred
+     * 
+     * @since 2.2
+     */
+    private boolean refreshReviews() throws CommunicationException {
+        flushJournal();
+        int changed = -1;
+        synchronized (snapshots.getCommitLock()) {
+            dataLock.writeLock().lock();
+            try {
+                if (reviewDigests.isIndexed()) {
+                    try {
+                        changed = exerciseData.loadChanges(
+                            reviewsCache.openReader(), reviewDigests, false);
+                        if (changed > 0) {
+                            indexReviews();
+                        }
+                    } catch (FileNotFoundException ioe) {
+                        // removed, keep the reviews
+                        changed = 0;
+                    } catch (IOException ioe) {
+                        throw new ReviewException(
+                            SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+                    }
+                }
+                if (changed < 0) {
+                    loadReviews();
+                }
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+        }
+        exerciseData.fetchAssessments(); // not while holding the locks
+        return 0 != changed;
+    }
+
+    /**
+     * Loads the reviews completely, i.e. from the binary snapshot or the 
+     * reviews file, and replays the journal as well as the reviews which
+     * are not yet written to the journal. Shall be called while holding
+     * the commit lock and the write lock of {@link #dataLock}.
+     * 
+     * @throws CommunicationException if any error occurred
+     * 
+     * @since 2.2
+     */
+    private void loadReviews() throws CommunicationException {
+        reviewDigests = new RowDigests(ExerciseData.HEADER_LINES);
+        boolean loaded = loadSnapshot();
         try {
-            exerciseData.load(new FileReader(getReviewsFileName()));
+            if (loaded) {
+                reviewDigests = RowDigests.index(reviewsCache.openReader(), 
+                    ExerciseData.HEADER_LINES, 0);
+            } else {
+                boolean verified = verifyReviews();
+                exerciseData = new ExerciseData(this);
+                exerciseData.loadChanges(reviewsCache.openReader(), 
+                    reviewDigests, true);
+                if (!verified) {
+                    indexReviews();
+                }
+            }
         } catch (FileNotFoundException ioe) {
             // thats ok
         } catch (IOException ioe) {
             throw new ReviewException(
                 SubmissionPublicMessage.FILE_IO_ERROR, ioe);
-        }        
+        }
+        if (loaded) {
+            reviewDigests.setBaseline(partitions.getExportedTimestamp());
+        } else {
+            reviewDigests.setBaseline(exerciseData.getLatestTimestamp());
+            recoverSnapshot();
+            File reviews = new File(getReviewsFileName());
+            if (reviews.exists() && new File(getReviewsRealUsersFileName())
+                .lastModified() < reviews.lastModified()) {
+                // interrupted commit or external change
+                snapshots.setExportPending();
+            }
+        }
+        if (partitions.isExportOutdated()) {
+            snapshots.setExportPending();
+        }
+        try {
+            journal.replay(exerciseData);
+        } catch (IOException ioe) {
+            throw new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+        }
+        // reviews not yet in the journal
+        for (WriteBehindQueue.Write write : writes.getPending()) {
+            if (write instanceof JournalWrite) {
+                ((JournalWrite) write).reapply(exerciseData);
+            }
+        }
+    }
+
+    /**
+     * Loads the exercise data from the partitioned binary snapshot if it
+     * exists and is not older than the reviews file. A snapshot which 
+     * cannot be read is ignored, i.e. the caller shall fall back to the 
+     * reviews file.
+     * 
+     * @return <code>true</code> if the snapshot was loaded, 
+     *         <code>false</code> else
+     * 
+     * @since 2.2
+     */
+    private boolean loadSnapshot() {
+        File reviews = new File(getReviewsFileName());
+        boolean loaded = false;
+        if (partitions.exists() 
+            && partitions.lastModified() >= reviews.lastModified()) {
+            exerciseData = new ExerciseData(this);
+            try {
+                exerciseData.loadSnapshot(partitions);
+                loaded = true;
+            } catch (IOException ioe) {
+                // outdated format or corrupted, use the reviews file
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Verifies the reviews file against the checksums recorded by its
+     * index (see {@link ReviewIndex#verify()}) before the reviews file is
+     * parsed, so that a corrupted reviews file is detected before any 
+     * review is read. Nothing is verified if there is no current index, 
+     * e.g. as the reviews file was changed by another program. In this
+     * case, the index shall be rebuilt by {@link #indexReviews()} after 
+     * parsing the reviews file.
+     * 
+     * @return <code>true</code> if the reviews file was verified,
+     *         <code>false</code> if there is no current index
+     * @throws CommunicationException if the reviews file is corrupted
+     * 
+     * @since 2.2
+     */
+    private static boolean verifyReviews() throws CommunicationException {
+        ReviewIndex index = null;
+        if (isOffsetIndexEnabled()) {
+            try {
+                index = ReviewIndex.open(new File(getReviewsFileName()), 
+                    new File(getReviewIndexFileName()));
+            } catch (IOException ioe) {
+                // corrupted index, cannot verify
+            }
+        }
+        if (null != index) {
+            try {
+                index.verify();
+            } catch (IOException ioe) {
+                throw new ReviewException(
+                    ReviewPublicMessage.INVALID_SYNTAX, ioe);
+            }
+        }
+        return null != index;
+    }
+
+    /**
+     * Rebuilds the index of the reviews file if it is missing or outdated,
+     * e.g. after the reviews file was changed by another program and 
+     * parsed successfully. Thus, the changed reviews file is verified on
+     * subsequent loads rather than only after the next export. Shall be 
+     * called while holding the commit lock, so that the reviews file is 
+     * not replaced meanwhile. The index is not rebuilt if the reviews 
+     * file changes while being read.
+     * 
+     * @since 2.2
+     */
+    private void indexReviews() {
+        if (isOffsetIndexEnabled()) {
+            File reviewsFile = reviewsCache.getFile();
+            File indexFile = new File(getReviewIndexFileName());
+            try {
+                if (null == ReviewIndex.open(reviewsFile, indexFile)) {
+                    long time = reviewsFile.lastModified();
+                    ByteBuffer buffer = reviewsCache.getContents();
+                    if (time == reviewsFile.lastModified() 
+                        && buffer.remaining() == reviewsFile.length()) {
+                        byte[] reviews = new byte[buffer.remaining()];
+                        buffer.get(reviews);
+                        ReviewIndex.write(reviews, reviewsFile, indexFile);
+                    }
+                }
+            } catch (IOException ioe) {
+                // no index, rebuilt by the next export
+            }
+        }
+    }
+
+    /**
+     * Takes over the reviews from the partitioned binary snapshot which 
+     * were stored after the reviews file was written last, e.g. if the
+     * reviews file was changed by another program meanwhile. Shall be 
+     * called after loading the reviews file.
+     * 
+     * @since 2.2
+     */
+    private void recoverSnapshot() {
+        if (partitions.exists()) {
+            try {
+                exerciseData.loadSnapshotChanges(partitions);
+            } catch (IOException ioe) {
+                // outdated format or corrupted, nothing to recover
+            }
+        }
     }
 
     /**
@@ -191,13 +831,25 @@ public class FileReviewCommunication
         User user = users.get(userName);
         List<String> result = null;
         if (null != user) {
-            result = user.getRealUserNames();
+            dataLock.readLock().lock(); // real users are added on refresh
+            try {
+                result = user.getRealUserNames();
+            } finally {
+                dataLock.readLock().unlock();
+            }
         }
         return result;
     }
 
     /**
-     * Submits a review.
+     * Submits a review. The review is stamped with a new timestamp (see
+     * {@link ReviewClock}) denoting its version for merging. Reviews of
+     * different users (groups) may be submitted concurrently, while the
+     * submissions for the same user (group) are serialized, so that the
+     * journal records them in the order of their timestamps. A review 
+     * which does not change the stored review (see 
+     * {@link Review#isUnchanged(Review)}) is not stored. The journal 
+     * record is written in the background.
      * 
      * @param task
      *            the task identifier describing the reviewed task/exercise
@@ -213,21 +865,79 @@ public class FileReviewCommunication
         if (review.getCredits() < 0 || (maxCredits > 0 && review.getCredits() > maxCredits)) {
             throw new ReviewException(SubmissionPublicMessage.INVALID_REVIEW_CREDITS,  new Throwable());
         }
-        if (null == users.get(review.getUserName())) {
-            throw new ReviewException(ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE_NO_USER, new Throwable());
-        }
+        storeReview(task, review);
+    }
 
-        Exercise exercise = exerciseData.getExercise(task.getName());
-        if (null == exercise) {
-            throw new ReviewException(ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE_NO_EXERCISE, new Throwable());
-        } else {
-            exercise.addReview(review);
-            storeExercises();
+    /**
+     * Marks a review as submitted to the server and stores the submission
+     * state like {@link #submitReview(Assignment, Review)}, i.e. via the 
+     * journal, so that submitting all projects skips the reviewed project
+     * afterwards.
+     * 
+     * @param task
+     *            the task identifier describing the reviewed task/exercise
+     * @param review the review which was submitted
+     * @throws CommunicationException
+     *             if the user or the exercise is not known
+     * 
+     * @since 2.2
+     */
+    @Override
+    public void markSubmitted(Assignment task, Review review) 
+        throws CommunicationException {
+        review.setSubmittedToServer();
+        storeReview(task, review);
+    }
+
+    /**
+     * Stores a review unless it does not change the stored review (see 
+     * {@link Review#isUnchanged(Review)}). The review is stamped with a 
+     * new timestamp and the journal record is written in the background.
+     * 
+     * @param task
+     *            the task identifier describing the reviewed task/exercise
+     * @param review the review to be stored
+     * @throws CommunicationException
+     *             if the user or the exercise is not known
+     * 
+     * @since 2.2
+     */
+    private void storeReview(Assignment task, Review review) 
+        throws CommunicationException {
+        writes.awaitCapacity(); // not while holding locks needed by writes
+        dataLock.readLock().lock();
+        try {
+            if (null == users.get(review.getUserName())) {
+                throw new ReviewException(ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE_NO_USER, new Throwable());
+            }
+            Exercise exercise = exerciseData.getExercise(task.getName());
+            if (null == exercise) {
+                throw new ReviewException(ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE_NO_EXERCISE, 
+                    new Throwable());
+            }
+            String userName = review.getUserName();
+            synchronized (groupLocks.get(userName)) {
+                if (!review.isUnchanged(exercise.getReview(userName))) {
+                    review.setTimestamp(ReviewClock.tick());
+                    exercise.addReview(review);
+                    writes.offer(exercise.getName() + TsvScanner.SEPARATOR 
+                        + userName, new JournalWrite(exercise.getName(), 
+                        review));
+                }
+            }
+        } finally {
+            dataLock.readLock().unlock();
         }
     }
     
     /**
-     * Stores all exercises.
+     * Stores all exercises, i.e. writes a new snapshot of the reviews 
+     * files and compacts the journal. The snapshot is written immediately
+     * as changes of the exercises are not recorded by the journal. To be
+     * called while holding the commit lock of {@link #snapshots}, so that
+     * the changes cannot be discarded by reloading before they are 
+     * stored, but not the data lock. Pending journal writes shall be 
+     * executed before (see {@link #flushJournal()}).
      * 
      * @throws CommunicationException if an error occurs
      * 
@@ -235,18 +945,180 @@ public class FileReviewCommunication
      */
     private void storeExercises() throws CommunicationException {
         try {
-            exerciseData.store(new FileWriter(getReviewsFileName()), false);
+            snapshots.commitNow(true);
         } catch (IOException ioe) {
             throw new ReviewException(
                 SubmissionPublicMessage.FILE_IO_ERROR, ioe);
         }
+    }
+
+    /**
+     * Stores the real users, i.e. writes the users file. To be called 
+     * while holding {@link #usersWriteLock} but not the data lock.
+     * 
+     * @param rows the real users to be stored (a copy of 
+     *     {@link #userList})
+     * @throws IOException if writing fails
+     * 
+     * @since 2.2
+     */
+    private void storeUsers(List<RealUser> rows) throws IOException {
+        File file = new File(getUsersFileName());
+        RealUser.writeRealUserList(rows, file);
+        recordOwnWrite(file);
+    }
+
+    /**
+     * Executes the pending writes of the journal but no pending group 
+     * commit, e.g. before reading changes of other programs, which would 
+     * be overwritten by a commit. Must not be called while holding the 
+     * data lock. Failures are reported by the writes (see 
+     * {@link JournalWrite#failed(IOException)}).
+     * 
+     * @since 2.2
+     */
+    private void flushJournal() {
+        writes.flush();
+    }
+
+    /**
+     * Executes the pending writes, in particular pending snapshots of the
+     * reviews.
+     * 
+     * @throws CommunicationException if an error occurs
+     * 
+     * @since 2.2
+     */
+    private void flushSnapshots() throws CommunicationException {
+        flushSnapshots(false);
+    }
+
+    /**
+     * Executes the pending writes, in particular pending snapshots of the
+     * reviews, and writes outdated reviews files if requested.
+     * 
+     * @param export <code>true</code> if the reviews files shall reflect 
+     *     all changes afterwards, <code>false</code> else
+     * @throws CommunicationException if an error occurs
+     * 
+     * @since 2.2
+     */
+    private void flushSnapshots(boolean export) 
+        throws CommunicationException {
         try {
-            exerciseData.store(new FileWriter(
-                getReviewsRealUsersFileName()), true);
+            writes.flush();
+            snapshots.flush(export);
         } catch (IOException ioe) {
             throw new ReviewException(
                 SubmissionPublicMessage.FILE_IO_ERROR, ioe);
-        }        
+        }
+    }
+
+    /**
+     * Writes all pending changes to the files including the 
+     * <code>.tsv</code> files, i.e. also the reviews whose journal records
+     * could not be written in the background.
+     * 
+     * @throws CommunicationException if writing failed
+     * 
+     * @since 2.2
+     */
+    @Override
+    public void flush() throws CommunicationException {
+        flushSnapshots(true);
+    }
+
+    /**
+     * Returns the group commit window for snapshots of the reviews files.
+     * 
+     * @return the window in milliseconds, no group commits if not positive
+     * 
+     * @since 2.2
+     */
+    private static long getGroupCommitWindow() {
+        long result;
+        try {
+            result = Long.parseLong(IConfiguration.INSTANCE.getProperty(
+                "review.groupCommitWindow", "0").trim());
+        } catch (NumberFormatException e) {
+            result = 0;
+        }
+        return result;
+    }
+
+    /**
+     * Returns if the index of the reviews file shall be written.
+     * 
+     * @return <code>true</code> if the index shall be written, 
+     *         <code>false</code> else
+     * 
+     * @since 2.2
+     */
+    private static boolean isOffsetIndexEnabled() {
+        return Boolean.parseBoolean(IConfiguration.INSTANCE.getProperty(
+            "review.offsetIndex", "true").trim());
+    }
+
+    /**
+     * Opens the index of the reviews file in the user home directory, 
+     * e.g. to read the reviews of selected users (groups) and tasks 
+     * without loading all reviews (see 
+     * {@link ExerciseData#load(ReviewIndex, java.util.Collection, 
+     * boolean)}).
+     * 
+     * @return the index, <b>null</b> if there is no current index
+     * @throws CommunicationException if reading the index fails
+     * 
+     * @since 2.2
+     */
+    public static ReviewIndex openReviewIndex() 
+        throws CommunicationException {
+        ReviewIndex result;
+        try {
+            result = ReviewIndex.open(new File(getReviewsFileName()), 
+                new File(getReviewIndexFileName()));
+        } catch (IOException ioe) {
+            throw new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of review texts kept in memory when reviews are
+     * loaded lazily from the binary snapshot.
+     * 
+     * @return the number of review texts, reviews are loaded completely 
+     *         if not positive
+     * 
+     * @since 2.2
+     */
+    private static int getReviewCacheSize() {
+        int result;
+        try {
+            result = Integer.parseInt(IConfiguration.INSTANCE.getProperty(
+                "review.textCacheSize", 
+                String.valueOf(DEFAULT_REVIEW_CACHE_SIZE)).trim());
+        } catch (NumberFormatException e) {
+            result = DEFAULT_REVIEW_CACHE_SIZE;
+        }
+        return result;
+    }
+
+    /**
+     * Removes all records from the journal.
+     * 
+     * @throws CommunicationException if an error occurs
+     * 
+     * @since 2.2
+     */
+    private void resetJournal() throws CommunicationException {
+        try {
+            journal.reset();
+        } catch (IOException ioe) {
+            throw new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, ioe);
+        }
     }
 
     /**
@@ -292,6 +1164,40 @@ public class FileReviewCommunication
     private static String getReviewsRealUsersFileName() {
         return getUserHome() + "submissionRealUsersReviews.tsv";
     }
+
+    /**
+     * Returns the name of the index file of the reviews file.
+     * 
+     * @return the name of the index file
+     * 
+     * @since 2.2
+     */
+    private static String getReviewIndexFileName() {
+        return getUserHome() + "submissionReviews.idx";
+    }
+
+    /**
+     * Returns the name of the directory of the partitioned binary reviews
+     * snapshot.
+     * 
+     * @return the name of the directory
+     * 
+     * @since 2.2
+     */
+    private static String getPartitionsDirectoryName() {
+        return getUserHome() + "submissionReviews.parts";
+    }
+
+    /**
+     * Returns the name of the reviews journal file.
+     * 
+     * @return the name of the reviews journal file
+     * 
+     * @since 2.2
+     */
+    private static String getJournalFileName() {
+        return getUserHome() + "submissionReviews.journal";
+    }
     
     /**
      * Returns the assigned default directory.
@@ -314,13 +1220,40 @@ public class FileReviewCommunication
      *            user group (see {@link #getRealUsers(String)}
      * @return the stored review (or <b>null</b>)
      * @throws CommunicationException
-     *             if any communication/validation error occurs
+     *             if the stored reviews of the task cannot be read
      * 
      * @since 1.00
      */
     public Review getReview(String task, String userName)
         throws CommunicationException {
-        return exerciseData.getReview(task, userName);
+        Exercise exercise = exerciseData.getExercise(task);
+        Review result;
+        if (null == exercise) {
+            result = null;
+        } else {
+            result = exercise.getReview(userName);
+            checkReadable(exercise);
+        }
+        return result;
+    }
+
+    /**
+     * Checks that the reviews of an exercise could be loaded (see 
+     * {@link Exercise#getLoadFailure()}), i.e. that results obtained from
+     * the exercise are complete.
+     * 
+     * @param exercise the exercise to check
+     * @throws CommunicationException if loading the reviews failed
+     * 
+     * @since 2.2
+     */
+    private static void checkReadable(Exercise exercise) 
+        throws CommunicationException {
+        IOException failure = exercise.getLoadFailure();
+        if (null != failure) {
+            throw new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, failure);
+        }
     }
 
     /**
@@ -369,7 +1302,12 @@ public class FileReviewCommunication
      */
     public List<RealUser> getAllKnownUsers() throws CommunicationException {
         List<RealUser> users = new ArrayList<RealUser>();
-        users.addAll(userList);
+        dataLock.readLock().lock();
+        try {
+            users.addAll(userList);
+        } finally {
+            dataLock.readLock().unlock();
+        }
         return users;
     }
     
@@ -395,6 +1333,18 @@ public class FileReviewCommunication
     public Iterable<User> submissionUsers() {
         return users.values();
     }
+
+    /**
+     * Returns the index of all (repository) users and their real users
+     * sorted by name.
+     * 
+     * @return the user index
+     * 
+     * @since 2.2
+     */
+    public UserIndex getUserIndex() {
+        return userIndex;
+    }
     
     /**
      * Returns arbitrary descriptive information on the users.
@@ -486,6 +1436,7 @@ public class FileReviewCommunication
      * @since 1.08
      */
     public void loadResults(String file) throws CommunicationException {
+        flushSnapshots();
         if (!file.equals(getReviewsFileName())) {
             File source = new File(file);
             File target = new File(getReviewsFileName());
@@ -495,6 +1446,13 @@ public class FileReviewCommunication
                 throw new ReviewException(
                     SubmissionPublicMessage.FILE_IO_ERROR, e);
             }
+            // pending changes and the snapshot refer to the replaced file
+            resetJournal();
+            synchronized (snapshots.getCommitLock()) {
+                partitions.delete();
+                // exercises not loaded yet refer to the partitions
+                reviewDigests = new RowDigests(ExerciseData.HEADER_LINES);
+            }
         }
         reloadReviews();
     }
@@ -515,6 +1473,7 @@ public class FileReviewCommunication
             result = 0;
         } else {
             result = exercise.getReviewCount();
+            checkReadable(exercise);
         }
         return result;
     }
@@ -530,17 +1489,30 @@ public class FileReviewCommunication
      * @since 1.08
      */
     public boolean deleteUser(RealUser user) throws CommunicationException {
-        boolean done = userList.remove(user);
-        if (done) {
-            File target = new File(getUsersFileName());
+        boolean done;
+        synchronized (usersWriteLock) {
+            List<RealUser> rows;
+            dataLock.writeLock().lock();
             try {
-                RealUser.writeRealUserList(userList, target);
+                done = userList.remove(user);
+                rows = new ArrayList<RealUser>(userList);
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+            if (done) {
+                try {
+                    storeUsers(rows);
+                } catch (IOException e) {
+                    dataLock.writeLock().lock();
+                    try {
+                        userList.add(user);
+                    } finally {
+                        dataLock.writeLock().unlock();
+                    }
+                    throw new ReviewException(
+                        SubmissionPublicMessage.FILE_IO_ERROR, e);
+                }
                 reloadUsers();
-            } catch (IOException e) {
-                userList.add(user);
-                done = false;
-                throw new ReviewException(
-                    SubmissionPublicMessage.FILE_IO_ERROR, e);
             }
         }
         return done;
@@ -582,26 +1554,38 @@ public class FileReviewCommunication
      * @since 1.08
      */
     public void modifyUser(RealUser user) throws CommunicationException {
-        int found = -1;
-        for (int i = 0; found < 0 && i < userList.size(); i++) {
-            if (userList.get(i) == user) {
-                found = i;
+        synchronized (usersWriteLock) {
+            int found = -1;
+            List<RealUser> rows;
+            dataLock.writeLock().lock();
+            try {
+                for (int i = 0; found < 0 && i < userList.size(); i++) {
+                    if (userList.get(i) == user) {
+                        found = i;
+                    }
+                }
+                if (found < 0) {
+                    userList.add(user);
+                }
+                rows = new ArrayList<RealUser>(userList);
+            } finally {
+                dataLock.writeLock().unlock();
             }
-        }
-        if (found < 0) {
-            userList.add(user);
-        }
-
-        try {
-            File target = new File(getUsersFileName());
-            RealUser.writeRealUserList(userList, target);
-            reloadUsers();
-        } catch (IOException e) {
-            if (found < 0) {
-                userList.remove(user);
+            try {
+                storeUsers(rows);
+            } catch (IOException e) {
+                if (found < 0) {
+                    dataLock.writeLock().lock();
+                    try {
+                        userList.remove(user);
+                    } finally {
+                        dataLock.writeLock().unlock();
+                    }
+                }
+                throw new ReviewException(
+                    SubmissionPublicMessage.FILE_IO_ERROR, e);
             }
-            throw new ReviewException(
-                SubmissionPublicMessage.FILE_IO_ERROR, e);
+            reloadUsers();
         }
     }
     
@@ -629,9 +1613,18 @@ public class FileReviewCommunication
      * @since 1.08
      */
     public boolean deleteTask(String task) throws CommunicationException {
-        boolean done = exerciseData.removeExerciseTask(task);
-        if (done) {
-            storeExercises();
+        boolean done;
+        flushJournal(); // earlier submissions are compacted by the commit
+        synchronized (snapshots.getCommitLock()) {
+            dataLock.writeLock().lock();
+            try {
+                done = exerciseData.removeExerciseTask(task);
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+            if (done) {
+                storeExercises();
+            }
         }
         return done;
     }
@@ -647,14 +1640,27 @@ public class FileReviewCommunication
      */
     public void modifyTask(String task, int credits) 
         throws CommunicationException {
-        Exercise exercise = exerciseData.getExercise(task);
-        if (null != exercise) {
-            exercise.setMaxCredits(credits);
-            storeExercises();
-        } else {
-            exercise = new Exercise(task, credits);
-            exerciseData.addExercise(exercise);
-            storeExercises();
+        boolean changed = true;
+        flushJournal(); // earlier submissions are compacted by the commit
+        synchronized (snapshots.getCommitLock()) {
+            dataLock.writeLock().lock();
+            try {
+                Exercise exercise = exerciseData.getExercise(task);
+                if (null == exercise) {
+                    exercise = new Exercise(task, credits);
+                    exerciseData.addExercise(exercise);
+                } else if (exercise.getMaxCreditsFixedPoint() 
+                    != Credits.toFixedPoint(credits)) {
+                    exercise.setMaxCredits(credits);
+                } else {
+                    changed = false;
+                }
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+            if (changed) {
+                storeExercises();
+            }
         }
     }
     
@@ -672,27 +1678,153 @@ public class FileReviewCommunication
 
     /**
      * Merges with the tasks a file. This method should be called only if
-     * {@link #acceptsTaskMerge()()} returns <code>true</code>.
+     * {@link #acceptsTaskMerge()()} returns <code>true</code>. Conflicting
+     * reviews are resolved by {@link MergePolicy#LAST_WRITER_WINS}, i.e.
+     * reviews without timestamps only fill in missing reviews.
      * 
      * @param file the file to be merged
+     * @return the merge report
      * @throws CommunicationException if any error occurs
      * 
      * @since 1.08
      */
-    public void mergeTasks(String file) throws CommunicationException {
-        ExerciseData externalData = new ExerciseData(this);
-        try {
-            externalData.load(new FileReader(file));
-            if (exerciseData.mergeWith(externalData)) {
+    public MergeReport mergeTasks(String file) throws CommunicationException {
+        List<String> files = new ArrayList<String>();
+        files.add(file);
+        return mergeTasks(files, MergePolicy.LAST_WRITER_WINS);
+    }
+
+    /**
+     * Merges the tasks with multiple files. Each file is read once and
+     * parsed in parallel, the reviews are merged in one step and the 
+     * result is stored once. Files which do not exist are ignored.
+     * 
+     * @param files the files to be merged (in order)
+     * @param policy the policy for resolving conflicting reviews
+     * @return the merge report
+     * @throws CommunicationException if any error occurs
+     * 
+     * @since 2.2
+     */
+    public MergeReport mergeTasks(List<String> files, MergePolicy policy) 
+        throws CommunicationException {
+        ReviewFileMerger merger = new ReviewFileMerger(this, policy);
+        for (String file : files) {
+            try {
+                merger.add(new FileReader(file), true);
+            } catch (FileNotFoundException ioe) {
+                // thats ok
+            } catch (IOException ioe) {
+                throw new ReviewException(
+                    ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE,
+                    ioe);
+            }
+        }
+        MergeReport report;
+        flushJournal(); // earlier submissions are compacted by the commit
+        synchronized (snapshots.getCommitLock()) {
+            dataLock.writeLock().lock();
+            try {
+                report = merger.mergeInto(exerciseData);
+            } finally {
+                dataLock.writeLock().unlock();
+            }
+            if (report.isMerged()) {
                 storeExercises();
             }
-        } catch (FileNotFoundException ioe) {
-            // thats ok
-        } catch (IOException ioe) {
-            throw new ReviewException(
-                ReviewPublicMessage.INVALID_REVIEW_DATASTRUCTURE,
-                ioe);
-        } 
+        }
+        exerciseData.fetchAssessments();
+        return report;
+    }
+
+    /**
+     * Appends the journal record of a submitted review in the background,
+     * requests the export of the reviews files and compacts the journal if
+     * it grew too large.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class JournalWrite extends WriteBehindQueue.Write {
+
+        /**
+         * Stores the name of the task.
+         * 
+         * @since 2.2
+         */
+        private String task;
+
+        /**
+         * Stores the submitted review.
+         * 
+         * @since 2.2
+         */
+        private Review review;
+
+        /**
+         * Creates a new journal write.
+         * 
+         * @param task the name of the task
+         * @param review the submitted review
+         * 
+         * @since 2.2
+         */
+        private JournalWrite(String task, Review review) {
+            this.task = task;
+            this.review = review;
+        }
+
+        @Override
+        protected void write() throws IOException {
+            // completely before or after reloading, see loadReviews
+            dataLock.readLock().lock();
+            try {
+                journal.append(task, review);
+            } finally {
+                dataLock.readLock().unlock();
+            }
+            snapshots.requestExport();
+            if (journal.getRecordCount() >= JOURNAL_COMPACTION_THRESHOLD) {
+                snapshots.requestCommit(false);
+            }
+        }
+
+        /**
+         * Reports the failure to the data listeners. The review is kept in
+         * memory and written by the next export of the reviews files, 
+         * e.g. on {@link FileReviewCommunication#flush()}.
+         * 
+         * @param exception the failure
+         * 
+         * @since 2.2
+         */
+        @Override
+        protected void failed(IOException exception) {
+            snapshots.setExportPending();
+            fireWriteFailed(new ReviewException(
+                SubmissionPublicMessage.FILE_IO_ERROR, exception));
+        }
+
+        /**
+         * Applies the submitted review to reloaded data unless the data 
+         * contains a newer review.
+         * 
+         * @param data the reloaded data
+         * 
+         * @since 2.2
+         */
+        private void reapply(ExerciseData data) {
+            Exercise exercise = data.getExercise(task);
+            if (null != exercise) {
+                Review existing = exercise.getReview(review.getUserName());
+                if (null == existing 
+                    || existing.getTimestamp() <= review.getTimestamp()) {
+                    exercise.addReview(review);
+                }
+            }
+        }
+
     }
 
 }
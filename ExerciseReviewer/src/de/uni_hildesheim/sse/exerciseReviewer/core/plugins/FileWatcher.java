@@ -0,0 +1,173 @@
+package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches files in a directory for changes via a {@link WatchService} and
+ * reports them on a background thread. Subsequent events are coalesced
+ * until the files did not change for a settle time, so that files being
+ * written are reported once after writing.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+abstract class FileWatcher {
+
+    /**
+     * Stores the watched directory.
+     *
+     * @since 2.2
+     */
+    private File directory;
+
+    /**
+     * Stores the names of the watched files.
+     *
+     * @since 2.2
+     */
+    private Set<String> names = new HashSet<String>();
+
+    /**
+     * Stores the settle time in milliseconds.
+     *
+     * @since 2.2
+     */
+    private long settle;
+
+    /**
+     * Stores the watch service while watching.
+     *
+     * @since 2.2
+     */
+    private WatchService service;
+
+    /**
+     * Creates a new file watcher.
+     *
+     * @param settle the settle time in milliseconds
+     * @param files the files to be watched, all in the same directory
+     *
+     * @since 2.2
+     */
+    FileWatcher(long settle, File... files) {
+        this.settle = settle;
+        for (File file : files) {
+            directory = file.getAbsoluteFile().getParentFile();
+            names.add(file.getName());
+        }
+    }
+
+    /**
+     * Called on the watcher thread when watched files changed.
+     *
+     * @param changed the names of the changed files
+     *
+     * @since 2.2
+     */
+    protected abstract void changed(Set<String> changed);
+
+    /**
+     * Starts watching. Does nothing if already watching.
+     *
+     * @throws IOException if the directory cannot be watched
+     *
+     * @since 2.2
+     */
+    synchronized void start() throws IOException {
+        if (null == service) {
+            final WatchService watch = directory.toPath().getFileSystem()
+                .newWatchService();
+            directory.toPath().register(watch,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+            service = watch;
+            Thread thread = new Thread("Review file watcher") {
+                public void run() {
+                    watch(watch);
+                }
+            };
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stops watching.
+     *
+     * @since 2.2
+     */
+    synchronized void stop() {
+        if (null != service) {
+            try {
+                service.close();
+            } catch (IOException e) {
+                // thread terminates anyway
+            }
+            service = null;
+        }
+    }
+
+    /**
+     * Processes the events of the watch service until it is closed.
+     *
+     * @param watch the watch service
+     *
+     * @since 2.2
+     */
+    private void watch(WatchService watch) {
+        try {
+            while (true) {
+                Set<String> changed = new HashSet<String>();
+                WatchKey key = watch.take();
+                while (null != key) {
+                    collect(key, changed);
+                    key = watch.poll(settle, TimeUnit.MILLISECONDS);
+                }
+                if (!changed.isEmpty()) {
+                    changed(changed);
+                }
+            }
+        } catch (InterruptedException e) {
+            // terminate
+        } catch (ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    /**
+     * Collects the names of the changed files from the events of a key and
+     * resets the key.
+     *
+     * @param key the watch key
+     * @param changed the names of the changed files, modified as a side
+     *     effect
+     *
+     * @since 2.2
+     */
+    private void collect(WatchKey key, Set<String> changed) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (StandardWatchEventKinds.OVERFLOW == event.kind()) {
+                changed.addAll(names);
+            } else {
+                String name = ((Path) event.context()).toString();
+                if (names.contains(name)) {
+                    changed.add(name);
+                }
+            }
+        }
+        key.reset();
+    }
+
+}
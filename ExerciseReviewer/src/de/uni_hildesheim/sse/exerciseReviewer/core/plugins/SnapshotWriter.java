@@ -0,0 +1,501 @@
+package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+import de.uni_hildesheim.sse.exerciseLib.FileUtils;
+import de.uni_hildesheim.sse.exerciseLib.ReviewIndex;
+import de.uni_hildesheim.sse.exerciseLib.ReviewJournal;
+
+/**
+ * Writes snapshots of the reviews in a crash-safe way. A commit writes the
+ * binary snapshot (see {@link #writeSnapshot()}), which is expected to
+ * rewrite only the modified parts of the data, e.g. the partitions of the
+ * modified exercises. An exporting commit additionally writes the 
+ * tabulator-separated reviews files, which are rendered at the same point
+ * in time, written to temporary files, forced to disk and then atomically
+ * renamed over the previous files before the binary snapshot is written,
+ * i.e. the binary snapshot acts as commit point. As two files cannot be
+ * renamed in one atomic step, the reviews file is replaced first and the
+ * derived real users file afterwards. If an index file is given, the 
+ * index of the reviews file (see {@link ReviewIndex}) is written after 
+ * the reviews file was replaced. Thus, a binary snapshot older than the 
+ * reviews file indicates an interrupted commit (or an external 
+ * modification of the reviews file), after which the reviews files shall
+ * be written again (see {@link #setExportPending()}). The journal is 
+ * compacted only after all files were replaced, so that an interrupted 
+ * commit is recovered by replaying the journal on the previous files. As
+ * the reviews files contain all exercises, they are written on request 
+ * only (see {@link #requestCommit(boolean)}, {@link #commitNow(boolean)},
+ * {@link #requestExport()}, {@link #flush(boolean)}), e.g. before the 
+ * writer is discarded if they are outdated.<br/>
+ *
+ * If a commit window is given, all commit requests arriving within the
+ * window are coalesced into a single group commit executed by a
+ * background thread. Failures of a background commit are reported by
+ * {@link #failed(IOException)} rather than to unrelated callers, the 
+ * data is committed again by the next request or by 
+ * {@link #flush(boolean)}. The background thread
+ * is stopped by {@link #close()}, which shall be called before the 
+ * writer is discarded, as shutdown hooks of the virtual machine are not
+ * reliable within a plugin.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+abstract class SnapshotWriter {
+
+    /**
+     * Stores the reviews file.
+     *
+     * @since 2.2
+     */
+    private File reviewsFile;
+
+    /**
+     * Stores the real users reviews file.
+     *
+     * @since 2.2
+     */
+    private File realUsersFile;
+
+    /**
+     * Stores the index file of the reviews file, <b>null</b> if no index
+     * shall be written.
+     *
+     * @since 2.2
+     */
+    private File indexFile;
+
+    /**
+     * Stores the journal to be compacted after a commit.
+     *
+     * @since 2.2
+     */
+    private ReviewJournal journal;
+
+    /**
+     * Stores the lock protecting the data to be rendered.
+     *
+     * @since 2.2
+     */
+    private Lock dataLock;
+
+    /**
+     * Stores the group commit window in milliseconds, commits are
+     * executed immediately if not positive.
+     *
+     * @since 2.2
+     */
+    private long window;
+
+    /**
+     * Serializes the commits.
+     *
+     * @since 2.2
+     */
+    private final Object commitLock = new Object();
+
+    /**
+     * Stores the executor for group commits (lazily created).
+     *
+     * @since 2.2
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * Stores if a group commit is scheduled.
+     *
+     * @since 2.2
+     */
+    private boolean scheduled;
+
+    /**
+     * Stores if the scheduled group commit shall write the reviews files.
+     *
+     * @since 2.2
+     */
+    private boolean scheduledExport;
+
+    /**
+     * Stores if the reviews files are outdated as commits did not write 
+     * them.
+     *
+     * @since 2.2
+     */
+    private boolean exportPending;
+
+    /**
+     * Creates a new snapshot writer and removes temporary files left over
+     * by an interrupted commit.
+     *
+     * @param reviewsFile the reviews file
+     * @param realUsersFile the real users reviews file
+     * @param indexFile the index file of the reviews file, <b>null</b> if
+     *        no index shall be written
+     * @param journal the journal to be compacted after a commit
+     * @param dataLock the lock protecting the data to be rendered
+     * @param window the group commit window in milliseconds, commits are
+     *        executed immediately if not positive
+     *
+     * @since 2.2
+     */
+    SnapshotWriter(File reviewsFile, File realUsersFile, File indexFile,
+        ReviewJournal journal, Lock dataLock, long window) {
+        this.reviewsFile = reviewsFile;
+        this.realUsersFile = realUsersFile;
+        this.indexFile = indexFile;
+        this.journal = journal;
+        this.dataLock = dataLock;
+        this.window = window;
+        FileUtils.deleteTempFile(reviewsFile);
+        FileUtils.deleteTempFile(realUsersFile);
+        if (null != indexFile) {
+            FileUtils.deleteTempFile(indexFile);
+        }
+    }
+
+    /**
+     * Renders the data to be stored. Called while holding the data lock.
+     *
+     * @param out the writer to render to
+     * @param realUsers <code>true</code> render each real user in one
+     *            line, <code>false</code> render lines for users
+     *            (user groups) only
+     * @throws IOException if rendering fails
+     *
+     * @since 2.2
+     */
+    protected abstract void render(Writer out, boolean realUsers)
+        throws IOException;
+
+    /**
+     * Renders the data to be stored in binary format. Called while holding
+     * the data lock after {@link #render(Writer, boolean)}.
+     *
+     * @param export <code>true</code> if the reviews files are written 
+     *            along with the binary snapshot, <code>false</code> else
+     * @throws IOException if rendering fails
+     *
+     * @since 2.2
+     */
+    protected abstract void renderSnapshot(boolean export)
+        throws IOException;
+
+    /**
+     * Writes the binary snapshot rendered last in a crash-safe way. Called
+     * while holding the commit lock after the reviews files were replaced.
+     *
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    protected abstract void writeSnapshot() throws IOException;
+
+    /**
+     * Called before the reviews files are replaced while holding the 
+     * commit lock. Allows releasing resources which refer to the previous
+     * files, such as cached contents. Does nothing by default.
+     *
+     * @since 2.2
+     */
+    protected void releaseFiles() {
+    }
+
+    /**
+     * Called after the reviews files were replaced while holding the 
+     * commit lock. Does nothing by default.
+     *
+     * @param reviews the contents of the reviews file as written (platform
+     *            encoding as for {@link java.io.FileWriter})
+     *
+     * @since 2.2
+     */
+    protected void committed(byte[] reviews) {
+    }
+
+    /**
+     * Called on the background thread if a group commit failed. The 
+     * journal is not compacted then, i.e. the changes are kept by the 
+     * journal and committed again by the next commit. Does nothing by 
+     * default.
+     *
+     * @param exception the failure
+     *
+     * @since 2.2
+     */
+    protected void failed(IOException exception) {
+    }
+
+    /**
+     * Requests a commit of the current data. Depending on the commit
+     * window, the commit is executed immediately or coalesced with
+     * further requests. Must not be called while holding the data lock.
+     *
+     * @param export <code>true</code> if the reviews files shall be 
+     *         written, e.g. as the exercises changed, <code>false</code> 
+     *         if writing the binary snapshot is sufficient
+     * @throws IOException if the commit failed
+     *
+     * @since 2.2
+     */
+    void requestCommit(boolean export) throws IOException {
+        boolean now = window <= 0;
+        synchronized (this) {
+            if (!now) {
+                scheduledExport |= export;
+                if (!scheduled) {
+                    scheduled = true;
+                    getExecutor().schedule(new Runnable() {
+                        public void run() {
+                            commitInBackground();
+                        }
+                    }, window, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+        if (now) {
+            commit(export);
+        }
+    }
+
+    /**
+     * Requests writing the reviews files after data recorded only by the
+     * journal changed. If a commit window is given, the reviews files are
+     * written by the group commit of the window, i.e. at most once per 
+     * window. Otherwise, writing all exercises per change would be too 
+     * expensive, and the reviews files are only noted to be outdated so 
+     * that they are written by the next exporting commit or by 
+     * {@link #flush(boolean)}. Must not be called while holding the data
+     * lock.
+     *
+     * @since 2.2
+     */
+    void requestExport() {
+        if (window > 0) {
+            try {
+                requestCommit(true);
+            } catch (IOException e) {
+                // scheduled, not executed immediately
+            }
+        } else {
+            setExportPending();
+        }
+    }
+
+    /**
+     * Commits the current data immediately in the calling thread including
+     * a scheduled group commit, e.g. for changes which are not recorded by
+     * the journal and would be lost by a crash within the commit window.
+     * Must not be called while holding the data lock.
+     *
+     * @param export <code>true</code> if the reviews files shall be 
+     *         written, <code>false</code> if writing the binary snapshot 
+     *         is sufficient
+     * @throws IOException if the commit failed
+     *
+     * @since 2.2
+     */
+    void commitNow(boolean export) throws IOException {
+        boolean exporting;
+        synchronized (this) {
+            exporting = export || scheduledExport;
+            scheduled = false;
+            scheduledExport = false;
+        }
+        commit(exporting);
+    }
+
+    /**
+     * Executes a pending group commit immediately and reports failures.
+     * Must not be called while holding the data lock.
+     *
+     * @param export <code>true</code> if outdated reviews files shall be
+     *         written, i.e. if the reviews files shall reflect all changes
+     *         including the ones in the journal, <code>false</code> if 
+     *         only pending commits shall be executed
+     * @throws IOException if the commit failed
+     *
+     * @since 2.2
+     */
+    void flush(boolean export) throws IOException {
+        boolean pending;
+        boolean exporting;
+        synchronized (this) {
+            pending = scheduled;
+            exporting = scheduledExport || (export 
+                && (exportPending || journal.getRecordCount() > 0));
+            scheduled = false;
+            scheduledExport = false;
+        }
+        if (pending || exporting) {
+            commit(exporting);
+        }
+    }
+
+    /**
+     * Notes that the reviews files are outdated, e.g. as the commits of a
+     * previous session did not write them, so that they are written on 
+     * {@link #flush(boolean)}.
+     *
+     * @since 2.2
+     */
+    synchronized void setExportPending() {
+        exportPending = true;
+    }
+
+    /**
+     * Stops the background thread after a scheduled group commit was 
+     * executed. Pending commits and outdated reviews files shall be 
+     * written by {@link #flush(boolean)} before. Further requests start a
+     * new background thread.
+     *
+     * @since 2.2
+     */
+    synchronized void close() {
+        if (null != executor) {
+            // executes the already scheduled commit
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    /**
+     * Returns the lock serializing the commits. Holding this lock (before
+     * the data lock) prevents the files and the journal from being changed
+     * by a commit.
+     *
+     * @return the commit lock
+     *
+     * @since 2.2
+     */
+    Object getCommitLock() {
+        return commitLock;
+    }
+
+    /**
+     * Executes a scheduled group commit and reports its failure.
+     *
+     * @since 2.2
+     */
+    private void commitInBackground() {
+        boolean pending;
+        boolean export;
+        synchronized (this) {
+            pending = scheduled;
+            export = scheduledExport;
+            scheduled = false;
+            scheduledExport = false;
+        }
+        if (pending) {
+            try {
+                commit(export);
+            } catch (IOException e) {
+                synchronized (this) {
+                    // the reviews files were not replaced or are outdated
+                    exportPending |= export;
+                }
+                failed(e);
+            }
+        }
+    }
+
+    /**
+     * Commits the current data, i.e. writes the binary snapshot, if 
+     * requested the reviews files, and compacts the journal.
+     *
+     * @param export <code>true</code> if the reviews files shall be 
+     *         written, <code>false</code> else
+     * @throws IOException if writing fails
+     *
+     * @since 2.2
+     */
+    private void commit(boolean export) throws IOException {
+        synchronized (commitLock) {
+            byte[] reviews = null;
+            byte[] realUsers = null;
+            long mark;
+            dataLock.lock();
+            try {
+                mark = journal.mark();
+                if (export) {
+                    reviews = renderToBytes(false);
+                    realUsers = renderToBytes(true);
+                }
+                renderSnapshot(export);
+            } finally {
+                dataLock.unlock();
+            }
+            if (export) {
+                File reviewsTmp = FileUtils.writeTempFile(reviewsFile, 
+                    reviews);
+                File realUsersTmp = FileUtils.writeTempFile(realUsersFile,
+                    realUsers);
+                releaseFiles();
+                FileUtils.replace(reviewsTmp, reviewsFile);
+                if (null != indexFile) {
+                    ReviewIndex.write(reviews, reviewsFile, indexFile);
+                }
+                FileUtils.replace(realUsersTmp, realUsersFile);
+            }
+            writeSnapshot();
+            journal.reset(mark);
+            synchronized (this) {
+                exportPending = !export;
+            }
+            if (export) {
+                committed(reviews);
+            }
+        }
+    }
+
+    /**
+     * Renders the data into memory.
+     *
+     * @param realUsers <code>true</code> render each real user in one
+     *            line, <code>false</code> render lines for users
+     *            (user groups) only
+     * @return the rendered data (platform encoding as for
+     *         {@link java.io.FileWriter})
+     * @throws IOException if rendering fails
+     *
+     * @since 2.2
+     */
+    private byte[] renderToBytes(boolean realUsers) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        render(new OutputStreamWriter(out), realUsers);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the executor for group commits.
+     *
+     * @return the executor
+     *
+     * @since 2.2
+     */
+    private synchronized ScheduledExecutorService getExecutor() {
+        if (null == executor) {
+            executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable,
+                            "Review snapshot writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return executor;
+    }
+
+}
@@ -0,0 +1,51 @@
+package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
+
+/**
+ * Provides a fixed number of lock objects (monitors) shared by keys, e.g.
+ * user (group) names. Equal keys always obtain the same lock, while
+ * different keys obtain different locks with high probability, so that
+ * modifications for different keys can proceed concurrently without
+ * allocating one lock per key.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+final class StripedLocks {
+
+    /**
+     * Stores the lock objects.
+     *
+     * @since 2.2
+     */
+    private final Object[] stripes;
+
+    /**
+     * Creates new striped locks.
+     *
+     * @param count the number of locks (at least one)
+     *
+     * @since 2.2
+     */
+    StripedLocks(int count) {
+        stripes = new Object[Math.max(1, count)];
+        for (int s = 0; s < stripes.length; s++) {
+            stripes[s] = new Object();
+        }
+    }
+
+    /**
+     * Returns the lock object for a key.
+     *
+     * @param key the key
+     * @return the lock object to synchronize on
+     *
+     * @since 2.2
+     */
+    Object get(String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return stripes[(hash & Integer.MAX_VALUE) % stripes.length];
+    }
+
+}
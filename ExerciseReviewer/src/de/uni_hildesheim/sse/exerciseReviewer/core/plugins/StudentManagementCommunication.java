@@ -3,6 +3,8 @@ package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
 import java.util.ArrayList;
 import java.util.List;
 
+import de.uni_hildesheim.sse.exerciseLib.MergePolicy;
+import de.uni_hildesheim.sse.exerciseLib.MergeReport;
 import de.uni_hildesheim.sse.exerciseLib.RealUser;
 import de.uni_hildesheim.sse.exerciseLib.Review;
 import de.uni_hildesheim.sse.exerciseLib.ReviewException;
@@ -91,8 +93,13 @@ public class StudentManagementCommunication extends ReviewCommunication {
             throw new ReviewException(SubmissionPublicMessage.INVALID_REVIEW_CREDITS,  new Throwable());
         }
 
+        Assessment assessment = review.fetchAssessment();
+        if (null == assessment) {
+            throw new CommunicationException(SubmissionPublicMessage.
+                COULD_NOT_FIND_REQUESTED_DATA_ON_STUDENT_MANAGEMENT_SERVER, new Throwable());
+        }
         try {
-            mgmtProtocol.submitAssessment(review.getAssessment());
+            mgmtProtocol.submitAssessment(assessment);
             review.setSubmittedToServer();
         } catch (NetworkException e) {
             throw new CommunicationException(CommunicationException.SubmissionPublicMessage.
@@ -106,7 +113,7 @@ public class StudentManagementCommunication extends ReviewCommunication {
             reloadReviews();
         }
         return reviews.stream()
-            .filter(r -> userName.equals(r.getAssessment().getSubmitterName()))
+            .filter(r -> userName.equals(r.getUserName()))
             .findAny()
             .orElse(null);
     }
@@ -275,8 +282,14 @@ public class StudentManagementCommunication extends ReviewCommunication {
     }
 
     @Override
-    public void mergeTasks(String file) throws CommunicationException {
+    public MergeReport mergeTasks(String file) throws CommunicationException {
          // Eclipse won't be able to delete tasks of the student management system
+        return new MergeReport();
+    }
+
+    @Override
+    public MergeReport mergeTasks(List<String> files, MergePolicy policy) throws CommunicationException {
+        return new MergeReport();
     }
 
 }
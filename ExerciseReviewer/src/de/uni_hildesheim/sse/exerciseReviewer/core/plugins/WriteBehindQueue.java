@@ -0,0 +1,258 @@
+package de.uni_hildesheim.sse.exerciseReviewer.core.plugins;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Executes writes to files on a dedicated background thread, so that the
+ * callers, e.g. the UI thread, do not wait for the disk. Writes are queued
+ * under a key and executed in order. A write for a key which is still
+ * pending replaces the pending write (coalescing), i.e. it is executed at
+ * the position of the replaced write. The number of pending writes is
+ * bounded, i.e. callers wait for free capacity before queuing new writes
+ * (back-pressure). The bound is advisory: callers queue writes while 
+ * holding locks which the pending writes require, so they wait for 
+ * capacity before acquiring the locks (see {@link #awaitCapacity()}) and
+ * queue afterwards (see {@link #offer(Object, Write)}). Thus, concurrent
+ * callers may exceed the capacity by at most their number. Failures of
+ * background writes are reported to the failing write (see 
+ * {@link Write#failed(IOException)}) rather than to unrelated callers.
+ * Pending writes are executed by {@link #close()}, which shall be called
+ * before the queue is discarded, e.g. when the plugin is stopped, as 
+ * shutdown hooks of the virtual machine are not reliable within a 
+ * plugin.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+final class WriteBehindQueue {
+
+    /**
+     * Stores the name of the background thread.
+     *
+     * @since 2.2
+     */
+    private String name;
+
+    /**
+     * Stores the maximum number of pending writes.
+     *
+     * @since 2.2
+     */
+    private int capacity;
+
+    /**
+     * Stores the pending writes by their keys in execution order.
+     *
+     * @since 2.2
+     */
+    private Map<Object, Write> pending = new LinkedHashMap<Object, Write>();
+
+    /**
+     * Stores the write being executed, <b>null</b> if none.
+     *
+     * @since 2.2
+     */
+    private Write current;
+
+    /**
+     * Stores the background thread (lazily started).
+     *
+     * @since 2.2
+     */
+    private Thread writer;
+
+    /**
+     * Creates a new write-behind queue.
+     *
+     * @param name the name of the background thread
+     * @param capacity the maximum number of pending writes (at least one)
+     *
+     * @since 2.2
+     */
+    WriteBehindQueue(String name, int capacity) {
+        this.name = name;
+        this.capacity = Math.max(1, capacity);
+    }
+
+    /**
+     * Waits until further writes can be queued. Callers shall call this
+     * method before acquiring locks required by the pending writes and
+     * queue via {@link #offer(Object, Write)} afterwards. Returns 
+     * immediately if called by the background thread.
+     *
+     * @since 2.2
+     */
+    synchronized void awaitCapacity() {
+        boolean interrupted = false;
+        while (pending.size() >= capacity
+            && Thread.currentThread() != writer) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queues a write without waiting for free capacity, i.e. the capacity
+     * is only respected if {@link #awaitCapacity()} was called before.
+     *
+     * @param key the key of the write
+     * @param write the write
+     *
+     * @since 2.2
+     */
+    synchronized void offer(Object key, Write write) {
+        pending.put(key, write);
+        if (null == writer) {
+            start();
+        }
+        notifyAll();
+    }
+
+    /**
+     * Returns the writes which are pending or being executed.
+     *
+     * @return the writes in execution order
+     *
+     * @since 2.2
+     */
+    synchronized List<Write> getPending() {
+        List<Write> result = new ArrayList<Write>(pending.size() + 1);
+        if (null != current) {
+            result.add(current);
+        }
+        result.addAll(pending.values());
+        return result;
+    }
+
+    /**
+     * Waits until all pending writes are executed. Does not wait if 
+     * called by the background thread. Must not be called while holding
+     * locks required by the pending writes.
+     *
+     * @since 2.2
+     */
+    synchronized void flush() {
+        boolean interrupted = false;
+        while ((!pending.isEmpty() || null != current)
+            && Thread.currentThread() != writer) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Executes the pending writes and stops the background thread. Writes
+     * queued afterwards start a new background thread. Must not be called
+     * while holding locks required by the pending writes.
+     *
+     * @since 2.2
+     */
+    synchronized void close() {
+        flush();
+        writer = null;
+        notifyAll();
+    }
+
+    /**
+     * Starts the background thread.
+     *
+     * @since 2.2
+     */
+    private void start() {
+        writer = new Thread(name) {
+            public void run() {
+                execute();
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Executes the pending writes. Runs on the background thread until
+     * the queue is closed, i.e. until the thread is not the registered
+     * background thread anymore.
+     *
+     * @since 2.2
+     */
+    private void execute() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            Write write;
+            synchronized (this) {
+                current = null;
+                notifyAll();
+                while (pending.isEmpty() && self == writer) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        // daemon, wait for further writes
+                    }
+                }
+                if (self != writer) {
+                    return; // closed, further writes start a new thread
+                }
+                Iterator<Write> iter = pending.values().iterator();
+                write = iter.next();
+                iter.remove();
+                current = write;
+            }
+            try {
+                write.write();
+            } catch (IOException e) {
+                write.failed(e);
+            } catch (RuntimeException e) {
+                write.failed(new IOException(e));
+            }
+        }
+    }
+
+    /**
+     * Defines a write executed on the background thread.
+     *
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    abstract static class Write {
+
+        /**
+         * Executes the write.
+         *
+         * @throws IOException if writing fails
+         *
+         * @since 2.2
+         */
+        protected abstract void write() throws IOException;
+
+        /**
+         * Reports the failure of {@link #write()}. Called on the 
+         * background thread.
+         *
+         * @param exception the failure
+         *
+         * @since 2.2
+         */
+        protected abstract void failed(IOException exception);
+
+    }
+
+}
@@ -16,8 +16,10 @@ import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.jdt.core.IJavaProject;
 import org.eclipse.jface.operation.IRunnableWithProgress;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IEditorPart;
 import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchListener;
 import org.eclipse.ui.IWorkbenchPage;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.progress.IProgressService;
@@ -25,6 +27,7 @@ import org.eclipse.ui.progress.IProgressService;
 import de.uni_hildesheim.sse.exerciseLib.Review;
 import de.uni_hildesheim.sse.exerciseLib.ReviewException;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
+import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewDataListener;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.decorators.
     ReviewLabelDecorator;
 import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
@@ -56,6 +59,22 @@ public class ReviewUtils {
      * @since 1.00
      */
     private static List<SubmissionCommunication> burstInstances = null;
+
+    /**
+     * Stores if the review communication instance is released when the
+     * workbench shuts down (see {@link #getReviewCommunication()}).
+     * 
+     * @since 2.2
+     */
+    private static boolean shutdownListener = false;
+
+    /**
+     * Stores the review communication instance whose failures of 
+     * background writes are reported to the user.
+     * 
+     * @since 2.2
+     */
+    private static ReviewCommunication observedInstance = null;
     
     /**
      * Prevents this class from being instantiated.
@@ -65,6 +84,107 @@ public class ReviewUtils {
     private ReviewUtils() {
     }
     
+    /**
+     * Returns the review communication instance for the configured user.
+     * On the first call, a listener is registered, which releases the 
+     * instance when the workbench shuts down (see 
+     * {@link ReviewCommunication#disposeInstance()}), i.e. pending changes
+     * are written and background threads are stopped. Further, failures 
+     * of writes executed in the background by the instance are reported 
+     * to the user.
+     * 
+     * @return the review communication instance
+     * @throws CommunicationException if any error occurs
+     * 
+     * @since 2.2
+     */
+    public static ReviewCommunication getReviewCommunication() 
+        throws CommunicationException {
+        ReviewCommunication comm = ReviewCommunication.getInstance(
+            IConfiguration.INSTANCE, null);
+        registerShutdownListener();
+        observeWriteFailures(comm);
+        return comm;
+    }
+
+    /**
+     * Reports the failures of background writes of the given instance to
+     * the user unless the instance is observed already.
+     * 
+     * @param comm the review communication instance
+     * 
+     * @since 2.2
+     */
+    private static synchronized void observeWriteFailures(
+        ReviewCommunication comm) {
+        if (comm != observedInstance) {
+            observedInstance = comm;
+            comm.addDataListener(new ReviewDataListener() {
+
+                @Override
+                public void usersChanged() {
+                    // handled by the views
+                }
+
+                @Override
+                public void reviewsChanged() {
+                    // handled by the views
+                }
+
+                @Override
+                public void writeFailed(
+                    final CommunicationException exception) {
+                    Display.getDefault().asyncExec(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            GuiUtils.handleThrowable(exception);
+                        }
+
+                    });
+                }
+
+            });
+        }
+    }
+
+    /**
+     * Registers the release of the review communication instance on 
+     * shutdown of the workbench unless registered before. If pending 
+     * changes cannot be written, the user is asked whether the workbench
+     * shall be closed anyway.
+     * 
+     * @since 2.2
+     */
+    private static synchronized void registerShutdownListener() {
+        if (!shutdownListener && PlatformUI.isWorkbenchRunning()) {
+            shutdownListener = true;
+            PlatformUI.getWorkbench().addWorkbenchListener(
+                new IWorkbenchListener() {
+
+                    @Override
+                    public boolean preShutdown(IWorkbench workbench, 
+                        boolean forced) {
+                        boolean shutdown = true;
+                        try {
+                            ReviewCommunication.disposeInstance();
+                        } catch (CommunicationException e) {
+                            shutdown = forced || GuiUtils.openDialog(
+                                GuiUtils.DialogType.CONFIRMATION, 
+                                "Pending reviews could not be written ("
+                                + e.getMessage() + "). Exit anyway?");
+                        }
+                        return shutdown;
+                    }
+
+                    @Override
+                    public void postShutdown(IWorkbench workbench) {
+                    }
+
+                });
+        }
+    }
+
     /**
      * Updates the decorator.
      * 
@@ -236,7 +356,9 @@ public class ReviewUtils {
     }
     
     /**
-     * Submits all projects in the workspace.
+     * Submits all projects in the workspace which have a review that was
+     * changed after it was submitted to the server last (see 
+     * {@link Review#isSubmittedToServer()}).
      * 
      * @since 1.00
      */
@@ -244,15 +366,14 @@ public class ReviewUtils {
         saveAllDirtyEditors();
         List<ProjectInfo> allProjects = getAllProjects();
         try {
-            ReviewCommunication comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+            ReviewCommunication comm = getReviewCommunication();
             burstInstances = new ArrayList<SubmissionCommunication>();
             for (ProjectInfo project : allProjects) {                
 
                 Review review = comm.getReview(project.getTask().getName(), project.getSubmissionProject().getName());
-                if (null != review) {
+                if (null != review && !review.isSubmittedToServer()) {
                     if (submitProject(project.getSubmissionProject(), project.getTask())) {
-                        review.setSubmittedToServer();
-                        comm.submitReview(project.getTask(), review);
+                        comm.markSubmitted(project.getTask(), review);
                     }
                 }
             }
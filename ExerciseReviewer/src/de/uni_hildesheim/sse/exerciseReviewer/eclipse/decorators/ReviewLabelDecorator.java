@@ -16,7 +16,6 @@ import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewPublicMessage;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.ReviewUtils;
 import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
-import de.uni_hildesheim.sse.exerciseSubmitter.configuration.IConfiguration;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.
     CommunicationException;
 import net.ssehub.exercisesubmitter.protocol.frontend.Assignment;
@@ -168,7 +167,7 @@ public class ReviewLabelDecorator extends LabelDecorator {
             // If task = null: Wrong workspace used -> Not in review mode
             if (null != task) {
                 try {
-                    ReviewCommunication comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+                    ReviewCommunication comm = ReviewUtils.getReviewCommunication();
                     Review review = comm.getReview(task.getName(), user);
                     if (null != review) {
                         ImageDescriptor id = review.isSubmittedToServer() ? submitted : reviewed;
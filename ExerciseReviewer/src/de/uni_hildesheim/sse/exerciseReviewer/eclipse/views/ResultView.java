@@ -1,6 +1,7 @@
 package de.uni_hildesheim.sse.exerciseReviewer.eclipse.views;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eclipse.core.resources.IResourceChangeEvent;
@@ -12,6 +13,7 @@ import org.eclipse.jface.action.IMenuManager;
 import org.eclipse.jface.action.IToolBarManager;
 import org.eclipse.jface.action.MenuManager;
 import org.eclipse.jface.action.Separator;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
@@ -34,14 +36,16 @@ import org.eclipse.ui.IActionBars;
 import org.eclipse.ui.IWorkbenchActionConstants;
 import org.eclipse.ui.part.ViewPart;
 
+import de.uni_hildesheim.sse.exerciseLib.MergePolicy;
+import de.uni_hildesheim.sse.exerciseLib.MergeReport;
 import de.uni_hildesheim.sse.exerciseLib.Review;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
+import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewDataListener;
 import de.uni_hildesheim.sse.exerciseReviewer.core.plugins.ServerAuthentication;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.ReviewUtils;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.Utils;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.dialogs.EditTask;
 import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
-import de.uni_hildesheim.sse.exerciseSubmitter.configuration.IConfiguration;
 import de.uni_hildesheim.sse.exerciseSubmitter.eclipse.util.GuiUtils;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.
     CommunicationException;
@@ -55,6 +59,14 @@ import de.uni_hildesheim.sse.exerciseSubmitter.submission.
  */
 public class ResultView extends ViewPart {
 
+    /**
+     * Stores the maximum number of conflicting review cells listed after
+     * merging review files.
+     *
+     * @since 2.2
+     */
+    private static final int MAX_REPORTED_CELLS = 20;
+
     /**
      * Stores the parent shell of this view.
      *
@@ -82,6 +94,13 @@ public class ResultView extends ViewPart {
      * @since 1.18
      */
     private ReviewCommunication comm;
+
+    /**
+     * Stores the listener refreshing this view when the reviews change.
+     * 
+     * @since 2.2
+     */
+    private ReviewDataListener dataListener = new DataListener();
     
     /**
      * Stores the refresh data action.
@@ -137,7 +156,7 @@ public class ResultView extends ViewPart {
         scrollPanel.setContent(panel);
 
         try {
-            comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+            comm = ReviewUtils.getReviewCommunication();
         } catch (CommunicationException e) {
         }
         
@@ -190,6 +209,45 @@ public class ResultView extends ViewPart {
         panel.setSize(panel.computeSize(SWT.DEFAULT, SWT.DEFAULT));
         ServerAuthentication.initialize();
         fillTable();
+        if (null != comm) {
+            comm.addDataListener(dataListener);
+        }
+    }
+
+    /**
+     * Refreshes the table when the reviews change, e.g. as the underlying
+     * files were changed by other programs.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class DataListener implements ReviewDataListener {
+
+        @Override
+        public void reviewsChanged() {
+            Display.getDefault().asyncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!table.isDisposed()) {
+                        fillTable();
+                    }
+                }
+
+            });
+        }
+
+        @Override
+        public void usersChanged() {
+            // not shown in this view
+        }
+
+        @Override
+        public void writeFailed(CommunicationException exception) {
+            // reported once for all views, see ReviewUtils
+        }
+
     }
     
     /**
@@ -368,10 +426,11 @@ public class ResultView extends ViewPart {
             @Override
             public void run() {
                 try {
-                    FileDialog dialog = new FileDialog(shell, SWT.OPEN);
+                    FileDialog dialog = new FileDialog(shell, 
+                        SWT.OPEN | SWT.MULTI);
                     final String[] extensions = {"*.tsv"};
                     final String[] filterNames = {"Review files"};
-                    dialog.setText("Merge review data file");
+                    dialog.setText("Merge review data files");
     
                     dialog.setFilterExtensions(extensions);
                     dialog.setFilterNames(filterNames);
@@ -381,21 +440,28 @@ public class ResultView extends ViewPart {
                         dialog.setFilterPath(defaultDirectory);
                     }
                     dialog.open();
-                    String file = dialog.getFileName();
-                    if (null != file && file.length() > 0) {
-                        comm.mergeTasks(dialog.getFilterPath() 
-                            + File.separator + file);
+                    List<String> files = new ArrayList<String>();
+                    for (String file : dialog.getFileNames()) {
+                        if (null != file && file.length() > 0) {
+                            files.add(dialog.getFilterPath() 
+                                + File.separator + file);
+                        }
+                    }
+                    if (!files.isEmpty()) {
+                        MergeReport report = comm.mergeTasks(files, 
+                            MergePolicy.LAST_WRITER_WINS);
                         fillTable();
+                        showMergeReport(shell, files.size(), report);
                     }
                 } catch (CommunicationException e) {
                     GuiUtils.handleThrowable(e);
                 }
             }
         };
-        mergeAction.setText("Merges a review result file " 
+        mergeAction.setText("Merges review result files " 
             + "with the current data");
         mergeAction
-            .setToolTipText("Merges a review result file with " 
+            .setToolTipText("Merges review result files with " 
             + "the current data");
         imgDescriptor = 
             Activator.getImageDescriptor("icons/merge.gif");
@@ -403,6 +469,45 @@ public class ResultView extends ViewPart {
         mergeAction.setEnabled(comm.acceptsTaskMerge());
     }
     
+    /**
+     * Shows the result of merging review files to the user, i.e. the 
+     * number of added, skipped and conflicting review cells. Conflicting
+     * cells are listed up to {@link #MAX_REPORTED_CELLS}, as they were 
+     * resolved by the merge policy and may need a manual check.
+     * 
+     * @param shell the parent shell
+     * @param fileCount the number of merged files
+     * @param report the merge report, may be <b>null</b> if the 
+     *     communication instance does not create reports
+     * 
+     * @since 2.2
+     */
+    private static void showMergeReport(Shell shell, int fileCount, 
+        MergeReport report) {
+        if (null != report) {
+            StringBuilder message = new StringBuilder();
+            message.append("Merged ");
+            message.append(fileCount);
+            message.append(" file(s).\n\nAdded reviews: ");
+            message.append(report.getAdded().size());
+            message.append("\nSkipped reviews: ");
+            message.append(report.getSkipped().size());
+            message.append("\nConflicting reviews: ");
+            List<MergeReport.Cell> conflicting = report.getConflicting();
+            message.append(conflicting.size());
+            for (int c = 0; c < conflicting.size(); c++) {
+                if (c == MAX_REPORTED_CELLS) {
+                    message.append("\n  ...");
+                    break;
+                }
+                message.append("\n  ");
+                message.append(conflicting.get(c));
+            }
+            MessageDialog.openInformation(shell, "Merge review data files", 
+                message.toString());
+        }
+    }
+    
     /**
      * Hooks the context menu into the correct environment.
      * 
@@ -488,4 +593,12 @@ public class ResultView extends ViewPart {
         viewer.getControl().setFocus();
     }
 
+    @Override
+    public void dispose() {
+        if (null != comm) {
+            comm.removeDataListener(dataListener);
+        }
+        super.dispose();
+    }
+
 }
\ No newline at end of file
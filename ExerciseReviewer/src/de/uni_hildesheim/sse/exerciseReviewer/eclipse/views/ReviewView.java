@@ -661,7 +661,7 @@ public class ReviewView extends ViewPart implements IPathFactory {
         if (null != task) {
             labelProject.setText(task.getName() + " (" + userName + ")");
             try {
-                ReviewCommunication comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+                ReviewCommunication comm = ReviewUtils.getReviewCommunication();
                 maxCredits = task.getPoints();
                 StringBuilder builder = new StringBuilder("");
                 List<String> realUsers = comm.getRealUsers(userName);
@@ -1077,11 +1077,11 @@ public class ReviewView extends ViewPart implements IPathFactory {
                     Assessment assessment = ((ExerciseReviewerProtocol) Activator.getProtocol())
                         .getAssessmentForSubmission(project.getName());
                     if (null != assessment) {
+                        assessment.setAchievedPoints(creditValue);
+                        assessment.setFullReviewComment(reviewText);
                         Review review = new Review(assessment);
-                        review.getAssessment().setAchievedPoints(creditValue);
-                        review.getAssessment().setFullReviewComment(reviewText);
                        
-                        ReviewCommunication comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+                        ReviewCommunication comm = ReviewUtils.getReviewCommunication();
                         
                         // Store (temporary) result on management server
                         comm.submitReview(task, review);
@@ -1096,7 +1096,7 @@ public class ReviewView extends ViewPart implements IPathFactory {
                         // Upload review.txt if "submit" result was pressed
                         if (submitToRepository) {
                             if (ReviewUtils.submitProject(project, task)) {
-                                review.setSubmittedToServer();
+                                comm.markSubmitted(task, review);
                             }
                         }
                         ReviewUtils.updateDecorator();
@@ -19,6 +19,7 @@ import org.eclipse.swt.layout.FillLayout;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.FileDialog;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Menu;
@@ -32,11 +33,12 @@ import org.eclipse.ui.part.ViewPart;
 
 import de.uni_hildesheim.sse.exerciseLib.RealUser;
 import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewCommunication;
+import de.uni_hildesheim.sse.exerciseReviewer.core.ReviewDataListener;
 import de.uni_hildesheim.sse.exerciseReviewer.core.plugins.ServerAuthentication;
+import de.uni_hildesheim.sse.exerciseReviewer.eclipse.ReviewUtils;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.Utils;
 import de.uni_hildesheim.sse.exerciseReviewer.eclipse.dialogs.EditRealUser;
 import de.uni_hildesheim.sse.exerciseSubmitter.Activator;
-import de.uni_hildesheim.sse.exerciseSubmitter.configuration.IConfiguration;
 import de.uni_hildesheim.sse.exerciseSubmitter.eclipse.util.GuiUtils;
 import de.uni_hildesheim.sse.exerciseSubmitter.submission.
     CommunicationException;
@@ -78,6 +80,13 @@ public class UsersView extends ViewPart {
      */
     private ReviewCommunication comm;
 
+    /**
+     * Stores the listener refreshing this view when the users change.
+     * 
+     * @since 2.2
+     */
+    private ReviewDataListener dataListener = new DataListener();
+
     /**
      * Stores the delete user action.
      * 
@@ -139,7 +148,7 @@ public class UsersView extends ViewPart {
         scrollPanel.setContent(panel);
 
         try {
-            comm = ReviewCommunication.getInstance(IConfiguration.INSTANCE, null);
+            comm = ReviewUtils.getReviewCommunication();
         } catch (CommunicationException e) {
         }
         
@@ -192,6 +201,45 @@ public class UsersView extends ViewPart {
         panel.setSize(panel.computeSize(SWT.DEFAULT, SWT.DEFAULT));
         ServerAuthentication.initialize();
         fillTable();
+        if (null != comm) {
+            comm.addDataListener(dataListener);
+        }
+    }
+
+    /**
+     * Refreshes the table when the users change, e.g. as the underlying
+     * files were changed by other programs.
+     * 
+     * @author Holger Eichelberger
+     * @since 2.2
+     * @version 2.2
+     */
+    private class DataListener implements ReviewDataListener {
+
+        @Override
+        public void usersChanged() {
+            Display.getDefault().asyncExec(new Runnable() {
+
+                @Override
+                public void run() {
+                    if (!table.isDisposed()) {
+                        fillTable();
+                    }
+                }
+
+            });
+        }
+
+        @Override
+        public void reviewsChanged() {
+            // not shown in this view
+        }
+
+        @Override
+        public void writeFailed(CommunicationException exception) {
+            // reported once for all views, see ReviewUtils
+        }
+
     }
     
     /**
@@ -455,4 +503,12 @@ public class UsersView extends ViewPart {
         viewer.getControl().setFocus();
     }
 
+    @Override
+    public void dispose() {
+        if (null != comm) {
+            comm.removeDataListener(dataListener);
+        }
+        super.dispose();
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,158 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Tests {@link BinarySnapshot} via the snapshot methods of
+ * {@link ExerciseData}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class BinarySnapshotTest {
+
+    /**
+     * Writes the given data into a snapshot.
+     *
+     * @param data the data
+     * @return the snapshot
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private static byte[] write(ExerciseData data) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        data.storeSnapshot(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the given snapshot.
+     *
+     * @param users the users
+     * @param snapshot the snapshot
+     * @return the data read
+     * @throws IOException if the snapshot cannot be read
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    private static ExerciseData read(UserProvider users, byte[] snapshot)
+        throws IOException, CommunicationException {
+        ExerciseData result = new ExerciseData(users);
+        result.loadSnapshot(new ByteArrayInputStream(snapshot), false);
+        return result;
+    }
+
+    /**
+     * Tests writing and reading a snapshot.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRoundTrip() throws IOException, CommunicationException {
+        TestUsers users = new TestUsers(30);
+        ExerciseData data = TestData.create(users, 4, 30);
+        TestData.assertEqualReviews(users, data, read(users, write(data)));
+        ExerciseData empty = new ExerciseData(users);
+        TestData.assertEqualReviews(users, empty, read(users, write(empty)));
+    }
+
+    /**
+     * Tests writing and lazily reading a snapshot file.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLazyRoundTrip() throws IOException,
+        CommunicationException {
+        TestUsers users = new TestUsers(30);
+        ExerciseData data = TestData.create(users, 4, 30);
+        File file = File.createTempFile("reviews", ".snapshot");
+        try {
+            data.storeSnapshot(new FileOutputStream(file));
+            ExerciseData loaded = new ExerciseData(users);
+            loaded.loadSnapshot(new ReviewBodies(new CachedFile(file), 2),
+                false);
+            TestData.assertEqualReviews(users, data, loaded);
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests that reviews of unknown users are omitted.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testUnknownUsers() throws IOException,
+        CommunicationException {
+        ExerciseData data = TestData.create(new TestUsers(30), 2, 30);
+        TestUsers users = new TestUsers(10);
+        ExerciseData loaded = read(users, write(data));
+        TestData.assertEqualReviews(users, TestData.create(users, 2, 10),
+            loaded);
+        assertNull(loaded.getReview("ex0", "g20"));
+    }
+
+    /**
+     * Tests that corrupted counts and lengths are rejected by an
+     * {@link IOException} rather than by allocating huge arrays. Each
+     * position of the snapshot is overwritten by a large number.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testCorruptedCounts() throws IOException,
+        CommunicationException {
+        TestUsers users = new TestUsers(10);
+        byte[] snapshot = write(TestData.create(users, 3, 10));
+        int failed = 0;
+        for (int pos = 8; pos + 4 <= snapshot.length; pos++) {
+            byte[] corrupted = snapshot.clone();
+            ByteBuffer.wrap(corrupted).putInt(pos, Integer.MAX_VALUE - 15);
+            try {
+                read(users, corrupted);
+            } catch (IOException e) {
+                failed++;
+            }
+        }
+        if (0 == failed) {
+            fail("corruption not detected");
+        }
+        try {
+            read(users, new byte[] {0x45, 0x52, 0x42});
+            fail("truncated snapshot not detected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
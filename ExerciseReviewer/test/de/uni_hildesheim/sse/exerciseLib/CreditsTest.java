@@ -0,0 +1,109 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Credits} and the fixed-point credits of {@link Review}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class CreditsTest {
+
+    /**
+     * Tests parsing textual credits.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testParse() {
+        assertEquals(0, Credits.parse("0"));
+        assertEquals(120, Credits.parse("12"));
+        assertEquals(125, Credits.parse("12.5"));
+        assertEquals(125, Credits.parse("12,5"));
+        assertEquals(125, Credits.parse("+12.5"));
+        assertEquals(-125, Credits.parse("-12.5"));
+        assertEquals(5, Credits.parse(".5"));
+        assertEquals(120, Credits.parse("12."));
+        assertEquals(13, Credits.parse("1.25"));
+        assertEquals(12, Credits.parse("1.249"));
+        assertEquals(-13, Credits.parse("-1.25"));
+    }
+
+    /**
+     * Tests that invalid credits are rejected.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testParseInvalid() {
+        String[] invalid = {"", "-", ".", "1.2.3", "1,2.3", "a", "1e3",
+            "1 ", "99999999999999999999999"};
+        for (String text : invalid) {
+            try {
+                Credits.parse(text);
+                fail("accepted \"" + text + "\"");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Tests writing and formatting credits.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testWriteAndFormat() throws IOException {
+        long[] values = {0, 5, 10, 125, -125, -5, 1234567890123L};
+        String[] texts = {"0.0", "0.5", "1.0", "12.5", "-12.5", "-0.5",
+            "123456789012.3"};
+        for (int v = 0; v < values.length; v++) {
+            StringWriter out = new StringWriter();
+            Credits.write(values[v], out);
+            assertEquals(texts[v], out.toString());
+            assertEquals(texts[v], Credits.format(values[v]));
+            assertEquals(values[v], Credits.parse(texts[v]));
+        }
+    }
+
+    /**
+     * Tests the conversion from and to floating point numbers.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testConversion() {
+        assertEquals(125, Credits.toFixedPoint(12.5));
+        assertEquals(3, Credits.toFixedPoint(0.1 + 0.2));
+        assertEquals(-125, Credits.toFixedPoint(-12.5));
+        assertEquals(12.5, Credits.toDouble(125), 0);
+    }
+
+    /**
+     * Tests that a loaded review returns the stored fixed-point credits
+     * without converting them to a floating point number.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testReviewCredits() {
+        long large = (1L << 55) + 1;
+        Review review = new Review("g1", large, "text");
+        assertEquals(large, review.getCreditsFixedPoint());
+        review = new Review("g1", 15, "text");
+        assertEquals(15, review.getCreditsFixedPoint());
+        assertEquals(1.5, review.getCredits(), 0);
+    }
+
+}
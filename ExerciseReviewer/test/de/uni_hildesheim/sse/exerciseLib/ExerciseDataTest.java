@@ -0,0 +1,294 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Tests reading the tabulator-separated file of {@link ExerciseData}, in
+ * particular that parallel parsing matches sequential parsing, and
+ * merging exercise data.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ExerciseDataTest {
+
+    /**
+     * Stores the number of users, large enough to split the file into
+     * several ranges for parallel parsing.
+     *
+     * @since 2.2
+     */
+    private static final int USERS = 3000;
+
+    /**
+     * Stores the users.
+     *
+     * @since 2.2
+     */
+    private TestUsers users = new TestUsers(USERS);
+
+    /**
+     * Returns the tabulator-separated file of the test data.
+     *
+     * @return the file contents
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private String createFile() throws IOException {
+        StringWriter out = new StringWriter();
+        TestData.create(users, 5, USERS).store(out, false);
+        return out.toString();
+    }
+
+    /**
+     * Asserts that two record lists are equal.
+     *
+     * @param expected the expected records
+     * @param actual the actual records
+     *
+     * @since 2.2
+     */
+    private static void assertEqualRecords(List<ReviewRecord> expected,
+        List<ReviewRecord> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int r = 0; r < expected.size(); r++) {
+            ReviewRecord record = expected.get(r);
+            ReviewRecord other = actual.get(r);
+            assertEquals(record.getUserName(), other.getUserName());
+            assertEquals(record.getExercise().getName(),
+                other.getExercise().getName());
+            assertEquals(record.getCredits(), other.getCredits());
+            assertEquals(record.getText(), other.getText());
+            assertEquals(record.isSubmitted(), other.isSubmitted());
+            assertEquals(record.getTimestamp(), other.getTimestamp());
+        }
+    }
+
+    /**
+     * Tests that parsing a file larger than a parallel block in parallel
+     * returns the same records in the same order as sequential parsing.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testParallelMatchesSequential() throws IOException,
+        CommunicationException {
+        String file = createFile();
+        assertTrue(file.length() > 2 * 64 * 1024);
+        ExerciseData sequential = new ExerciseData(users);
+        List<ReviewRecord> expected = sequential.readRecords(
+            new StringReader(file), false);
+        ExerciseData parallel = new ExerciseData(users);
+        List<ReviewRecord> actual = parallel.readRecordsParallel(
+            new StringReader(file), false);
+        assertTrue(expected.size() > USERS);
+        assertEqualRecords(expected, actual);
+        assertEquals(sequential.getAllExcerciseTasks(),
+            parallel.getAllExcerciseTasks());
+
+        parallel.addReviews(actual);
+        TestData.assertEqualReviews(users, TestData.create(users, 5, USERS),
+            parallel);
+    }
+
+    /**
+     * Tests that parallel parsing omits rows of unknown users as
+     * sequential parsing does and fails in the same way if unknown users
+     * shall be reported.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testUnknownUsers() throws IOException,
+        CommunicationException {
+        String file = createFile();
+        int pos = file.indexOf("\ng2900\t") + 1;
+        file = file.substring(0, pos) + "x" + file.substring(pos);
+        ExerciseData data = new ExerciseData(users);
+        List<ReviewRecord> expected = data.readRecords(
+            new StringReader(file), false);
+        data = new ExerciseData(users);
+        assertEqualRecords(expected, data.readRecordsParallel(
+            new StringReader(file), false));
+
+        String sequentialMessage = null;
+        try {
+            new ExerciseData(users).readRecords(new StringReader(file), true);
+            fail("unknown user not reported");
+        } catch (CommunicationException e) {
+            sequentialMessage = e.getMessage();
+        }
+        try {
+            new ExerciseData(users).readRecordsParallel(
+                new StringReader(file), true);
+            fail("unknown user not reported");
+        } catch (CommunicationException e) {
+            assertEquals(sequentialMessage, e.getMessage());
+        }
+    }
+
+    /**
+     * Creates a review.
+     *
+     * @param user the number of the user
+     * @param credits the credits in tenths
+     * @param text the review text
+     * @param timestamp the timestamp, <code>0</code> for unversioned
+     * @return the review
+     *
+     * @since 2.2
+     */
+    private static Review createReview(int user, long credits, String text,
+        long timestamp) {
+        Review review = new Review(TestUsers.getName(user), credits, text);
+        review.setTimestamp(timestamp);
+        return review;
+    }
+
+    /**
+     * Creates exercise data with a single exercise.
+     *
+     * @param provider the users
+     * @param maxCredits the maximum credits of the exercise
+     * @param reviews the reviews of the exercise
+     * @return the data
+     *
+     * @since 2.2
+     */
+    private static ExerciseData createData(UserProvider provider,
+        double maxCredits, Review... reviews) {
+        ExerciseData data = new ExerciseData(provider);
+        Exercise exercise = new Exercise("ex", maxCredits);
+        data.addExercise(exercise);
+        for (Review review : reviews) {
+            exercise.addReview(review);
+        }
+        return data;
+    }
+
+    /**
+     * Tests that merging keeps the newer review of each cell, keeps
+     * existing unversioned reviews, ignores unknown users and reports the
+     * merged cells.
+     *
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testMergeLastWriterWins() throws CommunicationException {
+        TestUsers users = new TestUsers(10);
+        ExerciseData target = createData(users, 10,
+            createReview(1, 10, "old", 10), createReview(2, 20, "keep", 30),
+            createReview(3, 30, "legacy", 0), createReview(5, 50, "same", 7));
+        ExerciseData source = createData(users, 12,
+            createReview(1, 15, "new", 20), createReview(2, 25, "older", 25),
+            createReview(3, 35, "other legacy", 0),
+            createReview(4, 40, "added", 5), createReview(5, 50, "same", 8),
+            createReview(42, 0, "unknown", 50));
+        MergeReport report = target.merge(source);
+        assertTrue(report.isMerged());
+        assertEquals("new", target.getReview("ex", "g1").getReview());
+        assertEquals(15, target.getReview("ex", "g1").getCreditsFixedPoint());
+        assertEquals(20, target.getReview("ex", "g1").getTimestamp());
+        assertEquals("keep", target.getReview("ex", "g2").getReview());
+        assertEquals("legacy", target.getReview("ex", "g3").getReview());
+        assertEquals("added", target.getReview("ex", "g4").getReview());
+        assertEquals(8, target.getReview("ex", "g5").getTimestamp());
+        assertNull(target.getReview("ex", "g42"));
+        assertEquals(120, target.getExercise("ex").getMaxCreditsFixedPoint());
+        assertEquals("[ex/g4]", report.getAdded().toString());
+        assertEquals("[ex/g1, ex/g2, ex/g3]",
+            report.getConflicting().toString());
+        assertEquals("[ex/g42, ex/g5]", report.getSkipped().toString());
+    }
+
+    /**
+     * Creates exercise data with random versions of the same cells.
+     *
+     * @param provider the users
+     * @param seed the seed of the random numbers
+     * @return the data
+     *
+     * @since 2.2
+     */
+    private static ExerciseData createRandomData(UserProvider provider,
+        long seed) {
+        Random random = new Random(seed);
+        ExerciseData data = new ExerciseData(provider);
+        for (int e = 0; e < 3; e++) {
+            Exercise exercise = new Exercise("ex" + e, 10);
+            data.addExercise(exercise);
+            for (int u = 0; u < 20; u++) {
+                if (random.nextInt(4) > 0) {
+                    // few timestamps and texts to provoke ties
+                    Review review = createReview(u, random.nextInt(3),
+                        "text " + random.nextInt(3), random.nextInt(3));
+                    if (random.nextBoolean()) {
+                        review.setSubmittedToServer();
+                    }
+                    exercise.addReview(review);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Tests that merging versioned data is commutative and idempotent,
+     * i.e. that all replicas agree on the winners including ties.
+     *
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testMergeCommutative() throws CommunicationException {
+        TestUsers users = new TestUsers(20);
+        for (long seed = 0; seed < 20; seed++) {
+            ExerciseData first = createRandomData(users, 2 * seed);
+            first.merge(createRandomData(users, 2 * seed + 1));
+            ExerciseData second = createRandomData(users, 2 * seed + 1);
+            second.merge(createRandomData(users, 2 * seed));
+            assertFalse(first.merge(createRandomData(users, 2 * seed + 1))
+                .isMerged());
+            // unversioned cells keep the existing review by design
+            for (int e = 0; e < 3; e++) {
+                Exercise one = first.getExercise("ex" + e);
+                Exercise two = second.getExercise("ex" + e);
+                for (int u = 0; u < 20; u++) {
+                    Review review = one.getReview(TestUsers.getName(u));
+                    if (null != review && 0 == review.getTimestamp()) {
+                        one.removeReview(review.getUserName());
+                        two.removeReview(review.getUserName());
+                    }
+                }
+            }
+            TestData.assertEqualReviews(users, first, second);
+        }
+    }
+
+}
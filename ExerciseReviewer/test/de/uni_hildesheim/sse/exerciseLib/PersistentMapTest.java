@@ -0,0 +1,133 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link PersistentMap}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class PersistentMapTest {
+
+    /**
+     * Asserts that a map is balanced and contains the same mappings in
+     * the same order as the expected map.
+     *
+     * @param expected the expected mappings
+     * @param map the map to check
+     *
+     * @since 2.2
+     */
+    private static void assertMap(TreeMap<Integer, String> expected,
+        PersistentMap<Integer, String> map) {
+        assertEquals(expected.size(), map.size());
+        // maximum height of an AVL tree
+        double bound = 1.45 * Math.log(expected.size() + 2) / Math.log(2);
+        assertTrue("height " + map.height(), map.height() <= bound);
+        Iterator<Map.Entry<Integer, String>> iter = map.entries();
+        for (Map.Entry<Integer, String> entry : expected.entrySet()) {
+            assertTrue(iter.hasNext());
+            Map.Entry<Integer, String> actual = iter.next();
+            assertEquals(entry.getKey(), actual.getKey());
+            assertEquals(entry.getValue(), actual.getValue());
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        assertTrue(!iter.hasNext());
+        assertEquals(new ArrayList<Integer>(expected.keySet()),
+            new ArrayList<Integer>(map.keys()));
+        assertEquals(new ArrayList<String>(expected.values()),
+            new ArrayList<String>(map.values()));
+    }
+
+    /**
+     * Tests that ascending and descending insertions keep the tree
+     * balanced.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testBalance() {
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        PersistentMap<Integer, String> map = PersistentMap.empty();
+        assertMap(expected, map);
+        for (int i = 0; i < 1000; i++) {
+            expected.put(i, "v" + i);
+            map = map.put(i, "v" + i);
+        }
+        assertMap(expected, map);
+        for (int i = -1; i >= -1000; i--) {
+            expected.put(i, "v" + i);
+            map = map.put(i, "v" + i);
+        }
+        assertMap(expected, map);
+    }
+
+    /**
+     * Tests removing mappings in random order.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRemove() {
+        TreeMap<Integer, String> expected = new TreeMap<Integer, String>();
+        PersistentMap<Integer, String> map = PersistentMap.empty();
+        List<Integer> keys = new ArrayList<Integer>();
+        for (int i = 0; i < 2000; i++) {
+            keys.add(i);
+            expected.put(i, "v" + i);
+            map = map.put(i, "v" + i);
+        }
+        Collections.shuffle(keys, new Random(42));
+        for (int k = 0; k < keys.size(); k++) {
+            Integer key = keys.get(k);
+            expected.remove(key);
+            map = map.remove(key);
+            assertNull(map.get(key));
+            if (0 == k % 250) {
+                assertMap(expected, map);
+            }
+        }
+        assertMap(expected, map);
+        assertSame(map, map.remove(5));
+    }
+
+    /**
+     * Tests that modifications do not change earlier versions.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testPersistence() {
+        PersistentMap<Integer, String> map = PersistentMap.empty();
+        for (int i = 0; i < 100; i++) {
+            map = map.put(i, "v" + i);
+        }
+        PersistentMap<Integer, String> replaced = map.put(50, "new");
+        PersistentMap<Integer, String> removed = map.remove(60);
+        assertEquals("v50", map.get(50));
+        assertEquals("new", replaced.get(50));
+        assertEquals("v60", map.get(60));
+        assertNull(removed.get(60));
+        assertEquals(100, map.size());
+        assertEquals(100, replaced.size());
+        assertEquals(99, removed.size());
+        String value = map.get(10);
+        assertSame(map, map.put(10, value));
+    }
+
+}
@@ -0,0 +1,125 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests reading and writing the real users file of {@link RealUser}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class RealUserTest {
+
+    /**
+     * Asserts the data of a real user.
+     *
+     * @param user the user to check
+     * @param name the expected name
+     * @param email the expected email
+     * @param group the expected group
+     * @param systemAccount the expected system account
+     *
+     * @since 2.2
+     */
+    private static void assertUser(RealUser user, String name, String email,
+        String group, String systemAccount) {
+        assertEquals(name, user.getName());
+        assertEquals(email, user.getEmail());
+        assertEquals(group, user.getGroup());
+        assertEquals(systemAccount, user.getSystemAccount());
+    }
+
+    /**
+     * Tests reading lines with and without system accounts.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRead() throws IOException {
+        List<RealUser> users = RealUser.readRealUserList(new StringReader(
+            "g1\tAnna\tanna\ta@x.de\tBen\tben\tb@x.de\t\n"
+            + "g2\tCarl\tc@x.de\tDora\tdora\td@x.de\t\n"
+            + "\n"
+            + "g3\tEve\n"));
+        assertEquals(5, users.size());
+        assertUser(users.get(0), "Anna", "a@x.de", "g1", "anna");
+        assertUser(users.get(1), "Ben", "b@x.de", "g1", "ben");
+        assertUser(users.get(2), "Carl", "c@x.de", "g2", null);
+        assertUser(users.get(3), "Dora", "d@x.de", "g2", "dora");
+        assertUser(users.get(4), "Eve", null, "g3", null);
+    }
+
+    /**
+     * Tests that users written with and without system account are read
+     * back unchanged.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        List<RealUser> users = new ArrayList<RealUser>();
+        users.add(new RealUser("Anna", "a@x.de", "g1", "anna"));
+        users.add(new RealUser("Ben", "b@x.de", "g1", null));
+        users.add(new RealUser("Carl", "c@x.de", "g1", "carl"));
+        users.add(new RealUser("Dora", "d@x.de", "g2", ""));
+        StringWriter out = new StringWriter();
+        RealUser.writeRealUserList(users, out);
+        List<RealUser> read = RealUser.readRealUserList(
+            new StringReader(out.toString()));
+        assertEquals(users.size(), read.size());
+        for (int u = 0; u < users.size(); u++) {
+            RealUser user = users.get(u);
+            String account = user.getSystemAccount();
+            assertUser(read.get(u), user.getName(), user.getEmail(),
+                user.getGroup(), "".equals(account) ? null : account);
+        }
+    }
+
+    /**
+     * Tests reading the users file incrementally.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testReadChanges() throws IOException {
+        RowDigests digests = new RowDigests(0);
+        Map<String, List<RealUser>> rows =
+            new HashMap<String, List<RealUser>>();
+        String file = "g1\tAnna\ta@x.de\t\ng2\tBen\tb@x.de\t\n";
+        assertEquals(2, RealUser.readRealUserList(new StringReader(file),
+            digests, rows));
+        assertEquals(2, rows.size());
+        assertEquals(0, RealUser.readRealUserList(new StringReader(file),
+            digests, rows));
+        file = "g1\tAnna\ta@x.de\t\ng2\tBen\tben\tb@y.de\t\n"
+            + "g3\tCarl\tc@x.de\t\n";
+        assertEquals(2, RealUser.readRealUserList(new StringReader(file),
+            digests, rows));
+        assertUser(rows.get("g2").get(0), "Ben", "b@y.de", "g2", "ben");
+        assertUser(rows.get("g3").get(0), "Carl", "c@x.de", "g3", null);
+        file = "g3\tCarl\tc@x.de\t\n";
+        assertEquals(2, RealUser.readRealUserList(new StringReader(file),
+            digests, rows));
+        assertEquals(1, rows.size());
+        assertNull(rows.get("g1"));
+    }
+
+}
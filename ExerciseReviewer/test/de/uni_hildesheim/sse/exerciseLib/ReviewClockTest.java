@@ -0,0 +1,71 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ReviewClock}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewClockTest {
+
+    /**
+     * Tests that timestamps increase strictly and follow the wall clock.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testTick() {
+        long before = System.currentTimeMillis();
+        long last = ReviewClock.tick();
+        for (int i = 0; i < 100000; i++) {
+            long next = ReviewClock.tick();
+            assertTrue(next > last);
+            last = next;
+        }
+        assertTrue(ReviewClock.toMillis(last) >= before);
+    }
+
+    /**
+     * Tests that timestamps observed from other replicas, e.g. with a
+     * clock running ahead, are never overtaken by local timestamps.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testObserve() {
+        long ahead = (System.currentTimeMillis() + 60000) << 16;
+        ReviewClock.observe(ahead);
+        assertTrue(ReviewClock.tick() > ahead);
+        ReviewClock.observe(1);
+        assertTrue(ReviewClock.tick() > ahead);
+    }
+
+    /**
+     * Tests parsing timestamps.
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testParse() {
+        assertEquals(0, ReviewClock.parse("0"));
+        assertEquals(Long.MAX_VALUE, ReviewClock.parse("9223372036854775807"));
+        String[] invalid = {"", "-1", "1a", "9223372036854775808",
+            "12345678901234567890"};
+        for (String text : invalid) {
+            try {
+                ReviewClock.parse(text);
+                fail("accepted \"" + text + "\"");
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+    }
+
+}
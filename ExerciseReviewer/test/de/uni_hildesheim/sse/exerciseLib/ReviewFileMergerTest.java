@@ -0,0 +1,177 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Tests {@link ReviewFileMerger}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewFileMergerTest {
+
+    /**
+     * Stores the users.
+     *
+     * @since 2.2
+     */
+    private TestUsers users = new TestUsers(10);
+
+    /**
+     * Creates a review file with a single exercise.
+     *
+     * @param maxCredits the maximum credits of the exercise
+     * @param texts the review texts of the users, <b>null</b> for no
+     *     review
+     * @param timestamps the timestamps of the reviews
+     * @return the contents of the file
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private String createFile(double maxCredits, String[] texts,
+        long[] timestamps) throws IOException {
+        ExerciseData data = new ExerciseData(users);
+        Exercise exercise = new Exercise("ex", maxCredits);
+        data.addExercise(exercise);
+        for (int u = 0; u < texts.length; u++) {
+            if (null != texts[u]) {
+                Review review = new Review(TestUsers.getName(u),
+                    10 * u + texts[u].length(), texts[u]);
+                review.setTimestamp(timestamps[u]);
+                exercise.addReview(review);
+            }
+        }
+        StringWriter out = new StringWriter();
+        data.store(out, false);
+        return out.toString();
+    }
+
+    /**
+     * Merges the given files.
+     *
+     * @param policy the merge policy
+     * @param files the contents of the files
+     * @return the merged data
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    private ExerciseData merge(MergePolicy policy, String... files)
+        throws IOException, CommunicationException {
+        ReviewFileMerger merger = new ReviewFileMerger(users, policy);
+        for (String file : files) {
+            merger.add(new StringReader(file));
+        }
+        ExerciseData result = new ExerciseData(users);
+        merger.mergeInto(result);
+        return result;
+    }
+
+    /**
+     * Tests that last-writer-wins merging does not depend on the order of
+     * the files and keeps the newer review per cell.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLastWriterWins() throws IOException,
+        CommunicationException {
+        String first = createFile(10,
+            new String[] {"a", "b", null, "same", "tie a"},
+            new long[] {5, 9, 0, 3, 7});
+        String second = createFile(12,
+            new String[] {"x", "y", "z", "same", "tie b"},
+            new long[] {6, 8, 4, 3, 7});
+        String third = createFile(8,
+            new String[] {null, null, null, null, "tie c"},
+            new long[] {0, 0, 0, 0, 7});
+        ExerciseData expected = merge(MergePolicy.LAST_WRITER_WINS,
+            first, second, third);
+        assertEquals("x", expected.getReview("ex", "g0").getReview());
+        assertEquals("b", expected.getReview("ex", "g1").getReview());
+        assertEquals("z", expected.getReview("ex", "g2").getReview());
+        assertEquals("same", expected.getReview("ex", "g3").getReview());
+        assertEquals("tie c", expected.getReview("ex", "g4").getReview());
+        assertEquals(120, expected.getExercise("ex")
+            .getMaxCreditsFixedPoint());
+        String[][] orders = {{first, third, second}, {second, first, third},
+            {second, third, first}, {third, first, second},
+            {third, second, first}};
+        for (String[] order : orders) {
+            TestData.assertEqualReviews(users, expected,
+                merge(MergePolicy.LAST_WRITER_WINS, order));
+        }
+    }
+
+    /**
+     * Tests the policies ignoring the timestamps.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testKeepAndReplace() throws IOException,
+        CommunicationException {
+        String first = createFile(10, new String[] {"a", "b"},
+            new long[] {5, 9});
+        String second = createFile(10, new String[] {"x", null},
+            new long[] {6, 0});
+        ExerciseData kept = merge(MergePolicy.KEEP_EXISTING, first, second);
+        assertEquals("a", kept.getReview("ex", "g0").getReview());
+        assertEquals("b", kept.getReview("ex", "g1").getReview());
+        ExerciseData replaced = merge(MergePolicy.REPLACE_EXISTING, second,
+            first);
+        assertEquals("a", replaced.getReview("ex", "g0").getReview());
+        assertEquals(5, replaced.getReview("ex", "g0").getTimestamp());
+    }
+
+    /**
+     * Tests the report of merging files into existing data as shown to
+     * the user.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testReport() throws IOException, CommunicationException {
+        ExerciseData target = merge(MergePolicy.LAST_WRITER_WINS,
+            createFile(10, new String[] {"a", "b", null},
+                new long[] {5, 9, 0}));
+        ReviewFileMerger merger = new ReviewFileMerger(users,
+            MergePolicy.LAST_WRITER_WINS);
+        merger.add(new StringReader(createFile(10,
+            new String[] {"a", "y", "z"}, new long[] {5, 3, 4})));
+        merger.add(new StringReader(createFile(10,
+            new String[] {"x", null, null}, new long[] {6, 0, 0})));
+        MergeReport report = merger.mergeInto(target);
+        assertTrue(report.isMerged());
+        assertEquals("[ex/g2]", report.getAdded().toString());
+        // conflict among the files and with the target
+        assertEquals("[ex/g0, ex/g0, ex/g1]",
+            report.getConflicting().toString());
+        assertEquals("x", target.getReview("ex", "g0").getReview());
+        assertEquals("b", target.getReview("ex", "g1").getReview());
+        assertEquals("z", target.getReview("ex", "g2").getReview());
+    }
+
+}
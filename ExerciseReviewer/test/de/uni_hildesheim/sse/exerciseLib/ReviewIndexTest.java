@@ -0,0 +1,295 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Tests {@link ReviewIndex}, in particular that corrupted rows are
+ * detected by the block checksums.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewIndexTest {
+
+    /**
+     * Stores the number of users, i.e. the rows span several blocks.
+     *
+     * @since 2.2
+     */
+    private static final int USERS = 3 * ReviewIndex.BLOCK_ROWS;
+
+    /**
+     * Stores the users.
+     *
+     * @since 2.2
+     */
+    private TestUsers users = new TestUsers(USERS);
+
+    /**
+     * Stores the data written to the reviews file.
+     *
+     * @since 2.2
+     */
+    private ExerciseData data = TestData.create(users, 3, USERS);
+
+    /**
+     * Stores the contents of the reviews file.
+     *
+     * @since 2.2
+     */
+    private byte[] reviews;
+
+    /**
+     * Stores the reviews file.
+     *
+     * @since 2.2
+     */
+    private File reviewsFile;
+
+    /**
+     * Stores the index file.
+     *
+     * @since 2.2
+     */
+    private File indexFile;
+
+    /**
+     * Writes the reviews file and its index.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Before
+    public void setUp() throws IOException {
+        StringWriter out = new StringWriter();
+        data.store(out, false);
+        reviews = out.toString().getBytes(Charset.defaultCharset());
+        reviewsFile = File.createTempFile("reviews", ".tsv");
+        indexFile = File.createTempFile("reviews", ".idx");
+        Files.write(reviewsFile.toPath(), reviews);
+        ReviewIndex.write(reviews, reviewsFile, indexFile);
+    }
+
+    /**
+     * Deletes the files.
+     *
+     * @since 2.2
+     */
+    @After
+    public void tearDown() {
+        reviewsFile.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * Overwrites a byte of the reviews file without changing its length
+     * and modification time, i.e. the index is still considered as
+     * current.
+     *
+     * @param pos the position of the byte
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private void corrupt(int pos) throws IOException {
+        long time = reviewsFile.lastModified();
+        RandomAccessFile file = new RandomAccessFile(reviewsFile, "rw");
+        try {
+            file.seek(pos);
+            file.write('#' == reviews[pos] ? '*' : '#');
+        } finally {
+            file.close();
+        }
+        reviewsFile.setLastModified(time);
+    }
+
+    /**
+     * Returns the position of a byte within the row of a user.
+     *
+     * @param user the name of the user
+     * @return the position after the user name
+     *
+     * @since 2.2
+     */
+    private int rowPosition(String user) {
+        byte[] row = ("\n" + user + "\t").getBytes(Charset.defaultCharset());
+        for (int pos = 0; pos + row.length <= reviews.length; pos++) {
+            if (Arrays.equals(row, Arrays.copyOfRange(reviews, pos,
+                pos + row.length))) {
+                return pos + row.length;
+            }
+        }
+        fail("no row for user " + user);
+        return -1;
+    }
+
+    /**
+     * Loads the reviews of the given users via the index.
+     *
+     * @param index the index
+     * @param names the names of the users
+     * @return the loaded data
+     * @throws IOException if reading fails
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    private ExerciseData load(ReviewIndex index, String... names)
+        throws IOException, CommunicationException {
+        Collection<String> selected = Arrays.asList(names);
+        ExerciseData result = new ExerciseData(users);
+        result.load(index, selected, true);
+        return result;
+    }
+
+    /**
+     * Asserts that reading the given users fails due to a checksum.
+     *
+     * @param index the index
+     * @param names the names of the users
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    private void assertCorrupted(ReviewIndex index, String... names)
+        throws CommunicationException {
+        try {
+            load(index, names);
+            fail("corruption not detected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Tests reading individual rows via the index.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRead() throws IOException, CommunicationException {
+        ReviewIndex index = ReviewIndex.open(reviewsFile, indexFile);
+        assertNotNull(index);
+        assertTrue(index.getUsers().contains("g0"));
+        index.verify();
+        // compare with reading all rows, i.e. in the platform encoding
+        ExerciseData all = new ExerciseData(users);
+        all.load(new FileReader(reviewsFile), true);
+        String[] names = {"g5", "g70", "g1"};
+        ExerciseData loaded = load(index, names);
+        for (String name : names) {
+            for (int e = 0; e < 3; e++) {
+                Review expected = all.getReview("ex" + e, name);
+                Review actual = loaded.getReview("ex" + e, name);
+                if (null == expected) {
+                    assertNull(actual);
+                } else {
+                    assertEquals(expected.getReview(), actual.getReview());
+                    assertEquals(expected.getTimestamp(),
+                        actual.getTimestamp());
+                }
+            }
+        }
+        assertNull(loaded.getReview("ex0", "g2"));
+    }
+
+    /**
+     * Tests that a corrupted row is detected by {@link ReviewIndex#verify()}
+     * and when reading rows of its block, while rows of other blocks can
+     * still be read.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testCorruptedRow() throws IOException,
+        CommunicationException {
+        List<String> rows = new ArrayList<String>(
+            ReviewIndex.open(reviewsFile, indexFile).getUsers());
+        int block = ReviewIndex.BLOCK_ROWS;
+        corrupt(rowPosition(rows.get(block + 3)));
+        ReviewIndex index = ReviewIndex.open(reviewsFile, indexFile);
+        assertNotNull(index);
+        try {
+            index.verify();
+            fail("corruption not detected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertCorrupted(index, rows.get(block + 3));
+        assertCorrupted(index, rows.get(block));
+        assertCorrupted(index, rows.get(0), rows.get(2 * block - 1));
+        load(index, rows.get(0), rows.get(block - 1), rows.get(2 * block));
+    }
+
+    /**
+     * Tests that corrupted header lines are detected.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testCorruptedHeader() throws IOException,
+        CommunicationException {
+        corrupt(1);
+        ReviewIndex index = ReviewIndex.open(reviewsFile, indexFile);
+        assertCorrupted(index, "g1");
+    }
+
+    /**
+     * Tests that an index is not used after the reviews file changed and
+     * that a corrupted index is rejected.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testOutdatedAndCorruptedIndex() throws IOException {
+        byte[] index = Files.readAllBytes(indexFile.toPath());
+        Files.write(indexFile.toPath(), Arrays.copyOf(index, 30));
+        try {
+            ReviewIndex.open(reviewsFile, indexFile);
+            fail("corruption not detected");
+        } catch (IOException e) {
+            // expected
+        }
+        Files.write(indexFile.toPath(), index);
+        Files.write(reviewsFile.toPath(), Arrays.copyOf(reviews,
+            reviews.length - 1));
+        assertNull(ReviewIndex.open(reviewsFile, indexFile));
+    }
+
+}
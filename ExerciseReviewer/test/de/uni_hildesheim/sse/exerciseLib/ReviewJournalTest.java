@@ -0,0 +1,231 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link ReviewJournal}, in particular replaying journals with
+ * incomplete records.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewJournalTest {
+
+    /**
+     * Stores the journal file.
+     *
+     * @since 2.2
+     */
+    private File file;
+
+    /**
+     * Creates a new (not existing) journal file.
+     *
+     * @throws IOException if creating the file fails
+     *
+     * @since 2.2
+     */
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("reviews", ".journal");
+        assertTrue(file.delete());
+    }
+
+    /**
+     * Deletes the journal file.
+     *
+     * @since 2.2
+     */
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    /**
+     * Creates the data to replay the journal on.
+     *
+     * @return the data with the exercise <code>ex</code>
+     *
+     * @since 2.2
+     */
+    private static ExerciseData createData() {
+        ExerciseData data = new ExerciseData(new TestUsers(10));
+        data.addExercise(new Exercise("ex", 10));
+        return data;
+    }
+
+    /**
+     * Creates a review.
+     *
+     * @param user the number of the user
+     * @param credits the credits in tenths
+     * @param text the review text
+     * @param timestamp the timestamp
+     * @return the review
+     *
+     * @since 2.2
+     */
+    private static Review createReview(int user, long credits, String text,
+        long timestamp) {
+        Review review = new Review(TestUsers.getName(user), credits, text);
+        review.setTimestamp(timestamp);
+        return review;
+    }
+
+    /**
+     * Appends text to the journal file as another program or a crash
+     * while appending would do.
+     *
+     * @param text the text to append
+     * @throws IOException if appending fails
+     *
+     * @since 2.2
+     */
+    private void appendRaw(String text) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Tests appending and replaying records.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testReplay() throws IOException {
+        ReviewJournal journal = new ReviewJournal(file);
+        journal.append("ex", createReview(1, 15, "good\ttabbed\nlines", 3));
+        Review submitted = createReview(2, 0, "\u00e4rger", 4);
+        submitted.setSubmittedToServer();
+        journal.append("ex", submitted);
+        journal.append("ex", createReview(1, 20, "better", 5));
+        journal.append("unknown", createReview(3, 20, "ignored", 6));
+        assertEquals(4, journal.getRecordCount());
+        journal.close();
+
+        ExerciseData data = createData();
+        journal = new ReviewJournal(file);
+        journal.replay(data);
+        assertEquals(3, journal.getRecordCount());
+        Review review = data.getReview("ex", "g1");
+        assertEquals("better", review.getReview());
+        assertEquals(20, review.getCreditsFixedPoint());
+        assertEquals(5, review.getTimestamp());
+        review = data.getReview("ex", "g2");
+        assertEquals("\u00e4rger", review.getReview());
+        assertTrue(review.isSubmittedToServer());
+        assertNull(data.getReview("ex", "g3"));
+        journal.close();
+    }
+
+    /**
+     * Tests that an incomplete last record is ignored and removed before
+     * the next record is appended, so that the next record is replayed.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testPartialLine() throws IOException {
+        ReviewJournal journal = new ReviewJournal(file);
+        journal.append("ex", createReview(1, 15, "first", 3));
+        journal.close();
+        appendRaw("ex\tg2\t1.0\tto");
+
+        ExerciseData data = createData();
+        journal = new ReviewJournal(file);
+        journal.replay(data);
+        assertEquals(1, journal.getRecordCount());
+        assertNotNull(data.getReview("ex", "g1"));
+        assertNull(data.getReview("ex", "g2"));
+        journal.append("ex", createReview(3, 10, "third", 4));
+        assertEquals(2, journal.getRecordCount());
+        journal.close();
+
+        data = createData();
+        journal = new ReviewJournal(file);
+        journal.replay(data);
+        assertEquals(2, journal.getRecordCount());
+        assertEquals("first", data.getReview("ex", "g1").getReview());
+        assertNull(data.getReview("ex", "g2"));
+        assertEquals("third", data.getReview("ex", "g3").getReview());
+        assertEquals(2, Files.readAllLines(file.toPath()).size());
+        journal.close();
+    }
+
+    /**
+     * Tests that malformed records are neither replayed nor counted.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testMalformedLines() throws IOException {
+        appendRaw("garbage\n\nex\tg1\tx\ttext\tfalse\t1\n"
+            + "ex\tg1\t1.0\ttext\tmaybe\t1\n"
+            + "ex\tg1\t1.0\ttext\tfalse\t1\textra\n"
+            + "ex\tg2\t1.0\tlegacy\tfalse\n");
+        ExerciseData data = createData();
+        ReviewJournal journal = new ReviewJournal(file);
+        journal.replay(data);
+        assertEquals(1, journal.getRecordCount());
+        assertNull(data.getReview("ex", "g1"));
+        assertEquals(0, data.getReview("ex", "g2").getTimestamp());
+        journal.close();
+    }
+
+    /**
+     * Tests resetting the journal to a mark, i.e. keeping the records
+     * appended after the mark.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testResetToMark() throws IOException {
+        ReviewJournal journal = new ReviewJournal(file);
+        journal.append("ex", createReview(1, 15, "first", 3));
+        long mark = journal.mark();
+        journal.append("ex", createReview(2, 15, "second", 4));
+        journal.reset(mark);
+        assertEquals(1, journal.getRecordCount());
+        journal.append("ex", createReview(3, 15, "third", 5));
+        journal.close();
+
+        ExerciseData data = createData();
+        journal = new ReviewJournal(file);
+        journal.replay(data);
+        assertEquals(2, journal.getRecordCount());
+        assertNull(data.getReview("ex", "g1"));
+        assertNotNull(data.getReview("ex", "g2"));
+        assertNotNull(data.getReview("ex", "g3"));
+        journal.reset();
+        assertEquals(0, journal.getRecordCount());
+        assertEquals(0, file.length());
+        journal.close();
+    }
+
+}
@@ -0,0 +1,117 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ReviewTextCodec}, in particular that masking and unmasking
+ * in a single pass yields the same results as the former replacements.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class ReviewTextCodecTest {
+
+    /**
+     * Masks a text via the codec.
+     *
+     * @param text the text to be masked
+     * @return the masked text
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private static String mask(String text) throws IOException {
+        StringWriter out = new StringWriter();
+        ReviewTextCodec.mask(text, out);
+        return out.toString();
+    }
+
+    /**
+     * Masks a text as done before the codec existed.
+     *
+     * @param text the text to be masked
+     * @return the masked text
+     *
+     * @since 2.2
+     */
+    private static String maskByReplace(String text) {
+        String result = text.replace("\n", "<*n*>").replace("\r", "<*r*>")
+            .replace("\t", "<*t*>");
+        if (0 == result.length()) {
+            result = ExerciseData.EMPTY_REVIEW;
+        }
+        return result;
+    }
+
+    /**
+     * Unmasks a text as done before the codec existed.
+     *
+     * @param text the text to be unmasked
+     * @return the unmasked text
+     *
+     * @since 2.2
+     */
+    private static String unmaskByReplace(String text) {
+        return text.replace("<*t*>", "\t").replace("<*n*>", "\n")
+            .replace("<*r*>", "\r");
+    }
+
+    /**
+     * Tests masking and unmasking selected texts.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testMask() throws IOException {
+        assertEquals(ExerciseData.EMPTY_REVIEW, mask(""));
+        assertEquals("plain", mask("plain"));
+        assertEquals("a<*t*>b<*n*>c<*r*><*n*>", mask("a\tb\nc\r\n"));
+        assertEquals("<*n*><*n*>", mask("\n\n"));
+        assertEquals("a\tb\nc\r\n", ReviewTextCodec.unmask(
+            "a<*t*>b<*n*>c<*r*><*n*>"));
+        assertEquals("<*x*><*\t", ReviewTextCodec.unmask("<*x*><*<*t*>"));
+        assertEquals("<*n*", ReviewTextCodec.unmask("<*n*"));
+        String plain = "no masks <* *> here";
+        assertSame(plain, ReviewTextCodec.unmask(plain));
+    }
+
+    /**
+     * Tests random texts over an alphabet of mask characters against the
+     * former replacements and for the round trip.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRandomTexts() throws IOException {
+        char[] alphabet = {'<', '*', '>', 'n', 'r', 't', '\n', '\r', '\t',
+            'a', '\u00e4'};
+        Random random = new Random(7);
+        for (int t = 0; t < 20000; t++) {
+            char[] chars = new char[random.nextInt(16)];
+            for (int c = 0; c < chars.length; c++) {
+                chars[c] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String text = new String(chars);
+            String masked = mask(text);
+            assertEquals(maskByReplace(text), masked);
+            assertEquals(unmaskByReplace(text),
+                ReviewTextCodec.unmask(text));
+            if (text.indexOf("<*") < 0 && text.length() > 0) {
+                assertEquals(text, ReviewTextCodec.unmask(masked));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,222 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+import de.uni_hildesheim.sse.exerciseSubmitter.submission.
+    CommunicationException;
+
+/**
+ * Tests {@link RowDigests} and reading the reviews file incrementally via
+ * {@link ExerciseData#loadChanges(java.io.Reader, RowDigests, boolean)}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class RowDigestsTest {
+
+    /**
+     * Stores the users.
+     *
+     * @since 2.2
+     */
+    private TestUsers users = new TestUsers(10);
+
+    /**
+     * Creates a review.
+     *
+     * @param user the name of the user
+     * @param text the review text
+     * @param timestamp the timestamp
+     * @return the review
+     *
+     * @since 2.2
+     */
+    private static Review createReview(String user, String text,
+        long timestamp) {
+        Review review = new Review(user, 10, text);
+        review.setTimestamp(timestamp);
+        return review;
+    }
+
+    /**
+     * Creates data with the exercises <code>ex0</code> and
+     * <code>ex1</code> and reviews for the users <code>g0</code> to
+     * <code>g3</code> with the timestamp <code>10</code>.
+     *
+     * @return the data
+     *
+     * @since 2.2
+     */
+    private ExerciseData createData() {
+        ExerciseData data = new ExerciseData(users);
+        for (int e = 0; e < 2; e++) {
+            Exercise exercise = new Exercise("ex" + e, 10);
+            data.addExercise(exercise);
+            for (int u = 0; u < 4; u++) {
+                exercise.addReview(createReview(TestUsers.getName(u),
+                    "review " + e + u, 10));
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Returns the reviews file of the given data.
+     *
+     * @param data the data
+     * @return the contents of the file
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private static String store(ExerciseData data) throws IOException {
+        StringWriter out = new StringWriter();
+        data.store(out, false);
+        return out.toString();
+    }
+
+    /**
+     * Tests that only changed rows are applied and that local changes
+     * newer than the baseline are kept.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLoadChanges() throws IOException,
+        CommunicationException {
+        ExerciseData file = createData();
+        RowDigests digests = new RowDigests(ExerciseData.HEADER_LINES);
+        ExerciseData data = new ExerciseData(users);
+        assertEquals(users.getAllKnownUsers().size(), data.loadChanges(
+            new StringReader(store(file)), digests, true));
+        assertTrue(digests.isIndexed());
+        TestData.assertEqualReviews(users, file, data);
+        digests.setBaseline(10);
+        assertEquals(0, data.loadChanges(new StringReader(store(file)),
+            digests, true));
+
+        // local change after the baseline, not in the file yet
+        data.getExercise("ex1").addReview(createReview("g2", "local", 20));
+        data.getExercise("ex0").addReview(createReview("g3", "local", 20));
+        // changes by another program
+        file.getExercise("ex0").addReview(createReview("g1", "changed", 12));
+        file.getExercise("ex1").removeReview("g2");
+        file.getExercise("ex0").removeReview("g0");
+        file.getExercise("ex1").removeReview("g0");
+        file.getExercise("ex1").addReview(createReview("g3", "new", 15));
+        assertEquals(4, data.loadChanges(new StringReader(store(file)),
+            digests, true));
+        assertEquals("changed", data.getReview("ex0", "g1").getReview());
+        assertEquals("local", data.getReview("ex1", "g2").getReview());
+        assertNull(data.getReview("ex0", "g0"));
+        assertNull(data.getReview("ex1", "g0"));
+        assertEquals("local", data.getReview("ex0", "g3").getReview());
+        assertEquals("new", data.getReview("ex1", "g3").getReview());
+        assertEquals("review 11", data.getReview("ex1", "g1").getReview());
+
+        // older change by another program
+        file.getExercise("ex0").addReview(createReview("g1", "older", 11));
+        assertEquals(1, data.loadChanges(new StringReader(store(file)),
+            digests, true));
+        assertEquals("changed", data.getReview("ex0", "g1").getReview());
+    }
+
+    /**
+     * Tests that removed rows remove the reviews not changed after the
+     * baseline.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRemovedRows() throws IOException,
+        CommunicationException {
+        ExerciseData file = createData();
+        RowDigests digests = new RowDigests(ExerciseData.HEADER_LINES);
+        ExerciseData data = new ExerciseData(users);
+        data.loadChanges(new StringReader(store(file)), digests, true);
+        digests.setBaseline(10);
+        data.getExercise("ex1").addReview(createReview("g1", "local", 20));
+        file.getExercise("ex0").removeReview("g1");
+        file.getExercise("ex1").removeReview("g1");
+        assertEquals(1, data.loadChanges(new StringReader(store(file)),
+            digests, true));
+        assertNull(data.getReview("ex0", "g1"));
+        assertEquals("local", data.getReview("ex1", "g1").getReview());
+    }
+
+    /**
+     * Tests that changed header lines are not applied.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testChangedHeader() throws IOException,
+        CommunicationException {
+        ExerciseData file = createData();
+        RowDigests digests = new RowDigests(ExerciseData.HEADER_LINES);
+        ExerciseData data = new ExerciseData(users);
+        data.loadChanges(new StringReader(store(file)), digests, true);
+        file.addExercise(new Exercise("ex2", 5));
+        file.getExercise("ex0").addReview(createReview("g1", "changed", 20));
+        assertTrue(data.loadChanges(new StringReader(store(file)),
+            digests, true) < 0);
+        assertEquals("review 01", data.getReview("ex0", "g1").getReview());
+        assertNull(data.getExercise("ex2"));
+        ExerciseData reloaded = new ExerciseData(users);
+        assertTrue(reloaded.loadChanges(new StringReader(store(file)),
+            new RowDigests(ExerciseData.HEADER_LINES), true) > 0);
+        assertEquals("changed", reloaded.getReview("ex0", "g1").getReview());
+    }
+
+    /**
+     * Tests that rows of unknown users are passed again until the users
+     * become known.
+     *
+     * @throws IOException shall not occur
+     * @throws CommunicationException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testUnknownUsers() throws IOException,
+        CommunicationException {
+        ExerciseData file = createData();
+        file.getExercise("ex0").addReview(createReview("g7", "later", 10));
+        String contents = store(file);
+        TestUsers known = new TestUsers(4);
+        RowDigests digests = new RowDigests(ExerciseData.HEADER_LINES);
+        ExerciseData data = new ExerciseData(known);
+        assertTrue(data.loadChanges(new StringReader(contents), digests,
+            false) > 0);
+        assertNull(data.getReview("ex0", "g7"));
+        known.addUser(7);
+        assertEquals(1, data.loadChanges(new StringReader(contents),
+            digests, false));
+        assertEquals("later", data.getReview("ex0", "g7").getReview());
+        assertEquals(0, data.loadChanges(new StringReader(contents),
+            digests, false));
+        assertFalse(new RowDigests(0).isIndexed());
+        assertTrue(RowDigests.index(new StringReader(contents),
+            ExerciseData.HEADER_LINES, 0).isIndexed());
+    }
+
+}
@@ -0,0 +1,235 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests {@link SnapshotPartitions} via the snapshot methods of
+ * {@link ExerciseData}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class SnapshotPartitionsTest {
+
+    /**
+     * Stores the directory of the partitions.
+     *
+     * @since 2.2
+     */
+    private File directory;
+
+    /**
+     * Stores the users.
+     *
+     * @since 2.2
+     */
+    private TestUsers users = new TestUsers(30);
+
+    /**
+     * Creates a new (not existing) directory for the partitions.
+     *
+     * @throws IOException if creating the directory fails
+     *
+     * @since 2.2
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = File.createTempFile("reviews", ".parts");
+        assertTrue(directory.delete());
+    }
+
+    /**
+     * Deletes the partitions.
+     *
+     * @since 2.2
+     */
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if (null != files) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Writes the given data into the partitions.
+     *
+     * @param data the data
+     * @param exported the timestamp of the latest exported review
+     * @return the partitions
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private SnapshotPartitions write(ExerciseData data, long exported)
+        throws IOException {
+        SnapshotPartitions partitions = new SnapshotPartitions(directory, 0);
+        data.storeSnapshot(partitions, exported);
+        partitions.commit();
+        return partitions;
+    }
+
+    /**
+     * Reads the partitions.
+     *
+     * @param data the data to read into
+     * @param cacheSize the number of cached texts per segment
+     * @return <code>data</code>
+     * @throws IOException if the partitions cannot be read
+     *
+     * @since 2.2
+     */
+    private ExerciseData read(ExerciseData data, int cacheSize)
+        throws IOException {
+        data.loadSnapshot(new SnapshotPartitions(directory, cacheSize));
+        return data;
+    }
+
+    /**
+     * Tests writing and reading partitions completely and lazily.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        ExerciseData data = TestData.create(users, 4, 30);
+        SnapshotPartitions partitions = write(data, 0);
+        assertTrue(partitions.exists());
+        TestData.assertEqualReviews(users, data,
+            read(new ExerciseData(users), 0));
+        TestData.assertEqualReviews(users, data,
+            read(new ExerciseData(users), 2));
+    }
+
+    /**
+     * Tests reading selected exercises only.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testSelectedExercises() throws IOException {
+        ExerciseData data = TestData.create(users, 4, 30);
+        write(data, 0);
+        ExerciseData loaded = read(new ExerciseData(users,
+            Collections.singleton("ex2")), 0);
+        assertEquals(Collections.singletonList("ex2"),
+            loaded.getAllExcerciseTasks());
+        assertEquals(data.getExercise("ex2").getReviewCount(),
+            loaded.getExercise("ex2").getReviewCount());
+        assertNull(loaded.getExercise("ex1"));
+    }
+
+    /**
+     * Tests recovering the reviews stored after the export.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testRecover() throws IOException {
+        ExerciseData data = TestData.create(users, 2, 30);
+        long exported = data.getLatestTimestamp();
+        Review review = new Review("g1", 50, "after export");
+        review.setTimestamp(exported + 1);
+        data.getExercise("ex1").addReview(review);
+        write(data, exported);
+        ExerciseData loaded = TestData.create(users, 2, 30);
+        assertEquals(1, loaded.loadSnapshotChanges(
+            new SnapshotPartitions(directory, 0)));
+        assertEquals("after export", loaded.getReview("ex1", "g1")
+            .getReview());
+    }
+
+    /**
+     * Tests that an exercise the segment of which cannot be read is marked
+     * as unreadable and remains unloaded.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testUnreadableSegment() throws IOException {
+        ExerciseData data = TestData.create(users, 2, 30);
+        write(data, 0);
+        ExerciseData loaded = read(new ExerciseData(users), 0);
+        for (File file : directory.listFiles()) {
+            if (!"manifest".equals(file.getName())) {
+                assertTrue(file.delete());
+            }
+        }
+        Exercise exercise = loaded.getExercise("ex1");
+        assertNull(exercise.getLoadFailure());
+        assertNull(exercise.getReview("g1"));
+        assertNotNull(exercise.getLoadFailure());
+        assertFalse(exercise.isLoaded());
+        try {
+            exercise.load();
+            fail("unreadable segment not detected");
+        } catch (IOException e) {
+            // expected
+        }
+        assertNotNull(exercise.getLoadFailure());
+    }
+
+    /**
+     * Tests that a corrupted manifest is rejected by an
+     * {@link IOException} rather than by allocating huge arrays.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testCorruptedManifest() throws IOException {
+        write(TestData.create(users, 3, 30), 0);
+        File manifest = new File(directory, "manifest");
+        byte[] contents = Files.readAllBytes(manifest.toPath());
+        int failed = 0;
+        for (int pos = 8; pos + 4 <= contents.length; pos++) {
+            byte[] corrupted = contents.clone();
+            ByteBuffer.wrap(corrupted).putInt(pos, Integer.MAX_VALUE - 15);
+            Files.write(manifest.toPath(), corrupted);
+            try {
+                read(new ExerciseData(users), 0);
+            } catch (IOException e) {
+                failed++;
+            }
+        }
+        if (0 == failed) {
+            fail("corruption not detected");
+        }
+        Files.write(manifest.toPath(), new byte[] {1, 2});
+        try {
+            read(new ExerciseData(users), 0);
+            fail("truncated manifest not detected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,106 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+
+/**
+ * Creates and compares exercise data for tests.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class TestData {
+
+    /**
+     * Prevents this class from being instantiated.
+     *
+     * @since 2.2
+     */
+    private TestData() {
+    }
+
+    /**
+     * Creates exercise data with reviews for some users per exercise. The
+     * reviews differ in credits, texts (including shared texts, separators
+     * and non-ASCII characters), submission state and timestamps.
+     *
+     * @param users the users, the exercises are reviewed for the first
+     *     <code>userCount</code> users
+     * @param exerciseCount the number of exercises <code>ex0</code>, ...
+     * @param userCount the number of users
+     * @return the data
+     *
+     * @since 2.2
+     */
+    static ExerciseData create(UserProvider users, int exerciseCount,
+        int userCount) {
+        ExerciseData data = new ExerciseData(users);
+        for (int e = 0; e < exerciseCount; e++) {
+            Exercise exercise = new Exercise("ex" + e, 10 + e);
+            data.addExercise(exercise);
+            for (int u = e % 2; u < userCount; u += 1 + e % 3) {
+                String text;
+                if (0 == u % 4) {
+                    text = "shared";
+                } else {
+                    text = "review " + e + "/" + u + "\tf\u00fcr\nall";
+                }
+                Review review = new Review(TestUsers.getName(u),
+                    (e * 7 + u) % 100, text);
+                if (0 == u % 3) {
+                    review.setSubmittedToServer();
+                }
+                review.setTimestamp(1 + e * 1000 + u);
+                exercise.addReview(review);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Asserts that two exercise data structures contain equal exercises
+     * and reviews.
+     *
+     * @param users the users to compare the reviews for
+     * @param expected the expected data
+     * @param actual the actual data
+     *
+     * @since 2.2
+     */
+    static void assertEqualReviews(UserProvider users,
+        ExerciseData expected, ExerciseData actual) {
+        assertEquals(expected.getAllExcerciseTasks(),
+            actual.getAllExcerciseTasks());
+        for (Iterator<Exercise> iter = expected.exercises();
+            iter.hasNext();) {
+            Exercise exercise = iter.next();
+            String task = exercise.getName();
+            Exercise other = actual.getExercise(task);
+            assertEquals(exercise.getMaxCreditsFixedPoint(),
+                other.getMaxCreditsFixedPoint());
+            assertEquals(exercise.getReviewCount(), other.getReviewCount());
+            for (User user : users.submissionUsers()) {
+                String name = user.getUserName();
+                Review review = exercise.getReview(name);
+                Review loaded = other.getReview(name);
+                if (null == review) {
+                    assertNull(task + " " + name, loaded);
+                } else {
+                    assertNotNull(task + " " + name, loaded);
+                    assertEquals(review.getCreditsFixedPoint(),
+                        loaded.getCreditsFixedPoint());
+                    assertEquals(review.getReview(), loaded.getReview());
+                    assertEquals(review.isSubmittedToServer(),
+                        loaded.isSubmittedToServer());
+                    assertEquals(review.getTimestamp(),
+                        loaded.getTimestamp());
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Provides a fixed number of users (groups) named <code>g0</code>,
+ * <code>g1</code>, ... with one real user each for tests.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+class TestUsers implements UserProvider {
+
+    /**
+     * Stores the users by name.
+     *
+     * @since 2.2
+     */
+    private Map<String, User> users = new TreeMap<String, User>();
+
+    /**
+     * Creates the given number of users.
+     *
+     * @param count the number of users
+     *
+     * @since 2.2
+     */
+    TestUsers(int count) {
+        for (int u = 0; u < count; u++) {
+            addUser(u);
+        }
+    }
+
+    /**
+     * Adds a user, e.g. to simulate that the users file changed.
+     *
+     * @param u the number of the user
+     *
+     * @since 2.2
+     */
+    void addUser(int u) {
+        User user = new User(getName(u));
+        user.addRealUser(new RealUser("Real " + u, "r" + u + "@test",
+            getName(u), "account" + u));
+        users.put(user.getUserName(), user);
+    }
+
+    /**
+     * Returns the name of a user.
+     *
+     * @param user the number of the user
+     * @return the name
+     *
+     * @since 2.2
+     */
+    static String getName(int user) {
+        return "g" + user;
+    }
+
+    @Override
+    public List<RealUser> getAllKnownUsers() {
+        List<RealUser> result = new ArrayList<RealUser>();
+        for (User user : users.values()) {
+            for (Iterator<RealUser> iter = user.getRealUsers();
+                iter.hasNext();) {
+                result.add(iter.next());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public User getSubmissionUser(String name) {
+        return users.get(name);
+    }
+
+    @Override
+    public Iterable<User> submissionUsers() {
+        return users.values();
+    }
+
+    @Override
+    public UserIndex getUserIndex() {
+        UserIndex index = new UserIndex();
+        for (User user : users.values()) {
+            index.addUser(user);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,198 @@
+package de.uni_hildesheim.sse.exerciseLib;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TsvScanner}.
+ *
+ * @author Holger Eichelberger
+ * @since 2.2
+ * @version 2.2
+ */
+public class TsvScannerTest {
+
+    /**
+     * Scans the given input into lines of fields.
+     *
+     * @param input the input
+     * @return the fields per line
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    private static List<List<String>> scan(String input) throws IOException {
+        List<List<String>> result = new ArrayList<List<String>>();
+        TsvScanner scanner = new TsvScanner(new StringReader(input));
+        try {
+            while (scanner.nextLine()) {
+                assertEquals(result.size() + 1, scanner.getLineNumber());
+                List<String> line = new ArrayList<String>();
+                while (scanner.nextField()) {
+                    line.add(scanner.fieldToString());
+                }
+                result.add(line);
+            }
+        } finally {
+            scanner.close();
+        }
+        return result;
+    }
+
+    /**
+     * Creates a line of fields.
+     *
+     * @param fields the fields
+     * @return the line
+     *
+     * @since 2.2
+     */
+    private static List<String> line(String... fields) {
+        List<String> result = new ArrayList<String>();
+        for (String field : fields) {
+            result.add(field);
+        }
+        return result;
+    }
+
+    /**
+     * Tests fields, empty fields and trailing separators.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testFields() throws IOException {
+        List<List<String>> lines = scan("a\tb\t\n\tc\t\td\n\n");
+        assertEquals(3, lines.size());
+        assertEquals(line("a", "b"), lines.get(0));
+        assertEquals(line("", "c", "", "d"), lines.get(1));
+        assertEquals(line(), lines.get(2));
+    }
+
+    /**
+     * Tests the line terminators and a last line without terminator.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLineTerminators() throws IOException {
+        List<List<String>> lines = scan("a\r\nb\rc\nd");
+        assertEquals(4, lines.size());
+        assertEquals(line("a"), lines.get(0));
+        assertEquals(line("b"), lines.get(1));
+        assertEquals(line("c"), lines.get(2));
+        assertEquals(line("d"), lines.get(3));
+        assertEquals(0, scan("").size());
+    }
+
+    /**
+     * Tests lines which are longer than the initial buffer.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLongLines() throws IOException {
+        StringBuilder input = new StringBuilder();
+        StringBuilder field = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            field.append((char) ('a' + i % 26));
+        }
+        for (int l = 0; l < 5; l++) {
+            input.append(l).append('\t').append(field).append("\t\n");
+        }
+        List<List<String>> lines = scan(input.toString());
+        assertEquals(5, lines.size());
+        for (int l = 0; l < lines.size(); l++) {
+            assertEquals(line(String.valueOf(l), field.toString()),
+                lines.get(l));
+        }
+    }
+
+    /**
+     * Tests skipping fields and the field accessors.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testSkipAndAccess() throws IOException {
+        TsvScanner scanner = new TsvScanner(
+            new StringReader("a\tb\tc\td\t\nuser\tUser\t1.5\t"));
+        assertTrue(scanner.nextLine());
+        assertEquals(2, scanner.skipFields(2));
+        assertTrue(scanner.nextField());
+        assertEquals("c", scanner.fieldToString());
+        assertEquals(1, scanner.skipFields(3));
+        assertFalse(scanner.hasMoreFields());
+        assertFalse(scanner.skipField());
+        assertTrue(scanner.nextLine());
+        assertTrue(scanner.skipField());
+        assertTrue(scanner.nextField());
+        assertEquals("User", scanner.fieldToString());
+        scanner.close();
+
+        scanner = new TsvScanner(new StringReader("user\tUser\t1.5\t"));
+        assertTrue(scanner.nextLine());
+        assertTrue(scanner.nextField());
+        String user = scanner.fieldToPooledString();
+        assertTrue(scanner.fieldEquals("USER", true));
+        assertFalse(scanner.fieldEquals("USER", false));
+        assertTrue(scanner.nextField());
+        assertTrue(scanner.fieldEquals("USER", true));
+        assertTrue(scanner.nextField());
+        assertEquals(15, scanner.fieldToCredits());
+        assertTrue(scanner.fieldContains('.'));
+        assertFalse(scanner.nextField());
+        assertFalse(scanner.nextLine());
+        scanner.close();
+
+        scanner = new TsvScanner(new StringReader("user\nuser"));
+        assertTrue(scanner.nextLine());
+        assertTrue(scanner.nextField());
+        String first = scanner.fieldToPooledString();
+        assertTrue(scanner.nextLine());
+        assertTrue(scanner.nextField());
+        assertSame(first, scanner.fieldToPooledString());
+        assertEquals(user, first);
+        scanner.close();
+    }
+
+    /**
+     * Tests that the line digest depends on the line contents only.
+     *
+     * @throws IOException shall not occur
+     *
+     * @since 2.2
+     */
+    @Test
+    public void testLineDigest() throws IOException {
+        TsvScanner scanner = new TsvScanner(
+            new StringReader("a\tb\r\na\tb\na\tc"));
+        assertTrue(scanner.nextLine());
+        long first = scanner.lineDigest();
+        assertTrue(scanner.nextField());
+        assertEquals(first, scanner.lineDigest());
+        assertTrue(scanner.nextLine());
+        assertEquals(first, scanner.lineDigest());
+        assertTrue(scanner.nextLine());
+        assertTrue(first != scanner.lineDigest());
+        scanner.close();
+    }
+
+}